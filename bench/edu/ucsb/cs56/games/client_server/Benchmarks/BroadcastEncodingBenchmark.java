@@ -0,0 +1,75 @@
+package edu.ucsb.cs56.games.client_server.Benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import edu.ucsb.cs56.games.client_server.Controllers.Network.OutboundMessage;
+
+/**
+ * compares the cost of encoding a broadcast for every user in a room separately, like the old PrintWriter path did,
+ * against encoding it once into an OutboundMessage and handing each user a view of it
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class BroadcastEncodingBenchmark {
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    static final int[] ROOM_SIZES = {1, 10, 100, 1000};
+    static final String MESSAGE = "MSG[12]anyone up for a game of chess? i'll even let you be white this time";
+
+    //keeps the jit from throwing the work away
+    static long sink;
+
+    public static void main(String[] args) {
+        System.out.println("room size, per-client ns/broadcast, encode-once ns/broadcast, per-client B/broadcast, encode-once B/broadcast");
+        for(int r=0;r<ROOM_SIZES.length;r++) {
+            int room = ROOM_SIZES[r];
+            int broadcasts = Math.max(1000, 2000000/room);
+            //warm up both paths before measuring either
+            perClient(room, broadcasts);
+            encodeOnce(room, broadcasts);
+
+            long bytes = allocated();
+            long start = System.nanoTime();
+            perClient(room, broadcasts);
+            long perClientTime = System.nanoTime()-start;
+            long perClientBytes = allocated()-bytes;
+
+            bytes = allocated();
+            start = System.nanoTime();
+            encodeOnce(room, broadcasts);
+            long encodeOnceTime = System.nanoTime()-start;
+            long encodeOnceBytes = allocated()-bytes;
+
+            System.out.println(room+", "+perClientTime/broadcasts+", "+encodeOnceTime/broadcasts
+                    +", "+perClientBytes/broadcasts+", "+encodeOnceBytes/broadcasts);
+        }
+        if(sink == 42)
+            System.out.println();
+    }
+
+    static void perClient(int room, int broadcasts) {
+        for(int b=0;b<broadcasts;b++)
+            for(int i=0;i<room;i++)
+                sink += (MESSAGE+"\n").getBytes(UTF8).length;
+    }
+
+    static void encodeOnce(int room, int broadcasts) {
+        for(int b=0;b<broadcasts;b++) {
+            OutboundMessage message = new OutboundMessage(MESSAGE);
+            for(int i=0;i<room;i++) {
+                ByteBuffer view = message.view();
+                sink += view.remaining();
+            }
+        }
+    }
+
+    static long allocated() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+}
@@ -0,0 +1,114 @@
+package edu.ucsb.cs56.games.client_server.Benchmarks;
+
+import edu.ucsb.cs56.games.client_server.Models.Chess.GameStatus;
+import edu.ucsb.cs56.games.client_server.Models.Chess.Move;
+import edu.ucsb.cs56.games.client_server.Models.Chess.Position;
+
+/**
+ * replays a few well known games and, after every move, works out whether the game is over two ways: the way
+ * checkWinner used to, asking whether either team is mated and then whether the team to move is stalemated, each by
+ * trying every move, and with GameStatus looking only at the team to move. reports the average time per move for each
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class ChessStatusBenchmark {
+    //games in coordinate notation, castling is the king's move
+    static final String[][] GAMES = {
+        {"Morphy vs Duke of Brunswick and Count Isouard, Paris 1858",
+            "e2e4 e7e5 g1f3 d7d6 d2d4 c8g4 d4e5 g4f3 d1f3 d6e5 f1c4 g8f6 f3b3 d8e7 b1c3 c7c6 c1g5 b7b5 c3b5 c6b5 "
+            +"c4b5 b8d7 e1c1 a8d8 d1d7 d8d7 h1d1 e7e6 b5d7 f6d7 b3b8 d7b8 d1d8"},
+        {"Anderssen vs Kieseritzky, London 1851",
+            "e2e4 e7e5 f2f4 e5f4 f1c4 d8h4 e1f1 b7b5 c4b5 g8f6 g1f3 h4h6 d2d3 f6h5 f3h4 h6g5 h4f5 c7c6 g2g4 h5f6 "
+            +"h1g1 c6b5 h2h4 g5g6 h4h5 g6g5 d1f3 f6g8 c1f4 g5f6 b1c3 f8c5 c3d5 f6b2 f4d6 c5g1 e4e5 b2a1 f1e2 b8a6 "
+            +"f5g7 e8d8 f3f6 g8f6 d6e7"},
+        {"Scholar's mate",
+            "e2e4 e7e5 f1c4 b8c6 d1h5 g8f6 h5f7"},
+        {"Fool's mate",
+            "f2f3 e7e5 g2g4 d8h4"}
+    };
+    static final int ROUNDS = 20000;
+
+    static final int[] moves = new int[Position.MAX_MOVES];
+    static long sink;
+
+    public static void main(String[] args) {
+        GameStatus status = new GameStatus();
+        //warm up both ways before measuring either
+        for(int i=0;i<GAMES.length;i++)
+            replay(GAMES[i][1], status, ROUNDS/10);
+
+        System.out.println("game, moves, every move ns/move, side to move ns/move, result");
+        for(int i=0;i<GAMES.length;i++) {
+            long[] times = replay(GAMES[i][1], status, ROUNDS);
+            int plies = GAMES[i][1].split(" ").length;
+            String result = (status.state == GameStatus.CHECKMATE ? "mate" : status.state == GameStatus.STALEMATE ? "stalemate" : "unfinished");
+            System.out.println(GAMES[i][0]+", "+plies+", "+times[0]/plies/ROUNDS+", "+times[1]/plies/ROUNDS+", "+result);
+        }
+        if(sink == 42)
+            System.out.println();
+    }
+
+    /**
+     * play through a game, timing both ways of checking for the end after each move
+     * @return the total time spent on each way
+     */
+    static long[] replay(String game, GameStatus status, int rounds) {
+        long[] times = new long[2];
+        Position position = start();
+        String[] record = game.split(" ");
+        for(int i=0;i<record.length;i++) {
+            int move = position.findLegal(square(record[i], 0), square(record[i], 2), moves);
+            if(move == Move.NONE)
+                throw new IllegalStateException("illegal move "+record[i]);
+            position.play(move);
+
+            long start = System.nanoTime();
+            for(int r=0;r<rounds;r++)
+                sink += everyMove(position);
+            times[0] += System.nanoTime()-start;
+
+            start = System.nanoTime();
+            for(int r=0;r<rounds;r++)
+                sink += status.evaluate(position, moves);
+            times[1] += System.nanoTime()-start;
+
+            if(everyMove(position) != status.state)
+                throw new IllegalStateException("disagree after "+record[i]);
+        }
+        return times;
+    }
+
+    //what checkWinner did before: is white mated, is black mated, is the side to move stalemated
+    static int everyMove(Position position) {
+        int turn = position.side;
+        int epSquare = position.epSquare;
+        int state = GameStatus.PLAYING;
+        for(int color=Position.WHITE;color<=Position.BLACK && state == GameStatus.PLAYING;color++) {
+            //only the side to move gets to take en passant
+            position.side = color;
+            position.epSquare = (color == turn ? epSquare : -1);
+            if(position.inCheck(color) && !position.hasLegalMove(moves))
+                state = GameStatus.CHECKMATE;
+        }
+        position.side = turn;
+        position.epSquare = epSquare;
+        if(state == GameStatus.PLAYING && !position.hasLegalMove(moves) && !position.inCheck(turn))
+            state = GameStatus.STALEMATE;
+        return state;
+    }
+
+    static Position start() {
+        String rows = "rnbqkbnrpppppppp00000000000000000000000000000000PPPPPPPPRNBQKBNR";
+        Position position = new Position();
+        for(int square=0;square<64;square++)
+            position.setPiece(square, Position.pieceFor(rows.charAt(square)));
+        position.castling = Position.WHITE_KINGSIDE|Position.WHITE_QUEENSIDE|Position.BLACK_KINGSIDE|Position.BLACK_QUEENSIDE;
+        return position;
+    }
+
+    static int square(String move, int at) {
+        return ('8'-move.charAt(at+1))*8+(move.charAt(at)-'a');
+    }
+}
@@ -0,0 +1,95 @@
+package edu.ucsb.cs56.games.client_server.Benchmarks;
+
+import java.util.Random;
+
+import edu.ucsb.cs56.games.client_server.Models.Gomoku.Board;
+import edu.ucsb.cs56.games.client_server.Models.Gomoku.Patterns;
+import edu.ucsb.cs56.games.client_server.Models.Gomoku.Search;
+
+/**
+ * how cheap the gomoku bot is on different board sizes: how long putting a stone down and taking it back up takes on
+ * a board with stones scattered over it, which is all Board does to keep its patterns up to date, and how many
+ * positions a second the bot searches and how deep it gets in a few games against itself
+ *
+ * pass board sizes to try other ones, and ms=N to set how long each move gets
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class GomokuSearchBenchmark {
+    static final int[] SIZES = {9, 15, 19};
+    static final int ROUNDS = 2000000;
+    static final int GAMES = 2;
+
+    public static void main(String[] args) {
+        int[] sizes = SIZES;
+        long millis = 200;
+        int count = 0;
+        for(int i=0;i<args.length;i++) {
+            if(args[i].indexOf("ms=") == 0)
+                millis = Long.parseLong(args[i].substring(3));
+            else
+                count++;
+        }
+        if(count > 0) {
+            sizes = new int[count];
+            count = 0;
+            for(int i=0;i<args.length;i++) {
+                if(args[i].indexOf("ms=") != 0)
+                    sizes[count++] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println("size, play+undo ns, moves, nodes/s, average depth, winner");
+        for(int s=0;s<sizes.length;s++) {
+            int size = sizes[s];
+            Board board = new Board(size);
+            Random random = new Random(42);
+            //a board a quarter full, then the same empty cells over and over
+            for(int i=0;i<size*size/4;i++) {
+                int cell = random.nextInt(size*size);
+                if(board.stone(cell) == 0)
+                    board.play(cell);
+            }
+            int[] empty = new int[64];
+            for(int i=0;i<empty.length;) {
+                int cell = random.nextInt(size*size);
+                if(board.stone(cell) == 0)
+                    empty[i++] = cell;
+            }
+            for(int i=0;i<ROUNDS/10;i++) {
+                board.play(empty[i&63]);
+                board.undo(empty[i&63]);
+            }
+            long start = System.nanoTime();
+            for(int i=0;i<ROUNDS;i++) {
+                board.play(empty[i&63]);
+                board.undo(empty[i&63]);
+            }
+            long perMove = (System.nanoTime()-start)/ROUNDS;
+
+            for(int g=0;g<GAMES;g++) {
+                Search search = new Search();
+                board = new Board(size);
+                long nodes = 0;
+                long depths = 0;
+                int moves = 0;
+                int winner = 0;
+                start = System.nanoTime();
+                while(winner == 0 && board.count < board.cells) {
+                    int cell = search.think(board, millis);
+                    nodes += search.nodes;
+                    depths += search.completedDepth;
+                    moves++;
+                    if(board.best(board.turn, cell) == Patterns.FIVE)
+                        winner = board.turn;
+                    board.play(cell);
+                }
+                double seconds = (System.nanoTime()-start)/1e9;
+                System.out.printf("%d, %d, %d, %.0f, %.1f, %d%n", size, perMove, moves, nodes/seconds,
+                        (double)depths/moves, winner);
+            }
+        }
+    }
+}
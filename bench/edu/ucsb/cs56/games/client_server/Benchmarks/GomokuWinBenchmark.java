@@ -0,0 +1,162 @@
+package edu.ucsb.cs56.games.client_server.Benchmarks;
+
+import java.util.Random;
+
+import edu.ucsb.cs56.games.client_server.Models.GomokuModel;
+
+/**
+ * plays random games of gomoku on boards of a few sizes and, after every move, checks for a winner two ways: the way
+ * checkWinner used to, walking out from every stone on the board, and with checkWinner(X, Y) looking only at the lines
+ * through the stone just placed. both have to agree on every move, and with the whole board checkWinner() at the end
+ * of each game. reports the average time per move for each
+ *
+ * pass board sizes to try other ones
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class GomokuWinBenchmark {
+    static final int[] SIZES = {9, 15, 19, 25, 50};
+    static final int GAMES = 200;
+    //about how many moves to time for each size, fewer games on the big boards
+    static final int MOVES = 200000;
+
+    static long sink;
+
+    public static void main(String[] args) {
+        int[] sizes = SIZES;
+        if(args.length > 0) {
+            sizes = new int[args.length];
+            for(int i=0;i<args.length;i++)
+                sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        //warm up both ways before measuring either
+        for(int i=0;i<sizes.length;i++)
+            run(games(sizes[i], new Random(1)), sizes[i]);
+
+        System.out.println("size, games, moves, full scan ns/move, last move ns/move, speedup");
+        for(int i=0;i<sizes.length;i++) {
+            int[][] games = games(sizes[i], new Random(42));
+            long[] times = run(games, sizes[i]);
+            long moves = 0;
+            for(int[] game : games)
+                moves += game.length;
+            System.out.printf("%d, %d, %d, %.1f, %.1f, %.0f%n", sizes[i], games.length, moves,
+                    (double)times[0]/moves, (double)times[1]/moves, (double)times[0]/times[1]);
+        }
+        if(sink == 42)
+            System.out.println();
+    }
+
+    /**
+     * random games, each a list of cells y*size+x, played until somebody gets exactly five or the board fills up
+     */
+    static int[][] games(int size, Random random) {
+        GomokuModel model = new GomokuModel();
+        int count = Math.max(1, Math.min(GAMES, MOVES/(size*size/2)));
+        int[][] games = new int[count][];
+        for(int g=0;g<count;g++) {
+            model.init(size);
+            int[] cells = new int[size*size];
+            for(int i=0;i<cells.length;i++)
+                cells[i] = i;
+            int length = 0;
+            while(length < cells.length) {
+                int pick = length+random.nextInt(cells.length-length);
+                int cell = cells[pick];
+                cells[pick] = cells[length];
+                cells[length++] = cell;
+                model.set(cell%size, cell/size, model.turn);
+                model.turn = 3-model.turn;
+                if(model.checkWinner(cell%size, cell/size))
+                    break;
+            }
+            games[g] = new int[length];
+            System.arraycopy(cells, 0, games[g], 0, length);
+        }
+        return games;
+    }
+
+    /**
+     * replay every game once checking the old way and once the new way
+     * @return the total time spent on each way
+     */
+    static long[] run(int[][] games, int size) {
+        long[] times = new long[2];
+        GomokuModel model = new GomokuModel();
+        for(int[] game : games) {
+            //the old check needs the board the old way
+            int[][] grid = new int[size][size];
+            long start = System.nanoTime();
+            int turn = 1;
+            int oldWinner = 0;
+            for(int i=0;i<game.length;i++) {
+                grid[game[i]/size][game[i]%size] = turn;
+                turn = 3-turn;
+                oldWinner = fullScan(grid, size);
+                sink += oldWinner;
+            }
+            times[0] += System.nanoTime()-start;
+
+            model.init(size);
+            start = System.nanoTime();
+            for(int i=0;i<game.length;i++) {
+                model.set(game[i]%size, game[i]/size, model.turn);
+                model.turn = 3-model.turn;
+                if(model.checkWinner(game[i]%size, game[i]/size))
+                    sink++;
+            }
+            times[1] += System.nanoTime()-start;
+
+            //and the whole board check setState uses has to agree too
+            int lastMoveWinner = model.winner;
+            model.winner = 0;
+            model.checkWinner();
+            if(oldWinner != lastMoveWinner || oldWinner != model.winner)
+                throw new IllegalStateException("size "+size+": old scan says "+oldWinner+", last move says "
+                        +lastMoveWinner+", whole board says "+model.winner);
+        }
+        return times;
+    }
+
+    //checkWinner as it was, less the logging
+
+    static int fullScan(int[][] grid, int cells) {
+        for(int i=0;i<cells;i++) {
+            for(int j=0;j<cells;j++) {
+                int type = grid[i][j];
+                if(type == 0)
+                    continue;
+                if(i < cells-4 && recursiveCheckWin(grid, cells, type, j, i, 0, 4))
+                    return type;
+                if(j < cells-4 && recursiveCheckWin(grid, cells, type, j, i, 2, 4))
+                    return type;
+                if(i < cells-4 && j < cells-4 && recursiveCheckWin(grid, cells, type, j, i, 1, 4))
+                    return type;
+                if(i < cells-4 && j > 3 && recursiveCheckWin(grid, cells, type, j, i, 3, 4))
+                    return type;
+            }
+        }
+        return 0;
+    }
+
+    static boolean recursiveCheckWin(int[][] grid, int cells, int type, int X, int Y, int dir, int count) {
+        if(count < 0)
+            return !(X < cells && X >= 0 && Y < cells && Y >= 0 && grid[Y][X] == type);
+        int dx = 1;
+        int dy = 1;
+        if(dir == 0)
+            dx = 0;
+        if(dir == 2)
+            dy = 0;
+        if(dir == 3)
+            dx = -1;
+        if(count == 4 && X-dx >=0 && X-dx < cells && Y-dy >=0 && grid[Y-dy][X-dx] == type)
+            return false;
+        if(grid[Y][X] == type)
+            return recursiveCheckWin(grid, cells, type, X+dx, Y+dy, dir, count-1);
+        return false;
+    }
+}
@@ -0,0 +1,115 @@
+package edu.ucsb.cs56.games.client_server.Benchmarks;
+
+import java.lang.management.ManagementFactory;
+
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Tokenizer;
+import edu.ucsb.cs56.games.client_server.Models.GomokuModel;
+
+/**
+ * compares parsing moves and board states with substring+split+parseInt, the way the controllers and models used to,
+ * against reading them in place with a Tokenizer, and reports time and bytes allocated per message
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class MoveParsingBenchmark {
+    static final String CHESS_MOVE = "MOVE;4,6,4,4";
+    static final int ROUNDS = 2000000;
+    static final int STATE_ROUNDS = 20000;
+
+    //keeps the jit from throwing the work away
+    static long sink;
+
+    public static void main(String[] args) {
+        GomokuModel board = new GomokuModel();
+        board.init(19);
+        for(int i=0;i<19;i++)
+            board.set((i*7)%19, i, 1+(i&1));
+        String state = board.getState();
+
+        System.out.println("message, split ns/msg, tokenizer ns/msg, split B/msg, tokenizer B/msg");
+        Tokenizer tokens = new Tokenizer();
+        //warm up both paths before measuring either
+        splitMove(ROUNDS);
+        tokenizeMove(tokens, ROUNDS);
+        report("MOVE;x1,y1,x2,y2", 0, tokens, null, ROUNDS);
+
+        int[][] grid = new int[19][19];
+        splitState(state, grid, STATE_ROUNDS);
+        tokenizeState(tokens, state, grid, STATE_ROUNDS);
+        report("STATE[ 19x19", 1, tokens, state, STATE_ROUNDS);
+
+        if(sink == 42)
+            System.out.println();
+    }
+
+    static void report(String name, int which, Tokenizer tokens, String state, int rounds) {
+        int[][] grid = new int[19][19];
+        long bytes = allocated();
+        long start = System.nanoTime();
+        if(which == 0)
+            splitMove(rounds);
+        else
+            splitState(state, grid, rounds);
+        long splitTime = System.nanoTime()-start;
+        long splitBytes = allocated()-bytes;
+
+        bytes = allocated();
+        start = System.nanoTime();
+        if(which == 0)
+            tokenizeMove(tokens, rounds);
+        else
+            tokenizeState(tokens, state, grid, rounds);
+        long tokenTime = System.nanoTime()-start;
+        long tokenBytes = allocated()-bytes;
+
+        System.out.println(name+", "+splitTime/rounds+", "+tokenTime/rounds+", "+splitBytes/rounds+", "+tokenBytes/rounds);
+    }
+
+    static void splitMove(int rounds) {
+        for(int r=0;r<rounds;r++) {
+            String[] data = CHESS_MOVE.substring(5).split(",");
+            sink += Integer.parseInt(data[0])+Integer.parseInt(data[1])+Integer.parseInt(data[2])+Integer.parseInt(data[3]);
+        }
+    }
+
+    static void tokenizeMove(Tokenizer tokens, int rounds) {
+        for(int r=0;r<rounds;r++) {
+            Tokenizer data = tokens.reset(CHESS_MOVE, 5);
+            sink += data.nextInt()+data.nextInt()+data.nextInt()+data.nextInt();
+        }
+    }
+
+    static void splitState(String state, int[][] grid, int rounds) {
+        for(int r=0;r<rounds;r++) {
+            String[] info = state.substring(6).split("]");
+            sink += Integer.parseInt(info[0]);
+            String[] rows = info[1].split(";");
+            for(int i=0;i<19;i++) {
+                String[] cols = rows[i].split(",");
+                for(int j=0;j<19;j++)
+                    grid[i][j] = Integer.parseInt(cols[j]);
+            }
+            sink += grid[18][18];
+        }
+    }
+
+    static void tokenizeState(Tokenizer tokens, String state, int[][] grid, int rounds) {
+        for(int r=0;r<rounds;r++) {
+            Tokenizer info = tokens.reset(state, 6);
+            sink += info.nextInt();
+            for(int i=0;i<19;i++)
+                for(int j=0;j<19;j++)
+                    grid[i][j] = info.nextInt();
+            sink += grid[18][18];
+        }
+    }
+
+    static long allocated() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+}
@@ -0,0 +1,119 @@
+package edu.ucsb.cs56.games.client_server.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.Base64;
+
+import edu.ucsb.cs56.games.client_server.Log;
+import edu.ucsb.cs56.games.client_server.Controllers.ChessController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.OutboundMessage;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Protocol;
+import edu.ucsb.cs56.games.client_server.Models.ChessModel;
+import edu.ucsb.cs56.games.client_server.Models.ClientModel;
+
+/**
+ * checks that a chess client from before POS, one that never says POS; when it connects, still gets a board it can
+ * draw: a STATE and a PLAYERS, read the way the old ChessModel.setState and ChessViewPanel read them, with every
+ * square and whose turn it is matching the server's game. a client that did say POS; gets just the POS, and it
+ * unpacks to the same game. plays a short game with castling and a capture so the board isn't the starting one.
+ * exits with an error if anything is off, ant compat fails the build on it
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class OldClientCheck {
+    static final String[] MOVES = {
+        "4,6,4,4", "4,1,4,3", "6,7,5,5", "1,0,2,2", "5,7,2,4", "6,0,5,2", "4,7,6,7", "5,2,4,4", "3,6,3,4"
+    };
+
+    /**
+     * a client that keeps what it's sent
+     */
+    static class Recorder extends ClientNetworkController {
+        final ArrayList<String> received = new ArrayList<String>();
+
+        Recorder(int id, boolean readsPos) {
+            super(null);
+            client = new ClientModel(id, "user"+id, 1);
+            this.readsPos = readsPos;
+        }
+
+        @Override
+        public void sendMessage(String string) {
+            //leave out the room saying who joined
+            if(Protocol.opcode(string) != Protocol.SMSG)
+                received.add(string);
+        }
+
+        @Override
+        public void sendMessage(OutboundMessage message) {
+            sendMessage(message.text);
+        }
+    }
+
+    public static void main(String[] args) {
+        Log.level = Log.WARN;
+        ChessController room = new ChessController(1);
+        Recorder white = new Recorder(0, true);
+        Recorder black = new Recorder(1, true);
+        room.addClient(white);
+        room.addClient(black);
+        room.playClient(white);
+        room.playClient(black);
+        for(int i=0;i<MOVES.length;i++)
+            room.handleData(i%2 == 0 ? white : black, Protocol.MOVE, "MOVE;"+MOVES[i]);
+        ChessModel game = room.gameData;
+        check(game.grid[7][6] == 'K' && game.grid[4][4] == 'n' && game.grid[4][3] == 'P',
+                "the moves didn't all go through");
+
+        Recorder old = new Recorder(2, false);
+        room.addClient(old);
+        check(old.received.size() == 2, "old client got "+old.received);
+        checkState(game, old.received.get(0));
+        checkPlayers(old.received.get(1));
+
+        Recorder current = new Recorder(3, true);
+        room.addClient(current);
+        check(current.received.size() == 1, "new client got "+current.received);
+        String pos = current.received.get(0);
+        check(pos.startsWith("POS[0,1]"), "new client got "+pos);
+        ChessModel unpacked = new ChessModel();
+        unpacked.unpack(Base64.getDecoder().decode(pos.substring(pos.indexOf(']')+1)));
+        for(int y=0;y<8;y++)
+            for(int x=0;x<8;x++)
+                check(unpacked.grid[y][x] == game.grid[y][x], "POS has the wrong piece at "+x+","+y);
+        check(unpacked.turn == game.turn, "POS has the wrong turn");
+        System.out.println("old clients get STATE and PLAYERS, new ones get POS");
+    }
+
+    /**
+     * read a STATE like the old client did, and compare it with the server's game
+     */
+    static void checkState(ChessModel game, String state) {
+        check(state.startsWith("STATE["), "expected a STATE, got "+state);
+        String[] info = state.substring(6).split("]");
+        check(Integer.parseInt(info[0]) == game.turn, "STATE has the wrong turn: "+state);
+        String[] rows = info[1].split(";");
+        check(rows.length == 8, "STATE doesn't have 8 rows: "+state);
+        for(int y=0;y<8;y++) {
+            check(rows[y].length() == 8, "STATE row "+y+" isn't 8 squares: "+state);
+            for(int x=0;x<8;x++)
+                check(rows[y].charAt(x) == game.grid[y][x], "STATE has the wrong piece at "+x+","+y+": "+state);
+        }
+    }
+
+    /**
+     * read a PLAYERS like the old client did
+     */
+    static void checkPlayers(String players) {
+        check(players.startsWith("PLAYERS;"), "expected PLAYERS, got "+players);
+        String[] data = players.substring(8).split(",");
+        check(Integer.parseInt(data[0]) == 0 && Integer.parseInt(data[1]) == 1, "PLAYERS is wrong: "+players);
+    }
+
+    static void check(boolean ok, String problem) {
+        if(!ok)
+            throw new IllegalStateException(problem);
+    }
+}
@@ -0,0 +1,165 @@
+package edu.ucsb.cs56.games.client_server.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import edu.ucsb.cs56.games.client_server.Models.Chess.Fen;
+import edu.ucsb.cs56.games.client_server.Models.Chess.Position;
+
+/**
+ * perft walks every legal move sequence from a position down to some depth and counts the positions at the bottom.
+ * the counts for the positions here are well known, so any mistake in castling, en passant or promotion shows up as
+ * a wrong number. each position is counted once on one thread and once with the moves at the root split between the
+ * threads of a fork-join pool, and both are reported in nodes per second. exits with status 1 if any count is wrong,
+ * so ant perft can be run as a check before and after touching the move generator
+ *
+ * pass deep to go one ply further on every position, and a number to set how many threads the pool gets
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class PerftBenchmark {
+    //position, then the reference count for depth 1, 2, ...
+    static final String[] POSITIONS = {
+        Fen.START,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    };
+    static final long[][] COUNTS = {
+        {20, 400, 8902, 197281, 4865609, 119060324},
+        {48, 2039, 97862, 4085603, 193690690},
+        {14, 191, 2812, 43238, 674624, 11030083},
+        {6, 264, 9467, 422333, 15833292},
+        {44, 1486, 62379, 2103487, 89941194},
+        {46, 2079, 89890, 3894594, 164075551}
+    };
+    //how deep to go by default, a few seconds in all
+    static final int[] DEPTHS = {5, 4, 5, 4, 4, 4};
+
+    public static void main(String[] args) {
+        int extra = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for(int i=0;i<args.length;i++) {
+            if(args[i].equals("deep"))
+                extra = 1;
+            else
+                threads = Integer.parseInt(args[i]);
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        //warm up both ways before timing anything, the first deep count runs at half speed while it gets compiled
+        Position warm = new Position();
+        Fen.read(POSITIONS[1], warm);
+        perft(warm, 4, buffers(4));
+        pool.invoke(new Root(warm, 4));
+
+        boolean ok = true;
+        System.out.println("position, depth, nodes, expected, 1 thread Mnps, "+threads+" threads Mnps");
+        for(int i=0;i<POSITIONS.length;i++) {
+            int depth = Math.min(DEPTHS[i]+extra, COUNTS[i].length);
+            long expected = COUNTS[i][depth-1];
+            Position position = new Position();
+            Fen.read(POSITIONS[i], position);
+
+            long start = System.nanoTime();
+            long nodes = perft(position, depth, buffers(depth));
+            long serialTime = System.nanoTime()-start;
+
+            start = System.nanoTime();
+            long parallelNodes = pool.invoke(new Root(position, depth));
+            long parallelTime = System.nanoTime()-start;
+
+            boolean right = nodes == expected && parallelNodes == expected;
+            ok &= right;
+            System.out.println((i+1)+", "+depth+", "+nodes+", "+expected+", "
+                    +mnps(nodes, serialTime)+", "+mnps(parallelNodes, parallelTime)+(right ? "" : ", WRONG (parallel got "+parallelNodes+")"));
+        }
+        pool.shutdown();
+        if(!ok) {
+            System.out.println("perft counts don't match");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * count the positions depth moves from here
+     * @param position the position, left as it was
+     * @param depth how many moves deep
+     * @param buffers a move list for every depth
+     * @return the count
+     */
+    static long perft(Position position, int depth, int[][] buffers) {
+        int[] moves = buffers[depth];
+        int count = position.generate(-1L, moves);
+        long nodes = 0;
+        for(int i=0;i<count;i++) {
+            position.makeMove(moves[i]);
+            if(position.lastMoveLegal())
+                nodes += (depth == 1 ? 1 : perft(position, depth-1, buffers));
+            position.unmakeMove(moves[i]);
+        }
+        return nodes;
+    }
+
+    static int[][] buffers(int depth) {
+        return new int[depth+1][Position.MAX_MOVES];
+    }
+
+    static String mnps(long nodes, long nanos) {
+        return String.format("%.1f", nodes*1000.0/Math.max(nanos, 1));
+    }
+
+    //splits the legal moves at the root into one task each
+    static class Root extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        final Position position;
+        final int depth;
+
+        Root(Position position, int depth) {
+            this.position = position;
+            this.depth = depth;
+        }
+
+        protected Long compute() {
+            int[] moves = new int[Position.MAX_MOVES];
+            int count = position.generate(-1L, moves);
+            ArrayList<Branch> branches = new ArrayList<Branch>();
+            for(int i=0;i<count;i++) {
+                position.makeMove(moves[i]);
+                if(position.lastMoveLegal())
+                    branches.add(new Branch(position, depth-1));
+                position.unmakeMove(moves[i]);
+            }
+            invokeAll(branches);
+            long nodes = 0;
+            for(Branch branch : branches)
+                nodes += branch.join();
+            return nodes;
+        }
+    }
+
+    //one root move, counted on a copy of the position made after that move
+    static class Branch extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        final Position position = new Position();
+        final int depth;
+
+        Branch(Position after, int depth) {
+            position.copy(after);
+            this.depth = depth;
+        }
+
+        protected Long compute() {
+            if(depth == 0)
+                return 1L;
+            return perft(position, depth, buffers(depth));
+        }
+    }
+}
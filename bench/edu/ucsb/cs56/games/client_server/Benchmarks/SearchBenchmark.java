@@ -0,0 +1,77 @@
+package edu.ucsb.cs56.games.client_server.Benchmarks;
+
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import edu.ucsb.cs56.games.client_server.Models.Chess.Fen;
+import edu.ucsb.cs56.games.client_server.Models.Chess.ParallelSearch;
+import edu.ucsb.cs56.games.client_server.Models.Chess.Position;
+import edu.ucsb.cs56.games.client_server.Models.Chess.TranspositionTable;
+
+/**
+ * how the bot's search scales with threads: each position is searched for the same time with 1 thread, 2, 4 and so
+ * on up to the number of cores, with a fresh table every time, and the nodes per second of all threads together and
+ * the depth the move came from are reported. lazy smp helpers repeat some of each other's work, so nodes per second
+ * going up is only half the story, the depth reached in the same time is the other half
+ *
+ * pass a number to set the most threads to try, and ms=N to set how long each search gets
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class SearchBenchmark {
+    static final String[] POSITIONS = {
+        Fen.START,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+    };
+    static final int TABLE_BITS = 20;
+
+    public static void main(String[] args) {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        long millis = 2000;
+        for(int i=0;i<args.length;i++) {
+            if(args[i].indexOf("ms=") == 0)
+                millis = Long.parseLong(args[i].substring(3));
+            else
+                maxThreads = Integer.parseInt(args[i]);
+        }
+        System.out.println(Runtime.getRuntime().availableProcessors()+" cores, "+millis+"ms a search");
+
+        //helpers get a thread right away or not at all, like BotPool.SPARE
+        ThreadPoolExecutor helpers = new ThreadPoolExecutor(0, Math.max(1, maxThreads-1), 1, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>());
+
+        Position position = new Position();
+        Fen.read(POSITIONS[1], position);
+        search(position, 1, millis, helpers);
+
+        System.out.println("position, threads, nodes, nodes/s, depth, speedup");
+        for(int p=0;p<POSITIONS.length;p++) {
+            Fen.read(POSITIONS[p], position);
+            double base = 0;
+            for(int threads=1;threads<=maxThreads;threads*=2) {
+                long start = System.nanoTime();
+                ParallelSearch search = search(position, threads, millis, helpers);
+                //the search can stop early when another ply wouldn't finish, so go by how long it really took
+                double nps = search.nodes/((System.nanoTime()-start)/1e9);
+                if(threads == 1)
+                    base = nps;
+                System.out.printf("%d, %d, %d, %.0f, %d, %.2f%n", p+1, search.threadsUsed, search.nodes, nps,
+                        search.completedDepth, nps/base);
+                if(threads < maxThreads && threads*2 > maxThreads)
+                    threads = maxThreads/2;
+            }
+        }
+        helpers.shutdown();
+    }
+
+    static ParallelSearch search(Position position, int threads, long millis, ThreadPoolExecutor helpers) {
+        ParallelSearch search = new ParallelSearch(new TranspositionTable(TABLE_BITS), threads);
+        search.think(position, new long[]{position.key()}, millis, helpers);
+        return search;
+    }
+}
@@ -0,0 +1,146 @@
+package edu.ucsb.cs56.games.client_server.Benchmarks;
+
+import java.util.Random;
+
+import edu.ucsb.cs56.games.client_server.Log;
+import edu.ucsb.cs56.games.client_server.Controllers.ChessController;
+import edu.ucsb.cs56.games.client_server.Controllers.GomokuController;
+import edu.ucsb.cs56.games.client_server.Controllers.TicTacToeController;
+import edu.ucsb.cs56.games.client_server.Controllers.TwoPlayerGameController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.OutboundMessage;
+import edu.ucsb.cs56.games.client_server.Models.ClientModel;
+
+/**
+ * times updateAll, which sends every client in a room the whole game, in chess, gomoku and tic tac toe rooms of a
+ * few sizes. once with the room's snapshot thrown away before every client, so each one gets its messages built and
+ * encoded from scratch like sendGameState used to, and once with it thrown away only before each updateAll, so the
+ * whole room shares one. gomoku runs on a half full 19x19 board with deltas off, so everyone gets the whole board.
+ * the clients count bytes like a socket would, so both runs have to send the same amount
+ *
+ * pass room sizes to try other ones
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class SnapshotBenchmark {
+    static final int[] ROOM_SIZES = {10, 200};
+    static final int UPDATES = 2000;
+
+    public static void main(String[] args) {
+        int[] sizes = ROOM_SIZES;
+        if(args.length > 0) {
+            sizes = new int[args.length];
+            for(int i=0;i<args.length;i++)
+                sizes[i] = Integer.parseInt(args[i]);
+        }
+        //the rooms log every game they start
+        Log.level = Log.WARN;
+        TwoPlayerGameController.deltas = false;
+
+        String[] games = {"chess", "gomoku", "tictactoe"};
+        //warm up both ways before measuring either
+        for(String game : games) {
+            run(room(game, 10), UPDATES, false);
+            run(room(game, 10), UPDATES, true);
+        }
+
+        System.out.println("game, room size, per-client us/update, shared us/update, speedup, B/update");
+        for(String game : games) {
+            for(int i=0;i<sizes.length;i++) {
+                int updates = Math.max(100, UPDATES*10/sizes[i]);
+                long[] perClient = run(room(game, sizes[i]), updates, false);
+                long[] shared = run(room(game, sizes[i]), updates, true);
+                if(perClient[1] != shared[1])
+                    throw new IllegalStateException(game+" sent "+perClient[1]+" bytes one way and "+shared[1]+" the other");
+                System.out.printf("%s, %d, %.1f, %.1f, %.1f, %d%n", game, sizes[i], perClient[0]/1000.0/updates,
+                        shared[0]/1000.0/updates, (double)perClient[0]/shared[0], shared[1]/updates);
+            }
+        }
+    }
+
+    /**
+     * a client that counts the bytes it's sent, encoded the way a socket would get them
+     */
+    static class Counter extends ClientNetworkController {
+        long bytes;
+
+        Counter(int id) {
+            super(null);
+            client = new ClientModel(id, "user"+id, 1);
+        }
+
+        @Override
+        public void sendMessage(String string) {
+            sendMessage(new OutboundMessage(string));
+        }
+
+        @Override
+        public void sendMessage(OutboundMessage message) {
+            bytes += message.view().remaining();
+        }
+    }
+
+    /**
+     * a room with a game going and clients in it, the first two of them playing
+     */
+    static TwoPlayerGameController room(String game, int size) {
+        TwoPlayerGameController room;
+        if(game.equals("chess"))
+            room = new ChessController(1);
+        else if(game.equals("gomoku"))
+            room = new GomokuController(1);
+        else
+            room = new TicTacToeController(1);
+        for(int i=0;i<size;i++) {
+            Counter client = new Counter(i);
+            room.addClient(client);
+            if(i < 2)
+                room.playClient(client);
+        }
+        if(room instanceof GomokuController) {
+            GomokuController gomoku = (GomokuController)room;
+            gomoku.init(19);
+            Random random = new Random(42);
+            for(int i=0;i<19*19/2;i++) {
+                int x = random.nextInt(19);
+                int y = random.nextInt(19);
+                if(gomoku.gameData.get(x, y) == 0)
+                    gomoku.gameData.set(x, y, i%2+1);
+            }
+        } else if(room instanceof TicTacToeController) {
+            TicTacToeController tictactoe = (TicTacToeController)room;
+            tictactoe.gameData.set(1, 1, 1);
+            tictactoe.gameData.set(0, 0, 2);
+        }
+        room.changed();
+        return room;
+    }
+
+    /**
+     * @return nanoseconds spent, and bytes sent
+     */
+    static long[] run(TwoPlayerGameController room, int updates, boolean shared) {
+        long before = 0;
+        for(ClientNetworkController client : room.clients)
+            before += ((Counter)client).bytes;
+        long start = System.nanoTime();
+        for(int u=0;u<updates;u++) {
+            room.changed();
+            if(shared) {
+                room.updateAll();
+                continue;
+            }
+            for(ClientNetworkController client : room.clients) {
+                room.changed();
+                room.sendGameState(client);
+            }
+        }
+        long time = System.nanoTime()-start;
+        long bytes = -before;
+        for(ClientNetworkController client : room.clients)
+            bytes += ((Counter)client).bytes;
+        return new long[] {time, bytes};
+    }
+}
@@ -0,0 +1,120 @@
+package edu.ucsb.cs56.games.client_server.Benchmarks;
+
+import java.util.Random;
+
+import edu.ucsb.cs56.games.client_server.Log;
+import edu.ucsb.cs56.games.client_server.Controllers.GomokuController;
+import edu.ucsb.cs56.games.client_server.Controllers.TwoPlayerGameController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Protocol;
+import edu.ucsb.cs56.games.client_server.Models.ClientModel;
+
+/**
+ * plays random games in a 19x19 gomoku room full of spectators, with somebody typing /play every few moves so the
+ * room sends everyone the game again, like it does whenever a seat changes hands. the clients just count what
+ * they're sent. each room size is run with whole-board STATEs, the old way, and with DELTAs, and reports the bytes
+ * and the time each room update takes
+ *
+ * pass spectator counts to try other ones
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class StateUpdateBenchmark {
+    static final int[] SPECTATORS = {1, 10, 100};
+    static final int SIZE = 19;
+    static final int GAMES = 200;
+    //a room update every this many moves
+    static final int UPDATE_EVERY = 5;
+
+    public static void main(String[] args) {
+        int[] spectators = SPECTATORS;
+        if(args.length > 0) {
+            spectators = new int[args.length];
+            for(int i=0;i<args.length;i++)
+                spectators[i] = Integer.parseInt(args[i]);
+        }
+
+        //the room logs every game it starts
+        Log.level = Log.WARN;
+        //warm up both ways before measuring either
+        run(10, false);
+        run(10, true);
+
+        System.out.println("spectators, updates, state B/update, delta B/update, state us/update, delta us/update");
+        for(int i=0;i<spectators.length;i++) {
+            long[] state = run(spectators[i], false);
+            long[] delta = run(spectators[i], true);
+            System.out.printf("%d, %d, %d, %d, %.1f, %.1f%n", spectators[i], state[0], state[1]/state[0],
+                    delta[1]/delta[0], state[2]/1000.0/state[0], delta[2]/1000.0/delta[0]);
+        }
+    }
+
+    /**
+     * a client that only counts what it's sent
+     */
+    static class Counter extends ClientNetworkController {
+        long bytes;
+
+        Counter(int id) {
+            super(null);
+            client = new ClientModel(id, "user"+id, 1);
+        }
+
+        @Override
+        public void sendMessage(String string) {
+            bytes += string.length()+1;
+        }
+    }
+
+    /**
+     * @return room updates, bytes sent during them, and nanoseconds spent on them
+     */
+    static long[] run(int spectators, boolean deltas) {
+        TwoPlayerGameController.deltas = deltas;
+        GomokuController room = new GomokuController(1);
+        Counter[] clients = new Counter[spectators+2];
+        for(int i=0;i<clients.length;i++) {
+            clients[i] = new Counter(i);
+            room.addClient(clients[i]);
+        }
+        room.playClient(clients[0]);
+        room.playClient(clients[1]);
+        room.init(SIZE);
+
+        Random random = new Random(42);
+        long updates = 0;
+        long bytes = 0;
+        long time = 0;
+        for(int g=0;g<GAMES;g++) {
+            room.init(SIZE);
+            int moves = 0;
+            while(room.gameData.winner == 0 && moves < SIZE*SIZE) {
+                int x = random.nextInt(SIZE);
+                int y = random.nextInt(SIZE);
+                if(room.gameData.get(x, y) != 0)
+                    continue;
+                Counter player = clients[room.gameData.turn-1];
+                room.handleData(player, Protocol.MOVE, "MOVE;"+x+","+y);
+                moves++;
+                if(moves%UPDATE_EVERY != 0)
+                    continue;
+
+                Counter spectator = clients[2+random.nextInt(spectators)];
+                long before = 0;
+                for(Counter client : clients)
+                    before += client.bytes;
+                long start = System.nanoTime();
+                room.handleData(spectator, Protocol.MSG, "MSG;/play");
+                time += System.nanoTime()-start;
+                for(Counter client : clients)
+                    bytes += client.bytes;
+                bytes -= before;
+                updates++;
+            }
+        }
+        TwoPlayerGameController.deltas = true;
+        return new long[] {updates, bytes, time};
+    }
+}
@@ -0,0 +1,172 @@
+package edu.ucsb.cs56.games.client_server.Benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Random;
+
+import edu.ucsb.cs56.games.client_server.Log;
+import edu.ucsb.cs56.games.client_server.Controllers.ChessController;
+import edu.ucsb.cs56.games.client_server.Controllers.GomokuController;
+import edu.ucsb.cs56.games.client_server.Controllers.TwoPlayerGameController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.BinaryProtocol;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Protocol;
+import edu.ucsb.cs56.games.client_server.Models.ClientModel;
+
+/**
+ * compares the text protocol with BinaryProtocol frames on what a spectator gets sent: random 19x19 gomoku games
+ * with a seat change every few moves, chess rooms being sent to everyone, and chat. reports the bytes each way, and
+ * how long it takes to encode every message and to split the bytes back up into messages, text by finding newlines
+ * like the nio loops do and frames by reading their lengths. every message has to come back as the same text
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class WireBenchmark {
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    static final int GAMES = 100;
+    static final int ROUNDS = 20;
+
+    static long sink;
+
+    public static void main(String[] args) {
+        Log.level = Log.WARN;
+        String[] messages = corpus();
+
+        byte[] text = null;
+        byte[] frames = null;
+        long[] times = new long[4];
+        for(int round=0;round<ROUNDS;round++) {
+            //the first half of the rounds are warm up
+            boolean timed = (round >= ROUNDS/2);
+
+            long start = System.nanoTime();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for(String message : messages) {
+                byte[] bytes = (message+"\n").getBytes(UTF8);
+                out.write(bytes, 0, bytes.length);
+            }
+            text = out.toByteArray();
+            long end = System.nanoTime();
+            if(timed)
+                times[0] += end-start;
+
+            start = System.nanoTime();
+            out = new ByteArrayOutputStream();
+            for(String message : messages) {
+                byte[] bytes = BinaryProtocol.encode(message);
+                out.write(bytes, 0, bytes.length);
+            }
+            frames = out.toByteArray();
+            end = System.nanoTime();
+            if(timed)
+                times[1] += end-start;
+
+            start = System.nanoTime();
+            int count = 0;
+            int lineStart = 0;
+            for(int i=0;i<text.length;i++) {
+                if(text[i] != '\n')
+                    continue;
+                String line = new String(text, lineStart, i-lineStart, UTF8);
+                sink += Protocol.opcode(line);
+                check(line, messages[count++]);
+                lineStart = i+1;
+            }
+            end = System.nanoTime();
+            if(timed)
+                times[2] += end-start;
+
+            start = System.nanoTime();
+            count = 0;
+            for(int pos=0;pos<frames.length;) {
+                long frame = BinaryProtocol.frameLength(frames, pos, frames.length);
+                int header = (int)(frame>>>32);
+                String line = BinaryProtocol.decode(frames, pos+header, (int)frame);
+                sink += Protocol.opcode(line);
+                check(line, messages[count++]);
+                pos += header+(int)frame;
+            }
+            end = System.nanoTime();
+            if(timed)
+                times[3] += end-start;
+        }
+
+        int rounds = ROUNDS-ROUNDS/2;
+        System.out.println("messages, text B, frame B, text encode ns/msg, frame encode ns/msg, text split ns/msg, frame split ns/msg");
+        System.out.printf("%d, %d, %d, %.0f, %.0f, %.0f, %.0f%n", messages.length, text.length, frames.length,
+                (double)times[0]/rounds/messages.length, (double)times[1]/rounds/messages.length,
+                (double)times[2]/rounds/messages.length, (double)times[3]/rounds/messages.length);
+        if(sink == 42)
+            System.out.println();
+    }
+
+    static void check(String line, String message) {
+        if(!line.equals(message))
+            throw new IllegalStateException("sent "+message+" but got "+line);
+    }
+
+    /**
+     * a client that keeps everything it's sent
+     */
+    static class Recorder extends ClientNetworkController {
+        final ArrayList<String> sent = new ArrayList<String>();
+
+        Recorder(int id) {
+            super(null);
+            client = new ClientModel(id, "user"+id, 1);
+        }
+
+        @Override
+        public void sendMessage(String string) {
+            sent.add(string);
+        }
+    }
+
+    /**
+     * what one spectator was sent
+     */
+    static String[] corpus() {
+        Random random = new Random(42);
+        Recorder spectator = new Recorder(2);
+
+        GomokuController gomoku = new GomokuController(1);
+        Recorder[] players = {new Recorder(0), new Recorder(1)};
+        gomoku.addClient(players[0]);
+        gomoku.addClient(players[1]);
+        gomoku.addClient(spectator);
+        gomoku.playClient(players[0]);
+        gomoku.playClient(players[1]);
+        for(int g=0;g<GAMES;g++) {
+            gomoku.init(19);
+            int moves = 0;
+            while(gomoku.gameData.winner == 0 && moves < 19*19) {
+                int x = random.nextInt(19);
+                int y = random.nextInt(19);
+                if(gomoku.gameData.get(x, y) != 0)
+                    continue;
+                gomoku.handleData(players[gomoku.gameData.turn-1], Protocol.MOVE, "MOVE;"+x+","+y);
+                moves++;
+                if(moves%5 == 0)
+                    gomoku.handleData(spectator, Protocol.MSG, "MSG;/play");
+                if(moves%7 == 0)
+                    gomoku.broadcastData("MSG["+random.nextInt(50)+"]nice move, that's "+moves+" so far");
+            }
+        }
+        gomoku.removeClient(spectator);
+
+        //a whole board now and then, like a client that doesn't know DELTA gets
+        TwoPlayerGameController.deltas = false;
+        gomoku.addClient(spectator);
+        TwoPlayerGameController.deltas = true;
+        gomoku.removeClient(spectator);
+
+        ChessController chess = new ChessController(2);
+        chess.addClient(spectator);
+        for(int i=0;i<GAMES;i++)
+            chess.updateAll();
+        return spectator.sent.toArray(new String[0]);
+    }
+}
@@ -6,10 +6,13 @@ package edu.ucsb.cs56.games.client_server.Controllers;
 //ban, mute, etc, and relay them back to the edu.ucsb.cs56.W12.jcolicchio.issue535.JavaServer for processing
     //for now, it'll also have to accept commands like /join, /play, /leave
 
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import edu.ucsb.cs56.games.client_server.JavaServer;
+import edu.ucsb.cs56.games.client_server.Log;
 import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.OutboundMessage;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Protocol;
 
 /**
 * Chat service is a service that most services will extend, it provides functionality for handling messages and chat-related data
@@ -20,16 +23,16 @@ import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkContro
 
 public class ChatController extends Controller {
     public ChatController() {
-        clients = new ArrayList<ClientNetworkController>();
+        clients = new CopyOnWriteArrayList<ClientNetworkController>();
     }
 
     /** adds a client to the chat
      * @param client a clientconnect object representing the new client
      */
     public void addClient(ClientNetworkController client) {
-        if(!clients.contains(client))
-            clients.add(client);
-        System.out.println(clients+", "+client);
+        clients.addIfAbsent(client);
+        if(Log.enabled(Log.DEBUG))
+            Log.debug(clients+", "+client);
         broadcastData("SMSG;" + client.client.getName() + " joined");
     }
 
@@ -46,19 +49,23 @@ public class ChatController extends Controller {
      * @param data - data to send
      */
     public void broadcastData(String data) {
-        System.out.println("br: "+data);
-        for(int i=0;i<clients.size();i++)
-            clients.get(i).sendMessage(data);
+        if(isTraced())
+            Log.always("br: "+data);
+        OutboundMessage message = new OutboundMessage(data);
+        for(ClientNetworkController client : clients)
+            client.sendMessage(message);
     }
 
     /**
      * handles incoming data from a client
      * @param client the client sending the data
+     * @param opcode the data's opcode
      * @param command the data to handle
      */
-    public void handleData(ClientNetworkController client, String command) {
-        System.out.println("lobby handling message: "+command);
-        if(command.indexOf("MSG;") == 0) {
+    public void handleData(ClientNetworkController client, int opcode, String command) {
+        if(client.isTraced())
+            Log.always("lobby handling message: "+command);
+        if(opcode == Protocol.MSG) {
             //if incoming starts with MSG;, check for commands
             String message = command.substring(4);
             if(message.indexOf("/nick ")==0) {
@@ -72,6 +79,37 @@ public class ChatController extends Controller {
                 //edu.ucsb.cs56.W12.jcolicchio.issue535.JavaServer.broadcastMessage("OP;"+client.name);
                 client.client.setOp(true);
                 JavaServer.broadcastMessage("SMSG;"+client.client.getName()+" is OP! Run for your lives!");
+            } else if(message.indexOf("/trace ") == 0) {
+                //turn tracing on or off for a user, or for this service with /trace here
+                if(!client.client.isOp()) {
+                    client.fromServer("You cannot trace unless you are an OP");
+                    return;
+                }
+                String target = message.substring(7);
+                if(target.equals("here")) {
+                    tracing = !tracing;
+                    client.fromServer("Tracing for "+name+" is "+(tracing?"on":"off"));
+                    return;
+                }
+                ClientNetworkController traced = JavaServer.findClient(target);
+                if(traced == null) {
+                    client.fromServer(target+" not on server!");
+                    return;
+                }
+                traced.tracing = !traced.tracing;
+                client.fromServer("Tracing for "+traced.client.getName()+" is "+(traced.tracing?"on":"off"));
+            } else if(message.indexOf("/loglevel ") == 0) {
+                if(!client.client.isOp()) {
+                    client.fromServer("You cannot change the log level unless you are an OP");
+                    return;
+                }
+                int level = Log.parseLevel(message.substring(10));
+                if(level < 0) {
+                    client.fromServer("Log levels are trace, debug, info, warn, error and off");
+                    return;
+                }
+                Log.level = level;
+                client.fromServer("Log level is now "+Log.levelName(level));
             } else if(message.indexOf("/kick ") == 0 || message.indexOf("/k ") == 0) {
                 if(!client.client.isOp()) {
                     client.fromServer("You cannot kick someone unless you are an OP");
@@ -113,14 +151,15 @@ public class ChatController extends Controller {
                 String[] data = message.substring(5).split(" ");
                 if(data.length < 2)
                     return;
-                int id = JavaServer.findClientByName(data[0]);
-                if(id >= 0) {
+                ClientNetworkController target = JavaServer.findClient(data[0]);
+                if(target != null) {
                     String msg = message.substring(5+data[0].length()+1);
                     //send message back to user
-                    client.sendMessage("RMSG[" + id + "]" + message.substring(5 + data[0].length() + 1));
+                    client.sendMessage("RMSG[" + target.client.getId() + "]" + msg);
 
-                    System.out.println("private message from "+JavaServer.clients.get(id).client.getName()+" to "+data[0]+": "+msg);
-                    JavaServer.clients.get(id).sendMessage("PMSG["+client.client.getId()+"]"+msg);
+                    if(Log.enabled(Log.DEBUG))
+                        Log.debug("private message from "+client.client.getName()+" to "+data[0]+": "+msg);
+                    target.sendMessage("PMSG["+client.client.getId()+"]"+msg);
                 } else {
                     client.sendMessage("SMSG;" + data[0] + " not on server!");
                 }
@@ -133,7 +172,7 @@ public class ChatController extends Controller {
             } else if(message.indexOf("/new ") == 0) {
                 String serviceName = message.substring(5);
                 int pid = JavaServer.findServiceByName(serviceName,true);
-                System.out.println("service "+pid+" was found!");
+                Log.debug("service "+pid+" was found!");
                 if(pid < 0 || pid >= JavaServer.services.size())
                     return;
                 Controller service = JavaServer.services.get(pid);
@@ -141,17 +180,19 @@ public class ChatController extends Controller {
             } else if(message.indexOf("/join ") == 0) {
                 String serviceName = message.substring(6);
                 int pid = JavaServer.findServiceByName(serviceName,false);
-                System.out.println("service "+pid+" was found!");
+                Log.debug("service "+pid+" was found!");
                 if(pid < 0 || pid >= JavaServer.services.size())
                     return;
                 Controller service = JavaServer.services.get(pid);
                 switchServices(client, service);
             } else if(message.indexOf("/follow ") == 0) {
                 String name = message.substring(8);
-                int id = JavaServer.findClientByName(name);
-                if(id < 0)
+                ClientNetworkController target = JavaServer.findClient(name);
+                if(target == null) {
+                    client.sendMessage("SMSG;" + name + " not on server!");
                     return;
-                Controller service = JavaServer.services.get(JavaServer.clients.get(id).client.getLocation());
+                }
+                Controller service = JavaServer.services.get(target.client.getLocation());
                 switchServices(client, service);
             } else
                 broadcastData("MSG["+client.client.getId()+"]"+message);
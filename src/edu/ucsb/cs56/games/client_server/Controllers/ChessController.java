@@ -1,6 +1,13 @@
 package edu.ucsb.cs56.games.client_server.Controllers;
 
+import java.util.Base64;
+
+import edu.ucsb.cs56.games.client_server.Log;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.ChessBotNetworkController;
 import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.OutboundMessage;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Protocol;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Tokenizer;
 import edu.ucsb.cs56.games.client_server.Models.ChessModel;
 
 /**
@@ -15,11 +22,6 @@ import edu.ucsb.cs56.games.client_server.Models.ChessModel;
 public class ChessController extends TwoPlayerGameController {
     public ChessModel gameData;
 
-    public ClientNetworkController player1;
-    public ClientNetworkController player2;
-
-    public boolean gameStarted;
-
     /**
      * start the service with id number ID
      * @param ID id of the service
@@ -37,6 +39,7 @@ public class ChessController extends TwoPlayerGameController {
      */
     public void init() {
         gameData.init();
+        changed();
         broadcastData("INIT;");
     }
 
@@ -48,12 +51,14 @@ public class ChessController extends TwoPlayerGameController {
         if(player1 == null) {
             player1 = client;
             gameData.player1 = client.client;
+            changed();
         } else if(player2 == null && player1 != client) {
             player2 = client;
             gameData.player2 = client.client;
             gameStarted = true;
-            System.out.println("ready to play: "+player1.client.getId()+" vs "+player2.client.getId());
+            Log.info("ready to play: "+player1.client.getId()+" vs "+player2.client.getId());
             gameData.init();
+            changed();
         }
 
         updateAll();
@@ -83,52 +88,73 @@ public class ChessController extends TwoPlayerGameController {
             gameData.init();
         }
 
+        changed();
         updateAll();
     }
 
+    protected ChessBotNetworkController newBot() {
+        return new ChessBotNetworkController(this);
+    }
+
     //get move from player, if it's their turn
 
     /**
-     * handle data from server
+     * handle data from server, with the room locked
      * @param client the client sending the data
      * @param string data to handle
+     * @return false if it's chat, for ChatController
      */
-    public void handleData(ClientNetworkController client, String string) {
-        if(string.indexOf("PLAY;") == 0)
-            playClient(client);
-        else if(string.indexOf("SPEC;") == 0)
-            specClient(client);
-        else if(string.indexOf("MSG;") == 0) {
-            String message = string.substring(4);
-            if(message.indexOf("/play")==0) {
+    protected boolean handleGame(ClientNetworkController client, int opcode, String string) {
+        switch(opcode) {
+            case Protocol.PLAY:
                 playClient(client);
-            } else if(message.indexOf("/spec") == 0) {
+                return true;
+            case Protocol.SPEC:
                 specClient(client);
-            } else if(message.indexOf("/newgame") == 0) {
-                if(client == player1 || client == player2)
-                    init();
-            } else
-                super.handleData(client, string);
+                return true;
+            case Protocol.MSG:
+                String message = string.substring(4);
+                if(message.indexOf("/play")==0) {
+                    playClient(client);
+                } else if(message.indexOf("/spec") == 0) {
+                    specClient(client);
+                } else if(message.indexOf("/bot") == 0) {
+                    addBot(client);
+                } else if(message.indexOf("/newgame") == 0) {
+                    if(client == player1 || client == player2)
+                        init();
+                } else
+                    return false;
+                return true;
+            case Protocol.MOVE:
+            case Protocol.PROMOTE:
+                break;
+            default:
+                return true;
         }
         //TODO: new standard for sending information about the service to the client
 
-        if(!gameStarted || gameData.winner > 0)
-            return;
-        System.out.println(gameData.turn+", "+client.client.getId()+", "+player1.client.getId()+":"+player2.client.getId());
+        if(!gameStarted || gameData.winner != 0)
+            return true;
+        if(client.isTraced())
+            Log.always(gameData.turn+", "+client.client.getId()+", "+player1.client.getId()+":"+player2.client.getId());
         if(gameData.turn == 1 && client != player1)
-            return;
+            return true;
         if(gameData.turn == 2 && client != player2)
-            return;
-        if(string.indexOf("MOVE;") == 0) {
-            System.out.println("got move command from "+client.client.getId()+": "+string);
-            String[] data = string.substring(5).split(",");
-            int X1 = Integer.parseInt(data[0]);
-            int Y1 = Integer.parseInt(data[1]);
-            int X2 = Integer.parseInt(data[2]);
-            int Y2 = Integer.parseInt(data[3]);
+            return true;
+        if(opcode == Protocol.MOVE) {
+            if(client.isTraced())
+                Log.always("got move command from "+client.client.getId()+": "+string);
+            Tokenizer data = client.tokens.reset(string, 5);
+            int X1 = data.nextInt();
+            int Y1 = data.nextInt();
+            int X2 = data.nextInt();
+            int Y2 = data.nextInt();
 
             if(gameData.tryMove(X1,Y1,X2,Y2)) {
-                System.out.println("move went through");
+                if(client.isTraced())
+                    Log.always("move went through");
+                changed();
                 char piece = gameData.grid[Y2][X2];
                 //intercept castling and en passant here, don't send move[]
                 if(Character.toLowerCase(piece) == 'p' && Y2 == (Character.isUpperCase(piece)?0:7)) {
@@ -136,46 +162,86 @@ public class ChessController extends TwoPlayerGameController {
                 } else {
                     gameData.turn = 3-gameData.turn;
                     broadcastData("MOVE[" + gameData.turn + "]"+X1+","+Y1+","+X2+","+Y2);
-                    if(gameData.checkWinner())
-                        broadcastData("WINNER;"+gameData.winner);
+                    endTurn();
                 }
             }
-        } else if(string.indexOf("PROMOTE;") == 0) {
-            String[] data = string.substring(8).split(",");
-            int X = Integer.parseInt(data[0]);
-            int Y = Integer.parseInt(data[1]);
-            char piece = data[2].charAt(0);
-            gameData.grid[Y][X] = piece;
+        } else {
+            Tokenizer data = client.tokens.reset(string, 8);
+            int X = data.nextInt();
+            int Y = data.nextInt();
+            char piece = data.nextChar();
+            if(!gameData.promote(X, Y, piece))
+                return true;
             gameData.turn = 3-gameData.turn;
+            changed();
             broadcastData("PROMOTE;"+X+","+Y+","+piece);
-            if(gameData.checkWinner())
-                broadcastData("WINNER;"+gameData.winner);
+            endTurn();
         }
+        return true;
+    }
+
+    /**
+     * after a move is finished, see if the game is over, by checkmate or stalemate, or by a draw on repetition or
+     * the fifty move rule so games can't go around in circles forever
+     */
+    void endTurn() {
+        if(gameData.checkWinner()) {
+            changed();
+            broadcastData("WINNER;"+gameData.winner);
+            return;
+        }
+        int draw = gameData.drawReason();
+        if(draw == ChessModel.NO_DRAW)
+            return;
+        gameData.winner = -1;
+        changed();
+        if(draw == ChessModel.REPETITION)
+            broadcastData("SMSG;Draw, the same position came up three times");
+        else
+            broadcastData("SMSG;Draw, fifty moves without a capture or a pawn move");
+        broadcastData("WINNER;"+gameData.winner);
     }
 
     //sends the state of the game to a player
 
     /**
-     * send the client the state of the game
+     * the whole game two ways: one POS message with the players, then the board with castling, en passant and move
+     * counters packed into a few bytes, and the STATE and PLAYERS messages clients that don't read POS get
+     * @return the messages, POS first
+     */
+    protected OutboundMessage[] buildSnapshot() {
+        StringBuilder position = new StringBuilder(64);
+        position.append("POS[");
+        position.append(gameData.player1 != null ? gameData.player1.getId() : -1).append(',');
+        position.append(gameData.player2 != null ? gameData.player2.getId() : -1).append(']');
+        position.append(Base64.getEncoder().withoutPadding().encodeToString(gameData.pack()));
+        StringBuilder players = new StringBuilder(24);
+        players.append("PLAYERS;");
+        players.append(gameData.player1 != null ? gameData.player1.getId() : -1).append(',');
+        players.append(gameData.player2 != null ? gameData.player2.getId() : -1);
+        return new OutboundMessage[] {new OutboundMessage(position.toString()),
+                new OutboundMessage(gameData.getState()), new OutboundMessage(players.toString())};
+    }
+
+    /**
+     * send the client the whole game, as the POS message if it reads those or STATE and PLAYERS if it doesn't, the
+     * same messages everyone gets until the next change
      * @param client client to send to
      */
     public void sendGameState(ClientNetworkController client) {
         if(client == null)
             return;
-        synchronized (clients) {
-            client.sendMessage(gameData.getState());
-            String players = "PLAYERS;";
-            if(gameData.player1 != null)
-                players += gameData.player1.getId();
-            else
-                players += "-1";
-            players += ",";
-            if(gameData.player2 != null)
-                players += gameData.player2.getId();
-            else
-                players += "-1";
-
-            client.sendMessage(players);
+        OutboundMessage[] snapshot = snapshot();
+        if(client.readsPos) {
+            client.sendMessage(snapshot[0]);
+            return;
+        }
+        client.writeLock.lock();
+        try {
+            client.sendMessage(snapshot[1]);
+            client.sendMessage(snapshot[2]);
+        } finally {
+            client.writeLock.unlock();
         }
     }
 }
\ No newline at end of file
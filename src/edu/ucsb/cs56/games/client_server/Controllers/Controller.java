@@ -1,7 +1,9 @@
 package edu.ucsb.cs56.games.client_server.Controllers;
 
 import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import edu.ucsb.cs56.games.client_server.Log;
 import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkController;
 
 /**
@@ -16,7 +18,10 @@ import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkContro
 public abstract class Controller{
     private static ArrayList<String> serviceList;
     private static int numServices;
-    public ArrayList<ClientNetworkController> clients;
+    //copy on write, so a broadcast walks a snapshot and never holds up somebody joining or leaving
+    public CopyOnWriteArrayList<ClientNetworkController> clients;
+    //log everything this service sends and receives, whatever the log level is
+    public volatile boolean tracing;
     public String name;
     public int id;
     public int type;
@@ -57,6 +62,14 @@ public abstract class Controller{
         return serviceList.get(n);
     }
 
+    /**
+     * whether this service's traffic should be logged
+     * @return if this service, or everything, is being traced
+     */
+    public boolean isTraced() {
+        return tracing || Log.level == Log.TRACE;
+    }
+
     /**
      * add a client to this service
      * @param client client to add
@@ -78,9 +91,10 @@ public abstract class Controller{
     /**
      * handle incoming data from a client
      * @param client client sending the data
+     * @param opcode the data's opcode, from Protocol.opcode
      * @param data data to handle
      */
-    public abstract void handleData(ClientNetworkController client, String data);
+    public abstract void handleData(ClientNetworkController client, int opcode, String data);
 
     /**
      * switch a client from one service to another
@@ -1,6 +1,11 @@
 package edu.ucsb.cs56.games.client_server.Controllers;
 
+import edu.ucsb.cs56.games.client_server.Log;
 import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.GomokuBotNetworkController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.OutboundMessage;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Protocol;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Tokenizer;
 import edu.ucsb.cs56.games.client_server.Models.GomokuModel;
 
 /**
@@ -13,11 +18,6 @@ import edu.ucsb.cs56.games.client_server.Models.GomokuModel;
 public class GomokuController extends TwoPlayerGameController {
     public GomokuModel gameData;
 
-    public ClientNetworkController player1;
-    public ClientNetworkController player2;
-
-    public boolean gameStarted;
-
     /**
      * start gomoku service with id ID
      * @param ID id of service
@@ -35,7 +35,9 @@ public class GomokuController extends TwoPlayerGameController {
      */
     public void init(int SIZE) {
         gameData.init(SIZE);
-        broadcastData("SIZE;"+SIZE);
+        changed();
+        broadcastData("SIZE;"+gameData.cells);
+        sentAll(gameData.log.stamp());
     }
 
     /**
@@ -43,7 +45,9 @@ public class GomokuController extends TwoPlayerGameController {
      */
     public void init() {
         gameData.init(9);
+        changed();
         broadcastData("INIT;");
+        sentAll(gameData.log.stamp());
     }
 
     /**
@@ -51,8 +55,14 @@ public class GomokuController extends TwoPlayerGameController {
      * @param client clientconnect object to add
      */
     public void addClient(ClientNetworkController client) {
-        super.addClient(client);
-        client.sendMessage("SIZE;"+gameData.cells);
+        lock.lock();
+        try {
+            //the size goes first, a client clears its board when it hears one
+            client.sendMessage("SIZE;"+gameData.cells);
+            super.addClient(client);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -63,12 +73,14 @@ public class GomokuController extends TwoPlayerGameController {
         if(player1 == null) {
             player1 = client;
             gameData.player1 = client.client;
+            changed();
         } else if(player2 == null && player1 != client) {
             player2 = client;
             gameData.player2 = client.client;
             gameStarted = true;
-            System.out.println("ready to play: "+player1.client.getId()+" vs "+player2.client.getId());
+            Log.info("ready to play: "+player1.client.getId()+" vs "+player2.client.getId());
             gameData.init(gameData.cells);
+            changed();
         }
 
         updateAll();
@@ -98,62 +110,97 @@ public class GomokuController extends TwoPlayerGameController {
             gameData.init(gameData.cells);
         }
 
+        changed();
         updateAll();
     }
 
+    protected GomokuBotNetworkController newBot() {
+        return new GomokuBotNetworkController(this);
+    }
+
     //get move from player, if it's their turn
 
     /**
-     * handle info from client
+     * handle info from client, with the room locked
      * @param client the client sending the data
      * @param string data to handle
+     * @return false if it's chat, for ChatController
      */
-    public void handleData(ClientNetworkController client, String string) {
-        if(string.indexOf("PLAY;") == 0)
-            playClient(client);
-        else if(string.indexOf("SPEC;") == 0)
-            specClient(client);
-        else if(string.indexOf("SIZE;") == 0) {
-            int size = Integer.parseInt(string.substring(5));
-            init(size);
-        } else if(string.indexOf("MSG;") == 0) {
-            String message = string.substring(4);
-            if(message.indexOf("/play")==0) {
+    protected boolean handleGame(ClientNetworkController client, int opcode, String string) {
+        switch(opcode) {
+            case Protocol.PLAY:
                 playClient(client);
-            } else if(message.indexOf("/spec") == 0) {
+                return true;
+            case Protocol.SPEC:
                 specClient(client);
-            } else if(message.indexOf("/newgame") == 0) {
-                if(client == player1 || client == player2)
-                    init(gameData.cells);
-            } else
-                super.handleData(client, string);
+                return true;
+            case Protocol.SIZE:
+                int size = client.tokens.reset(string, 5).nextInt();
+                init(size);
+                return true;
+            case Protocol.MSG:
+                String message = string.substring(4);
+                if(message.indexOf("/play")==0) {
+                    playClient(client);
+                } else if(message.indexOf("/spec") == 0) {
+                    specClient(client);
+                } else if(message.indexOf("/bot") == 0) {
+                    addBot(client);
+                } else if(message.indexOf("/newgame") == 0) {
+                    if(client == player1 || client == player2)
+                        init(gameData.cells);
+                } else
+                    return false;
+                return true;
+            case Protocol.MOVE:
+                break;
+            default:
+                return true;
         }
 
         if(!gameStarted || gameData.winner > 0)
-            return;
-        System.out.println(gameData.turn+", "+client.client.getId()+", "+player1.client.getId()+":"+player2.client.getId());
+            return true;
+        if(client.isTraced())
+            Log.always(gameData.turn+", "+client.client.getId()+", "+player1.client.getId()+":"+player2.client.getId());
         if(gameData.turn == 1 && client != player1)
-            return;
+            return true;
         if(gameData.turn == 2 && client != player2)
-            return;
+            return true;
 
         //this is an optional setting, some games may use it, eventually implement rule checkboxes
         //TODO: disallow moves that result in forming two 3's, (unblocked?), or 2 4's, blocked or unblocked
-        if(string.indexOf("MOVE;") == 0) {
-            System.out.println("got move command from "+client.client.getId()+": "+string);
-            String[] data = string.substring(5).split(",");
-            int X = Integer.parseInt(data[0]);
-            int Y = Integer.parseInt(data[1]);
-
-            if(gameData.grid[Y][X] != 0)
-                return;
-
-            gameData.grid[Y][X] = gameData.turn;
-            broadcastData("MOVE[" + gameData.turn + "]" + X + "," + Y);
-            if(gameData.checkWinner())
-                broadcastData("WINNER;"+gameData.winner);
-            gameData.turn = 3-gameData.turn;
-        }
+        if(client.isTraced())
+            Log.always("got move command from "+client.client.getId()+": "+string);
+        Tokenizer data = client.tokens.reset(string, 5);
+        int X = data.nextInt();
+        int Y = data.nextInt();
+
+        if(X < 0 || Y < 0 || X >= gameData.cells || Y >= gameData.cells || gameData.get(X, Y) != 0)
+            return true;
+
+        //the turn passes before anyone hears about the move, so a bot hearing it sees whose turn it really is
+        int team = gameData.turn;
+        gameData.play(X, Y, team);
+        boolean won = gameData.checkWinner(X, Y);
+        gameData.turn = 3-team;
+        changed();
+        broadcastData("MOVE[" + team + "]" + X + "," + Y);
+        if(won)
+            broadcastData("WINNER;"+gameData.winner);
+        sentAll(gameData.log.stamp());
+        return true;
+    }
+
+    /**
+     * the whole board as a STATE message, and who's playing as a PLAYERS message
+     * @return the messages
+     */
+    protected OutboundMessage[] buildSnapshot() {
+        StringBuilder players = new StringBuilder(24);
+        players.append("PLAYERS;");
+        players.append(gameData.player1 != null ? gameData.player1.getId() : -1).append(',');
+        players.append(gameData.player2 != null ? gameData.player2.getId() : -1);
+        return new OutboundMessage[] {new OutboundMessage(gameData.getState()), new OutboundMessage(players.toString())};
     }
 
     //sends the state of the game to a player
@@ -165,20 +212,19 @@ public class GomokuController extends TwoPlayerGameController {
     public void sendGameState(ClientNetworkController client) {
         if(client == null)
             return;
-        synchronized (client) {
-            client.sendMessage(gameData.getState());
-            String players = "PLAYERS;";
-            if(gameData.player1 != null)
-                players += gameData.player1.getId();
-            else
-                players += "-1";
-            players += ",";
-            if(gameData.player2 != null)
-                players += gameData.player2.getId();
+        client.writeLock.lock();
+        try {
+            OutboundMessage[] snapshot = snapshot();
+            //just the moves the client hasn't heard about, if that's shorter than the whole board
+            String delta = (deltas ? gameData.getDelta(sent(client)) : null);
+            if(delta != null)
+                client.sendMessage(delta);
             else
-                players += "-1";
-
-            client.sendMessage(players);
+                client.sendMessage(snapshot[0]);
+            sent.put(client, gameData.log.stamp());
+            client.sendMessage(snapshot[1]);
+        } finally {
+            client.writeLock.unlock();
         }
     }
 }
\ No newline at end of file
@@ -1,8 +1,9 @@
 package edu.ucsb.cs56.games.client_server.Controllers;//Lobbyservice is a service that newly connecting players join by default
 //it
 
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import edu.ucsb.cs56.games.client_server.Log;
 import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkController;
 /**
  * Since all clients need an "active service" to be connected to, which listens to input, lobby service is a service that
@@ -17,14 +18,15 @@ public class LobbyController extends ChatController {
     public LobbyController(int ID) {
         id = ID;
         type = 0;
-        clients = new ArrayList<ClientNetworkController>();
+        clients = new CopyOnWriteArrayList<ClientNetworkController>();
         name = "Lobby";
     }
     
     @Override
-    public void handleData(ClientNetworkController client, String data) {
-        System.out.println("lobby "+id+" handled it");
-        super.handleData(client, data);
+    public void handleData(ClientNetworkController client, int opcode, String data) {
+        if(client.isTraced())
+            Log.always("lobby "+id+" handled it");
+        super.handleData(client, opcode, data);
         //for now, treat chat messages like client commands
     }
 }
\ No newline at end of file
@@ -0,0 +1,410 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * BinaryProtocol is the same messages as the text protocol, packed smaller. a frame is the length of the rest of the
+ * frame as a varint, then a format byte, then the message's fields. the format byte picks one of FORMATS, which says
+ * what the opcode is and how the text lays its fields out, so the punctuation never goes over the wire: a number is
+ * a zigzag varint, a list is how long it is and then its items, the text at the end of a chat message or a name is
+ * just its UTF-8 bytes, running to the end of the frame, and the packed chess position in a POS goes as the bytes
+ * themselves instead of base64. anything that doesn't fit a format, like a chess STATE or a number with a leading
+ * zero, goes as format 0, the message's text as it is, so every message turns back into exactly the text it was.
+ * everything past the socket still only ever sees the text
+ *
+ * nobody has to speak it. the server says BIN;1 first thing, which text clients ignore. a client that wants frames
+ * answers BIN;1 and sends nothing but frames after it, and the server sends one more BIN;1 line when it switches,
+ * so the client knows where the server's text stops. version 1 means this FORMATS table, adding a format means a
+ * new version
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class BinaryProtocol {
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public static final int VERSION = 1;
+    //a frame longer than this is dropped instead of buffered, like a line that long
+    public static final int MAX_FRAME = 64*1024;
+    //whether the server offers frames at all, or just talks text to everyone like it used to
+    public static boolean offered = true;
+
+    //the message as text, for anything no format fits
+    static final int RAW = 0;
+
+    /**
+     * how a message's fields are laid out after its opcode: # is a number, $ is the rest of the message as text,
+     * % is the rest of the message as base64, a list (...) is any number of what's inside, each one starting with
+     * its first character, and anything else is punctuation that has to be there
+     */
+    static final Object[][] FORMATS = {
+        {Protocol.UNKNOWN, null},
+        {Protocol.CON, ";#"},
+        {Protocol.CON, ";"},
+        {Protocol.DCON, "[#]$"},
+        {Protocol.DCON, ";$"},
+        {Protocol.INFO, ";"},
+        {Protocol.NAME, "[#]$"},
+        {Protocol.NAME, ";$"},
+        {Protocol.MSG, "[#]$"},
+        {Protocol.MSG, ";$"},
+        {Protocol.PMSG, "[#]$"},
+        {Protocol.PMSG, ";$"},
+        {Protocol.RMSG, "[#]$"},
+        {Protocol.SMSG, ";$"},
+        {Protocol.ID, ";#"},
+        {Protocol.ALL, ";$"},
+        {Protocol.SERV, ";#(,#)"},
+        {Protocol.NEW, ";#"},
+        {Protocol.MOVED, "[#]#"},
+        {Protocol.PLAY, ";"},
+        {Protocol.SPEC, ";"},
+        {Protocol.MOVE, "[#]#,#"},
+        {Protocol.MOVE, "[#]#,#,#,#"},
+        {Protocol.MOVE, ";#,#"},
+        {Protocol.MOVE, ";#,#,#,#"},
+        {Protocol.PROMOTE, "[#]#,#,#,#"},
+        {Protocol.PROMOTE, ";#,#,$"},
+        {Protocol.SIZE, ";#"},
+        {Protocol.STATE, "[#]#(,#)(;#(,#))"},
+        {Protocol.PLAYERS, ";#,#"},
+        {Protocol.WINNER, ";#"},
+        {Protocol.INIT, ";"},
+        {Protocol.POS, "[#,#]%"},
+        {Protocol.DELTA, "[#]#(;#,#,#)"},
+        {Protocol.BIN, ";#"},
+    };
+
+    //the formats for each opcode, in the order they're tried
+    static final int[][] BY_OPCODE = new int[Protocol.NAMES.length][];
+
+    static {
+        for(int op=0;op<BY_OPCODE.length;op++)
+            BY_OPCODE[op] = new int[0];
+        for(int format=1;format<FORMATS.length;format++) {
+            int op = (Integer)FORMATS[format][0];
+            int[] list = Arrays.copyOf(BY_OPCODE[op], BY_OPCODE[op].length+1);
+            list[list.length-1] = format;
+            BY_OPCODE[op] = list;
+        }
+    }
+
+    /**
+     * a growing byte array, for putting a frame together
+     */
+    static class Buffer {
+        byte[] data = new byte[64];
+        int length;
+
+        void write(int b) {
+            if(length == data.length)
+                data = Arrays.copyOf(data, length*2);
+            data[length++] = (byte)b;
+        }
+
+        void write(byte[] bytes) {
+            if(length+bytes.length > data.length)
+                data = Arrays.copyOf(data, Math.max(length*2, length+bytes.length));
+            System.arraycopy(bytes, 0, data, length, bytes.length);
+            length += bytes.length;
+        }
+
+        void writeVarint(int value) {
+            while((value & ~0x7f) != 0) {
+                write(value&0x7f | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+    }
+
+    /**
+     * pack a message into a frame
+     * @param text the message, without a newline
+     * @return the frame, length included
+     */
+    public static byte[] encode(String text) {
+        Buffer payload = new Buffer();
+        int op = Protocol.opcode(text);
+        int[] formats = BY_OPCODE[op];
+        int start = (op == Protocol.UNKNOWN ? 0 : Protocol.name(op).length());
+        boolean packed = false;
+        for(int i=0;i<formats.length && !packed;i++) {
+            String format = (String)FORMATS[formats[i]][1];
+            payload.length = 0;
+            payload.write(formats[i]);
+            packed = (match(format, 0, format.length(), text, start, payload) == text.length());
+        }
+        if(!packed) {
+            payload.length = 0;
+            payload.write(RAW);
+            payload.write(text.getBytes(UTF8));
+        }
+        Buffer frame = new Buffer();
+        frame.writeVarint(payload.length);
+        byte[] bytes = Arrays.copyOf(frame.data, frame.length+payload.length);
+        System.arraycopy(payload.data, 0, bytes, frame.length, payload.length);
+        return bytes;
+    }
+
+    /**
+     * match part of a format against text, writing the fields out as it goes
+     * @param out where the fields go, or null to just see if it matches
+     * @return where in the text the match ended, or -1 if it didn't
+     */
+    static int match(String format, int from, int to, String text, int pos, Buffer out) {
+        for(int f=from;f<to;f++) {
+            char c = format.charAt(f);
+            if(c == '#') {
+                long number = number(text, pos);
+                if(number < 0)
+                    return -1;
+                if(out != null) {
+                    int value = (int)number;
+                    out.writeVarint(value<<1 ^ value>>31);
+                }
+                pos = (int)(number>>>32);
+            } else if(c == '$') {
+                if(out != null)
+                    out.write(text.substring(pos).getBytes(UTF8));
+                pos = text.length();
+            } else if(c == '%') {
+                byte[] bytes;
+                try {
+                    bytes = Base64.getDecoder().decode(text.substring(pos));
+                } catch(IllegalArgumentException ex) {
+                    return -1;
+                }
+                //only if it comes back as the same text
+                if(!Base64.getEncoder().withoutPadding().encodeToString(bytes).equals(text.substring(pos)))
+                    return -1;
+                if(out != null)
+                    out.write(bytes);
+                pos = text.length();
+            } else if(c == '(') {
+                int close = closing(format, f);
+                int count = 0;
+                int end = pos;
+                while(end < text.length() && text.charAt(end) == format.charAt(f+1)) {
+                    end = match(format, f+1, close, text, end, null);
+                    if(end < 0)
+                        return -1;
+                    count++;
+                }
+                if(out != null) {
+                    out.writeVarint(count);
+                    for(int i=0;i<count;i++)
+                        pos = match(format, f+1, close, text, pos, out);
+                }
+                pos = end;
+                f = close;
+            } else {
+                if(pos >= text.length() || text.charAt(pos) != c)
+                    return -1;
+                pos++;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * read a number written the way Integer.toString writes it, so it comes back as the same text
+     * @return the index after it in the high 32 bits and the number in the low ones, or -1 if there isn't one at pos
+     */
+    static long number(String text, int pos) {
+        boolean negative = (pos < text.length() && text.charAt(pos) == '-');
+        if(negative)
+            pos++;
+        int digits = pos;
+        long value = 0;
+        while(pos < text.length() && text.charAt(pos) >= '0' && text.charAt(pos) <= '9' && pos-digits < 10)
+            value = value*10+(text.charAt(pos++)-'0');
+        int length = pos-digits;
+        if(length == 0 || pos < text.length() && text.charAt(pos) >= '0' && text.charAt(pos) <= '9')
+            return -1;
+        //no leading zeros, and no -0
+        if(text.charAt(digits) == '0' && (length > 1 || negative))
+            return -1;
+        if(negative)
+            value = -value;
+        if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            return -1;
+        return (long)pos<<32 | (value & 0xffffffffL);
+    }
+
+    static int closing(String format, int open) {
+        int depth = 0;
+        for(int i=open;i<format.length();i++) {
+            if(format.charAt(i) == '(')
+                depth++;
+            else if(format.charAt(i) == ')' && --depth == 0)
+                return i;
+        }
+        throw new IllegalStateException("unbalanced format "+format);
+    }
+
+    /**
+     * turn a frame's payload back into the message's text
+     * @param data holds the payload
+     * @param offset where the payload starts, just after the length
+     * @param length how long the payload is
+     * @return the message, without a newline
+     * @throws IllegalArgumentException if the payload isn't a message
+     */
+    public static String decode(byte[] data, int offset, int length) {
+        if(length < 1)
+            throw new IllegalArgumentException("empty frame");
+        int format = data[offset]&0xff;
+        if(format == RAW)
+            return new String(data, offset+1, length-1, UTF8);
+        if(format >= FORMATS.length)
+            throw new IllegalArgumentException("no format "+format);
+        String layout = (String)FORMATS[format][1];
+        StringBuilder text = new StringBuilder(16+2*length);
+        text.append(Protocol.name((Integer)FORMATS[format][0]));
+        int[] pos = {offset+1};
+        unpack(layout, 0, layout.length(), data, pos, offset+length, text);
+        if(pos[0] != offset+length)
+            throw new IllegalArgumentException("frame too long for its format");
+        return text.toString();
+    }
+
+    /**
+     * the other way from match
+     * @param pos where in data the next field is, moved along as fields are read
+     */
+    static void unpack(String format, int from, int to, byte[] data, int[] pos, int end, StringBuilder text) {
+        for(int f=from;f<to;f++) {
+            char c = format.charAt(f);
+            if(c == '#') {
+                int value = readVarint(data, pos, end);
+                text.append(value>>>1 ^ -(value&1));
+            } else if(c == '$') {
+                text.append(new String(data, pos[0], end-pos[0], UTF8));
+                pos[0] = end;
+            } else if(c == '%') {
+                text.append(Base64.getEncoder().withoutPadding().encodeToString(Arrays.copyOfRange(data, pos[0], end)));
+                pos[0] = end;
+            } else if(c == '(') {
+                int close = closing(format, f);
+                int count = readVarint(data, pos, end);
+                //every item has at least one number in it, so there can't be more items than bytes left
+                if(count < 0 || count > end-pos[0])
+                    throw new IllegalArgumentException("bad list length "+count);
+                for(int i=0;i<count;i++)
+                    unpack(format, f+1, close, data, pos, end, text);
+                f = close;
+            } else
+                text.append(c);
+        }
+    }
+
+    static int readVarint(byte[] data, int[] pos, int end) {
+        int value = 0;
+        for(int shift=0;shift<35;shift+=7) {
+            if(pos[0] >= end)
+                throw new IllegalArgumentException("frame ends in the middle of a number");
+            int b = data[pos[0]++];
+            value |= (b&0x7f)<<shift;
+            if((b&0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("number too long");
+    }
+
+    /**
+     * read a frame's length off the front of some bytes
+     * @param data the bytes
+     * @param offset where the frame starts
+     * @param end where the bytes run out
+     * @return the length in the low 32 bits and how many bytes it took up above them, or -1 if the bytes run out first
+     * @throws IllegalArgumentException if the length is bigger than MAX_FRAME
+     */
+    public static long frameLength(byte[] data, int offset, int end) {
+        int value = 0;
+        for(int i=0;i<3;i++) {
+            if(offset+i >= end)
+                return -1;
+            int b = data[offset+i];
+            value |= (b&0x7f)<<(7*i);
+            if((b&0x80) == 0) {
+                if(value > MAX_FRAME)
+                    throw new IllegalArgumentException("frame too long");
+                return (long)(i+1)<<32 | value;
+            }
+        }
+        throw new IllegalArgumentException("frame too long");
+    }
+
+    /**
+     * read a whole frame from a stream
+     * @param in the stream, buffered
+     * @return the message, or null if the stream ended between frames
+     * @throws IOException if the read fails, or the stream ends in the middle of a frame
+     */
+    public static String readFrame(InputStream in) throws IOException {
+        int length = 0;
+        for(int shift=0;;shift+=7) {
+            int b = in.read();
+            if(b < 0) {
+                if(shift == 0)
+                    return null;
+                throw new EOFException();
+            }
+            length |= (b&0x7f)<<shift;
+            if((b&0x80) == 0)
+                break;
+            if(shift >= 14)
+                throw new IOException("frame too long");
+        }
+        if(length > MAX_FRAME)
+            throw new IOException("frame too long");
+        byte[] payload = new byte[length];
+        for(int read=0;read<length;) {
+            int n = in.read(payload, read, length-read);
+            if(n < 0)
+                throw new EOFException();
+            read += n;
+        }
+        try {
+            return decode(payload, 0, length);
+        } catch(IllegalArgumentException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    /**
+     * read a line of text from a stream, a byte at a time so nothing past the newline gets read, in case frames start
+     * right after it
+     * @param in the stream, buffered
+     * @return the line without its newline, or null if the stream ended
+     * @throws IOException if the read fails, or the line is longer than MAX_FRAME
+     */
+    public static String readLine(InputStream in) throws IOException {
+        byte[] line = new byte[128];
+        int length = 0;
+        int b;
+        while((b = in.read()) != '\n') {
+            if(b < 0) {
+                if(length == 0)
+                    return null;
+                break;
+            }
+            if(length == line.length) {
+                if(length >= MAX_FRAME)
+                    throw new IOException("line too long");
+                line = Arrays.copyOf(line, length*2);
+            }
+            line[length++] = (byte)b;
+        }
+        if(length > 0 && line[length-1] == '\r')
+            length--;
+        return new String(line, 0, length, UTF8);
+    }
+}
@@ -0,0 +1,124 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.ucsb.cs56.games.client_server.JavaServer;
+import edu.ucsb.cs56.games.client_server.Controllers.TwoPlayerGameController;
+import edu.ucsb.cs56.games.client_server.Models.ClientModel;
+
+/**
+ * a bot is a client with no socket, like echo used to be, that sits in one game room and can take one of its seats.
+ * it watches the messages the room sends it, and when the board changes it throws away whatever move it was working
+ * on and, if it's its turn, works out a new one on BotPool's threads, then sends it in just like a real client would.
+ * every board change bumps a generation number, and a move is only sent if the generation is still the one it was
+ * worked out for. the board is read, and the move checked and handed to the room, with the room locked, so a seat
+ * change or a spectator joining can't happen halfway through either. the room sends its bots home when the last
+ * real person leaves
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public abstract class BotNetworkController<R extends TwoPlayerGameController> extends ClientNetworkController {
+    public final R room;
+    final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * make a bot for a room, it has an id and a name but isn't in the room yet
+     * @param room the room it will play in
+     * @param name its name, with a number on the end if somebody already has it
+     */
+    protected BotNetworkController(R room, String name) {
+        super(null);
+        this.room = room;
+        client = new ClientModel(JavaServer.clients.allocateId(), name, room.id);
+        if(!JavaServer.clients.add(this)) {
+            for(int n=2;;n++) {
+                if(JavaServer.clients.claimName(this, name+n)) {
+                    client.setName(name+n);
+                    break;
+                }
+            }
+        }
+        currentService = room;
+    }
+
+    /**
+     * come into the room and sit down, the way a real client would connect, name itself, walk in and type /play
+     */
+    public void join() {
+        JavaServer.updateServerGUI();
+        JavaServer.broadcastMessage("CON;"+client.getId());
+        JavaServer.broadcastMessage("NAME["+client.getId()+"]"+client.getName());
+        JavaServer.broadcastMessage("MOVED["+client.getId()+"]"+room.id);
+        room.lock.lock();
+        try {
+            room.addClient(this);
+            room.playClient(this);
+        } finally {
+            room.lock.unlock();
+        }
+    }
+
+    /**
+     * stop thinking, get up and disconnect
+     */
+    public void leave() {
+        stopThinking();
+        room.removeClient(this);
+        JavaServer.clients.remove(this);
+        JavaServer.broadcastMessage("DCON["+client.getId()+"]Nobody left to play");
+        JavaServer.updateServerGUI();
+    }
+
+    /**
+     * forget about whatever move is being worked out
+     */
+    void stopThinking() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * the board changed, so whatever was being worked out is out of date. if it's the bot's turn now, start on a move
+     */
+    public void think() {
+        room.lock.lock();
+        try {
+            stopThinking();
+            think(generation.get(), team());
+        } finally {
+            room.lock.unlock();
+        }
+    }
+
+    /**
+     * start on a move if it's the bot's turn, called with the room locked. the board can be read here, but anything
+     * that takes time has to happen on BotPool with a copy of it
+     * @param current the generation the move is for, to hand to send
+     * @param team which seat the bot is in, or 0 if it isn't playing
+     */
+    abstract void think(int current, int team);
+
+    /**
+     * which seat the bot is in
+     * @return 1 or 2, or 0 if it's watching
+     */
+    int team() {
+        return (room.player1 == this ? 1 : room.player2 == this ? 2 : 0);
+    }
+
+    /**
+     * send a move in, unless the board changed since it was worked out
+     * @param current the generation the move was worked out for
+     * @param line the move
+     */
+    void send(int current, String line) {
+        room.lock.lock();
+        try {
+            if(generation.get() == current)
+                dispatch(line);
+        } finally {
+            room.lock.unlock();
+        }
+    }
+}
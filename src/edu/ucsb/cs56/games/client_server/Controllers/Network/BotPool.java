@@ -0,0 +1,134 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.ucsb.cs56.games.client_server.Log;
+
+/**
+ * BotPool is the handful of threads every bot on the server thinks on. searching a move can keep a core busy for the
+ * whole move time, so bots get a fixed number of low priority threads between them instead of one each, and however
+ * many bots are playing, the threads reading and writing real clients' sockets always have cores left to run on.
+ * bot moves past what the threads can take wait in a bounded queue, and past that they're turned away.
+ * threads nobody's using can help search a move that's already being searched, through SPARE, so one bot gets every
+ * core and many bots get one each. helpers hand their thread back as soon as another bot's move is waiting for one
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class BotPool {
+    //server-wide settings, changed from the command line before the first bot starts thinking
+    public static int threads = Math.max(1, Runtime.getRuntime().availableProcessors()/2);
+    public static long moveMillis = 1000;
+    public static int queueSize = 256;
+    //most threads one move is searched with, helpers included, never more than threads
+    public static int searchThreads = threads;
+
+    static ThreadPoolExecutor pool;
+    //tasks running right now, moves and helpers both
+    static final AtomicInteger running = new AtomicInteger();
+    //threads running helpers, which get interrupted when a move needs the thread more
+    static final Set<Thread> helping = ConcurrentHashMap.newKeySet();
+
+    /**
+     * starts a helper right away on a free bot thread, or throws RejectedExecutionException if there isn't one or a
+     * move is already waiting for it
+     */
+    public static final Executor SPARE = new Executor() {
+        public void execute(final Runnable task) {
+            ThreadPoolExecutor pool = pool();
+            int now;
+            do {
+                now = running.get();
+                if(now >= threads || !pool.getQueue().isEmpty())
+                    throw new RejectedExecutionException("no free bot threads");
+            } while(!running.compareAndSet(now, now+1));
+            try {
+                pool.execute(new Runnable() {
+                    public void run() {
+                        helping.add(Thread.currentThread());
+                        try {
+                            task.run();
+                        } finally {
+                            helping.remove(Thread.currentThread());
+                            //an interrupt meant for this helper shouldn't stop whatever runs next
+                            Thread.interrupted();
+                            running.decrementAndGet();
+                        }
+                    }
+                });
+            } catch(RejectedExecutionException e) {
+                running.decrementAndGet();
+                throw e;
+            }
+        }
+    };
+
+    static synchronized ThreadPoolExecutor pool() {
+        if(pool == null) {
+            pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+                final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "bot "+count.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * run something for a bot on one of the bot threads
+     * @param task what to run
+     * @return false if too many bot tasks are already waiting and this one was dropped
+     */
+    public static boolean submit(final Runnable task) {
+        ThreadPoolExecutor pool = pool();
+        try {
+            pool.execute(new Runnable() {
+                public void run() {
+                    running.incrementAndGet();
+                    try {
+                        task.run();
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }
+            });
+        } catch(RejectedExecutionException e) {
+            Log.warn("bot threads are "+queueSize+" tasks behind, dropping one");
+            return false;
+        }
+        //a move that has to wait for a thread gets one back from the helpers
+        if(!pool.getQueue().isEmpty()) {
+            for(Thread thread : helping)
+                thread.interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * hand a task to the bot threads once whatever the server is sending right now has been queued, so an answer that
+     * comes back fast can't get to clients ahead of the message it's answering
+     * @param task what to run
+     */
+    public static void submitAfterFlush(final Runnable task) {
+        WriteBatch.afterFlush(new Runnable() {
+            public void run() {
+                submit(task);
+            }
+        });
+    }
+}
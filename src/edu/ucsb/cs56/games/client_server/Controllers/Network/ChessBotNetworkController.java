@@ -0,0 +1,156 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+import java.util.Random;
+
+import edu.ucsb.cs56.games.client_server.Log;
+import edu.ucsb.cs56.games.client_server.Controllers.ChessController;
+import edu.ucsb.cs56.games.client_server.Models.ChessModel;
+import edu.ucsb.cs56.games.client_server.Models.Chess.Move;
+import edu.ucsb.cs56.games.client_server.Models.Chess.OpeningBook;
+import edu.ucsb.cs56.games.client_server.Models.Chess.Packed;
+import edu.ucsb.cs56.games.client_server.Models.Chess.ParallelSearch;
+import edu.ucsb.cs56.games.client_server.Models.Chess.Position;
+import edu.ucsb.cs56.games.client_server.Models.Chess.SearchCache;
+import edu.ucsb.cs56.games.client_server.Models.Chess.TranspositionTable;
+
+/**
+ * a chess bot sits in a chess room, see BotNetworkController. it searches a copy of the position for
+ * BotPool.moveMillis, with as many helper threads as the pool has free up to BotPool.searchThreads. before searching
+ * it looks in the opening book, then in the cache of positions bots have already searched
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class ChessBotNetworkController extends BotNetworkController<ChessController> {
+    //each bot keeps its own table between moves, 2^18 entries is 4MB
+    static final int TABLE_BITS = 18;
+
+    final ParallelSearch search = new ParallelSearch(new TranspositionTable(TABLE_BITS), BotPool.searchThreads);
+    final Position position = new Position();
+    final int[] moves = new int[Position.MAX_MOVES];
+    final Random random = new Random();
+    //what to turn a pawn into when it reaches the last row, the search picks it along with the move
+    volatile char promotion = 'Q';
+
+    /**
+     * make a bot for a room, it has an id and a name but isn't in the room yet
+     * @param room the room it will play in
+     */
+    public ChessBotNetworkController(ChessController room) {
+        super(room, "ChessBot");
+        readsPos = true;
+    }
+
+    @Override
+    public void sendMessage(String string) {
+        switch(Protocol.opcode(string)) {
+            case Protocol.POS:
+            case Protocol.MOVE:
+            case Protocol.PROMOTE:
+            case Protocol.INIT:
+                think();
+                break;
+            case Protocol.WINNER:
+                stopThinking();
+                break;
+        }
+    }
+
+    @Override
+    void stopThinking() {
+        super.stopThinking();
+        search.stop();
+    }
+
+    /**
+     * search a copy of the position taken right away, or if a pawn is waiting on the last row, pick its piece
+     */
+    void think(final int current, int team) {
+        ChessModel game = room.gameData;
+        if(team == 0 || !room.gameStarted || game.winner != 0 || game.turn != team)
+            return;
+
+        //a pawn waiting on the last row means the move was already made, it just needs a piece
+        int lastRow = (team == 1 ? 0 : 7);
+        char pawn = (team == 1 ? 'P' : 'p');
+        for(int x=0;x<8;x++) {
+            if(game.grid[lastRow][x] != pawn)
+                continue;
+            char piece = (team == 1 ? promotion : Character.toLowerCase(promotion));
+            final String promote = "PROMOTE;"+x+","+lastRow+","+piece;
+            //not sent from here, the room is still in the middle of telling everyone about the move
+            BotPool.submitAfterFlush(new Runnable() {
+                public void run() {
+                    send(current, promote);
+                }
+            });
+            return;
+        }
+
+        final byte[] packed = game.pack();
+        final long[] keys = game.historyKeys();
+        BotPool.submitAfterFlush(new Runnable() {
+            public void run() {
+                play(current, packed, keys);
+            }
+        });
+    }
+
+    void play(int current, byte[] packed, long[] keys) {
+        int move;
+        synchronized(search) {
+            if(generation.get() != current)
+                return;
+            Packed.unpack(packed, position);
+            move = lookUp(keys);
+            if(move == Move.NONE) {
+                move = search.think(position, keys, BotPool.moveMillis, BotPool.SPARE);
+                Log.debug(client.getName()+" searched "+search.nodes+" nodes on "+search.threadsUsed+" threads to depth "
+                        +search.completedDepth+", playing "+Move.toString(move)+" at "+search.score);
+                long key = position.key();
+                if(search.completedDepth > 0 && generation.get() == current && !SearchCache.seenBefore(key, keys))
+                    SearchCache.shared.put(key, move, search.score, search.completedDepth);
+            }
+        }
+        if(move == Move.NONE || generation.get() != current)
+            return;
+        if(Move.isPromotion(move))
+            promotion = " NBRQ".charAt(Move.promotionType(move));
+        int from = Move.from(move);
+        int to = Move.to(move);
+        send(current, "MOVE;"+from%8+","+from/8+","+to%8+","+to/8);
+    }
+
+    /**
+     * a move for the position without searching, from the opening book or from a search some bot already did
+     * @param keys the game's keys, for the cache
+     * @return the move, or Move.NONE if it has to be searched
+     */
+    int lookUp(long[] keys) {
+        int move = OpeningBook.shared().probe(position, random);
+        if(move != Move.NONE) {
+            Log.debug(client.getName()+" playing "+Move.toString(move)+" from the book");
+            return move;
+        }
+        long key = position.key();
+        if(SearchCache.seenBefore(key, keys))
+            return Move.NONE;
+        long entry = SearchCache.shared.get(key);
+        if(entry == 0)
+            return Move.NONE;
+        move = TranspositionTable.move(entry);
+        //promotions only come back as a queen from findLegal, those just get searched again
+        if(position.findLegal(Move.from(move), Move.to(move), moves) != move)
+            return Move.NONE;
+        //the game that saved it might not have been here before, this one might be heading for a repetition
+        position.makeMove(move);
+        boolean repeats = SearchCache.seenBefore(position.key(), keys);
+        position.unmakeMove(move);
+        if(repeats)
+            return Move.NONE;
+        Log.debug(client.getName()+" playing "+Move.toString(move)+" from the cache, searched to depth "
+                +TranspositionTable.depth(entry));
+        return move;
+    }
+}
@@ -1,12 +1,17 @@
 package edu.ucsb.cs56.games.client_server.Controllers.Network;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import edu.ucsb.cs56.games.client_server.JavaServer;
+import edu.ucsb.cs56.games.client_server.Log;
 import edu.ucsb.cs56.games.client_server.Controllers.Controller;
 import edu.ucsb.cs56.games.client_server.Models.ClientModel;
 
@@ -20,16 +25,35 @@ import edu.ucsb.cs56.games.client_server.Models.ClientModel;
 
 //server-wide convention for managing cilents connected to server
 public class ClientNetworkController implements Runnable {
-    Socket sock;
-    BufferedReader reader;
-    PrintWriter writer;
+    static final Charset UTF8 = Charset.forName("UTF-8");
 
-    boolean closed;
+    Socket sock;
+    InputStream reader;
+    OutputStream writer;
+    //everything the client sends is a BinaryProtocol frame, since it asked for them
+    boolean framesIn;
+    //held while queueing a message, and by anyone who needs several messages to go out back to back
+    //it's a lock instead of synchronized so a virtual thread waiting on it doesn't pin its carrier
+    public final ReentrantLock writeLock = new ReentrantLock();
+    //messages waiting to be written, drained by writerThread so senders never block on this client's socket
+    OutboundQueue outbound;
+    Thread writerThread;
+    //for parsing this client's messages, only ever used by whoever is handling them
+    public final Tokenizer tokens = new Tokenizer();
+
+    //set by DCON, a kick or a full queue on whatever thread that happens on, and read by the reader or the event loop
+    volatile boolean closed;
+    //the client said POS; so it gets a chess game as one POS message, older clients get STATE and PLAYERS
+    public volatile boolean readsPos;
+    //why the server dropped this client, if it did
+    String closeReason;
 
     //the client data object
     public ClientModel client;
 
     public Controller currentService;
+    //log everything sent to and from this client, whatever the log level is
+    public volatile boolean tracing;
 
     //setup
 
@@ -44,11 +68,12 @@ public class ClientNetworkController implements Runnable {
             closed = true;
         else
             closed = false;
-        System.out.println("new thing");
+        Log.debug("new thing");
         try {
             sock = clientSocket;
-            reader = new BufferedReader(new InputStreamReader(sock.getInputStream()));
-            writer = new PrintWriter(sock.getOutputStream());
+            reader = new BufferedInputStream(sock.getInputStream());
+            writer = new BufferedOutputStream(sock.getOutputStream());
+            outbound = new OutboundQueue();
         } catch(Exception ex) {
             ex.printStackTrace();
         }
@@ -56,46 +81,33 @@ public class ClientNetworkController implements Runnable {
 
     //life cycle of the client
     public void run() {
-        System.out.println("running");
-        synchronized (JavaServer.clients) {
-            for(int i=0;i<JavaServer.clients.size();i++) {
-                if(JavaServer.clients.get(i) == null) {
-                    client = new ClientModel(i);
-                    JavaServer.clients.set(i,this);
-                    break;
-                }
-            }
-            if(client == null) {
-                client = new ClientModel(JavaServer.clients.size());
-                JavaServer.clients.add(this);
-                JavaServer.updateServerGUI();
-            }
-        }
-
-        //tell client what its id is
-        sendMessage("ID;"+client.getId());
-        currentService = JavaServer.lobby;
-        currentService.addClient(this);
-        //edu.ucsb.cs56.W12.jcolicchio.issue535.JavaServer.broadcastMessage("CON;"+client.id);
-
-        //tell everyone else, player id has joined
-
-        //edu.ucsb.cs56.W12.jcolicchio.issue535.JavaServer.ActiveGame.addClient(this);
+        Log.debug("running");
+        writerThread = JavaServer.newConnectionThread(new Writer());
+        writerThread.start();
+        onConnect();
 
         String str;
         try {
-            while(!closed && (str = reader.readLine()) != null) {
+            while(!closed && (str = (framesIn ? BinaryProtocol.readFrame(reader) : BinaryProtocol.readLine(reader))) != null) {
                 //do something with str
-                handleMessage(str);
+                dispatch(str);
             }
         } catch(Exception ex) {
-            System.out.println("closed? "+closed);
+            Log.debug("closed? "+closed);
+            ex.printStackTrace();
+            JavaServer.broadcastMessage("DCON["+client.getId()+"]"+(closeReason == null ? "Client crashed!" : closeReason));
+        }
+
+        //let the writer get out whatever is still queued, like our own DCON, before closing the socket
+        outbound.close();
+        try {
+            writerThread.join(1000);
+        } catch(InterruptedException ex) {
             ex.printStackTrace();
-            JavaServer.broadcastMessage("DCON["+client.getId()+"]Client crashed!");
         }
 
         try{
-            System.out.println("closing this");
+            Log.debug("closing this");
             writer.close();
             reader.close();
             sock.close();
@@ -103,24 +115,76 @@ public class ClientNetworkController implements Runnable {
             e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
         }
 
+        onDisconnect();
+    }
+
+    /**
+     * give the client an id, tell it what the id is and put it in the lobby
+     * called once the connection is up, by whichever thread owns the connection
+     */
+    public void onConnect() {
+        WriteBatch.begin();
+        try {
+            join();
+        } finally {
+            WriteBatch.end();
+        }
+    }
+
+    void join() {
+        client = new ClientModel(JavaServer.clients.allocateId());
+        if(!JavaServer.clients.add(this))
+            client.setName(JavaServer.clients.claimUnusedName(this));
+        JavaServer.updateServerGUI();
+
+        //offer frames before anything else, so a client that wants them can switch as soon as it can
+        if(BinaryProtocol.offered)
+            sendMessage("BIN;"+BinaryProtocol.VERSION);
+        //tell client what its id is
+        sendMessage("ID;"+client.getId());
+        currentService = JavaServer.lobby;
+        currentService.addClient(this);
+        //edu.ucsb.cs56.W12.jcolicchio.issue535.JavaServer.broadcastMessage("CON;"+client.id);
+
+        //tell everyone else, player id has joined
+
+        //edu.ucsb.cs56.W12.jcolicchio.issue535.JavaServer.ActiveGame.addClient(this);
+    }
+
+    /**
+     * take the client out of its service and free up its id
+     * called once the connection has been closed
+     */
+    public void onDisconnect() {
         //tell everyone the client has disconnected
         currentService.removeClient(this);
-        System.out.println(closed+" well at least this got called...");
-        synchronized (JavaServer.clients) {
-            JavaServer.clients.set(client.getId(), null);
-            if(client.getId() == JavaServer.clients.size()-1){
-                for(int i=client.getId();i>=0;i--) {
-                    if(JavaServer.clients.get(i) == null) {
-                        JavaServer.clients.remove(i);
-                    } else {
-                        break;
-                    }
-                }
-            }
-        }
+        Log.debug(closed+" well at least this got called...");
+        JavaServer.clients.remove(this);
         JavaServer.updateServerGUI();
     }
 
+    /**
+     * handle a line read from the socket, batching up everything sent in response so it goes out together
+     * @param line data from client
+     */
+    public void dispatch(String line) {
+        WriteBatch.begin();
+        try {
+            handleMessage(line);
+        } finally {
+            WriteBatch.end();
+        }
+    }
+
+    /**
+     * whether messages to and from this client should be logged, because it or the service it's in is being traced,
+     * or because everything is
+     * @return if this client is traced
+     */
+    public boolean isTraced() {
+        return tracing || Log.level == Log.TRACE || (currentService != null && currentService.tracing);
+    }
+
     /**
      * handle data from client
      * @param string data from client
@@ -128,48 +192,81 @@ public class ClientNetworkController implements Runnable {
     public void handleMessage(String string) {
         //this should send the message to the current service as well
 
-        System.out.println("incoming... "+string);
+        if(isTraced())
+            Log.always("incoming... "+string);
         //do something with the message from the client
-        if(string.indexOf("CON;") == 0) {
-            //if incoming is CON;, alert everyone that cilent.id has connected
-            JavaServer.broadcastMessage("CON;"+client.getId());
-        } else if(string.indexOf("DCON;") == 0) {
-            //if incoming is DCON;, alert everyone that client.id has disconnected
-            disconnect(string.substring(5));
-        } else if(string.indexOf("INFO;") == 0) {
-            sendServers();
-            sendAll();
-        } else if(string.indexOf("NAME;") == 0) {
-            //change this to just call a function with two parameters
-            //it's susceptible to users who try to enter with names that contain ', ], etc
-            if(JavaServer.findClientByName(string.substring(5)) > -1)
-                rename(JavaServer.findUnusedName());
-            else
-                rename(string.substring(5));
+        int opcode = Protocol.opcode(string);
+        switch(opcode) {
+            case Protocol.BIN:
+                startFrames(string);
+                return;
+            case Protocol.POS:
+                readsPos = true;
+                return;
+            case Protocol.CON:
+                //if incoming is CON;, alert everyone that cilent.id has connected
+                JavaServer.broadcastMessage("CON;"+client.getId());
+                break;
+            case Protocol.DCON:
+                //if incoming is DCON;, alert everyone that client.id has disconnected
+                disconnect(string.substring(5));
+                break;
+            case Protocol.INFO:
+                sendServers();
+                sendAll();
+                break;
+            case Protocol.NAME:
+                //change this to just call a function with two parameters
+                //it's susceptible to users who try to enter with names that contain ', ], etc
+                if(JavaServer.findClientByName(string.substring(5)) > -1)
+                    rename(JavaServer.findUnusedName());
+                else
+                    rename(string.substring(5));
+                break;
         }
 
-        currentService.handleData(this, string);
+        currentService.handleData(this, opcode, string);
+    }
+
+    /**
+     * the client asked for frames, see BinaryProtocol. everything it sends after this is a frame, and everything it's
+     * sent is too, once the writer gets past the BIN line that tells it where the text stops
+     * @param string the BIN message
+     */
+    void startFrames(String string) {
+        if(framesIn || !BinaryProtocol.offered || outbound == null)
+            return;
+        if(tokens.reset(string, 4).nextInt() != BinaryProtocol.VERSION)
+            return;
+        framesIn = true;
+        sendMessage(OutboundMessage.switchToFrames());
     }
 
     /**
      * send all connected user info to client
      */
     public void sendAll() {
-        String r = "ALL;";
-        synchronized (JavaServer.clients) {
-        System.out.println("total users: "+JavaServer.clients.size());
+        //the list goes by id, up to the highest one in use, with holes for ids nobody has
+        ClientNetworkController[] all = JavaServer.clients.all();
+        Log.debug("total users: "+all.length);
+        int total = 0;
+        for(int i=0;i<all.length;i++)
+            total = Math.max(total, all[i].client.getId()+1);
+        ClientNetworkController[] byId = new ClientNetworkController[total];
+        for(int i=0;i<all.length;i++)
+            byId[all[i].client.getId()] = all[i];
+        StringBuilder r = new StringBuilder("ALL;");
         ClientNetworkController client;
-            for(int i=0;i<JavaServer.clients.size();i++) {
-                client = JavaServer.clients.get(i);
-                if(client == null)
-                    r += ",";
-                else
-                    r += client.client.getName()+","+client.client.getLocation();
-                if(i < JavaServer.clients.size()-1)
-                    r += ";";
-            }
+        for(int i=0;i<total;i++) {
+            client = byId[i];
+            if(client == null)
+                r.append(",");
+            else
+                r.append(client.client.getName()).append(",").append(client.client.getLocation());
+            if(i < total-1)
+                r.append(";");
         }
-        sendMessage(r);
+        sendMessage(r.toString());
     }
 
     /**
@@ -177,10 +274,8 @@ public class ClientNetworkController implements Runnable {
      */
     public void sendServers() {
         String r = "SERV;"+JavaServer.services.get(0).type;
-        synchronized (JavaServer.clients) {
-            for(int i=1;i<JavaServer.services.size();i++)
-                r += ","+JavaServer.services.get(i).type;
-        }
+        for(int i=1;i<JavaServer.services.size();i++)
+            r += ","+JavaServer.services.get(i).type;
         sendMessage(r);
     }
 
@@ -190,7 +285,6 @@ public class ClientNetworkController implements Runnable {
      */
     public void kick(String message) {
         String reason = null;
-        int id = -1;
         String clientName;
         String[] data;
         if(message.indexOf(" ") == -1)
@@ -201,13 +295,12 @@ public class ClientNetworkController implements Runnable {
             reason = message.substring(data[0].length()+1);
         }
 
-        id = JavaServer.findClientByName(clientName);
-        if(id < 0) {
+        ClientNetworkController victim = JavaServer.findClient(clientName);
+        if(victim == null) {
             fromServer("Could not find user: "+clientName);
             return;
         }
 
-        ClientNetworkController victim = JavaServer.clients.get(id);
         if(reason == null || reason.equals(""))
             victim.disconnect("Kicked by "+client.getName());
         else
@@ -221,13 +314,12 @@ public class ClientNetworkController implements Runnable {
     public void ban(String message) {
         String[] data = message.split(" ");
 
-        int id = JavaServer.findClientByName(data[0]);
-        if(id < 0) {
+        ClientNetworkController victim = JavaServer.findClient(data[0]);
+        if(victim == null) {
             fromServer("Could not find user: "+data[0]);
             return;
         }
-        ClientNetworkController victim = JavaServer.clients.get(id);
-        JavaServer.banIP(victim.sock.getRemoteSocketAddress().toString());
+        JavaServer.banIP(victim.getRemoteAddress());
     }
 
     /**
@@ -237,13 +329,12 @@ public class ClientNetworkController implements Runnable {
     public void unban(String message) {
         String[] data = message.split(" ");
 
-        int id = JavaServer.findClientByName(data[0]);
-        if(id < 0) {
+        ClientNetworkController victim = JavaServer.findClient(data[0]);
+        if(victim == null) {
             fromServer("Could not find user: "+data[0]);
             return;
         }
-        ClientNetworkController victim = JavaServer.clients.get(id);
-        JavaServer.unbanIP(victim.sock.getRemoteSocketAddress().toString());
+        JavaServer.unbanIP(victim.getRemoteAddress());
     }
 
     /**
@@ -262,11 +353,29 @@ public class ClientNetworkController implements Runnable {
      * @param message message to display
      */
     public void disconnect(String message) {
-        closed = true;
         String msg = "DCON["+client.getId()+"]";
         if(message != null)
             msg += message;
         JavaServer.broadcastMessage(msg);
+        closed = true;
+    }
+
+    /**
+     * whether this connection has been told to close
+     * @return if the connection is closing
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * the address this client is connecting from, used for banning
+     * @return remote address of the client, or an empty string if there is no socket
+     */
+    public String getRemoteAddress() {
+        if(sock == null)
+            return "";
+        return sock.getRemoteSocketAddress().toString();
     }
 
     //sends message to client
@@ -276,11 +385,110 @@ public class ClientNetworkController implements Runnable {
      * @param string data to send
      */
     public void sendMessage(String string) {
-        if(writer == null)
+        if(outbound == null)
+            return;
+        sendMessage(new OutboundMessage(string));
+    }
+
+    /**
+     * send an already encoded message to client, so one message can be shared by everyone it's broadcast to
+     * @param message data to send
+     */
+    public void sendMessage(OutboundMessage message) {
+        //dummy clients without a socket just look at the text
+        if(outbound == null) {
+            sendMessage(message.text);
+            return;
+        }
+        if(isTraced())
+            Log.always("outgoing to "+client.getId()+"... "+message.text);
+        if(WriteBatch.add(this, message))
+            return;
+        boolean queued;
+        writeLock.lock();
+        try {
+            queued = outbound.offer(message);
+        } finally {
+            writeLock.unlock();
+        }
+        if(queued)
+            wakeWriter();
+        else
+            overflowed();
+    }
+
+    /**
+     * queue several messages at once, so the writer picks them up together
+     * @param messages messages to send, in order
+     */
+    void queueAll(List<OutboundMessage> messages) {
+        boolean queued;
+        writeLock.lock();
+        try {
+            queued = outbound.offerAll(messages);
+        } finally {
+            writeLock.unlock();
+        }
+        if(queued)
+            wakeWriter();
+        else
+            overflowed();
+    }
+
+    /**
+     * let the writer know there's something new in the queue. the writer thread is woken by the queue itself
+     */
+    void wakeWriter() {
+    }
+
+    /**
+     * the client isn't reading fast enough to keep its queue from filling up, so drop it
+     * closing the socket kicks the reader thread out of readLine, which tells everyone and cleans up
+     */
+    void overflowed() {
+        if(closed)
             return;
-        System.out.println("outgoing to "+client.getId()+"... "+string);
-        writer.println(string);
-        writer.flush();
+        Log.warn("outgoing queue full for "+client.getId()+", dropping it");
+        closeReason = "Too slow";
+        closed = true;
+        outbound.close();
+        outbound.clear();
+        try {
+            sock.close();
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * writes queued messages to the socket, flushing whenever it catches up with the queue
+     */
+    class Writer implements Runnable {
+        public void run() {
+            byte[] scratch = new byte[4096];
+            boolean frames = false;
+            try {
+                while(!outbound.isFinished()) {
+                    OutboundMessage message = outbound.take(1000);
+                    if(message == null)
+                        continue;
+                    if(frames)
+                        writer.write(message.frame());
+                    else
+                        message.writeTo(writer, scratch);
+                    if(message.switchesToFrames)
+                        frames = true;
+                    if(outbound.isEmpty())
+                        writer.flush();
+                }
+                writer.flush();
+            } catch(IOException ex) {
+                if(!closed)
+                    ex.printStackTrace();
+            } catch(InterruptedException ex) {
+                ex.printStackTrace();
+            }
+        }
     }
 
     /**
@@ -297,7 +505,8 @@ public class ClientNetworkController implements Runnable {
             fromServer("Invalid name: \""+newName+"\", cannot contain ' ', '/', ']' or ','");
             return;
         }
-        if(JavaServer.findClientByName(newName) >= 0) {
+        //claiming the name is what actually keeps two users from getting it at once
+        if(JavaServer.findClientByName(newName) >= 0 || !JavaServer.clients.claimName(this, newName)) {
             fromServer("Name \""+newName+"\" already taken!");
             return;
         }
@@ -0,0 +1,183 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ClientRegistry keeps track of every client on the server, indexed both by id and by name (ignoring case), so
+ * finding a user for /msg, /kick, /follow and friends doesn't mean walking the whole list. ids are handed out lowest
+ * free id first, like the old list with holes in it did, and names are claimed atomically so two users can't end up
+ * with the same one. nothing here takes a lock: broadcasts read an immutable snapshot of the clients, rebuilt at most
+ * once per change and only when somebody asks for it, so a storm of connects never waits on a broadcast or vice versa
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class ClientRegistry {
+    ConcurrentHashMap<Integer, ClientNetworkController> byId;
+    //keyed by folded name, see fold()
+    ConcurrentHashMap<String, ClientNetworkController> byName;
+
+    //ids below nextId that nobody is using
+    ConcurrentSkipListSet<Integer> freeIds;
+    AtomicInteger nextId;
+
+    //bumped after every add or remove, so a snapshot knows when it's out of date
+    AtomicLong version;
+    AtomicReference<Snapshot> snapshot;
+
+    public ClientRegistry() {
+        byId = new ConcurrentHashMap<Integer, ClientNetworkController>();
+        byName = new ConcurrentHashMap<String, ClientNetworkController>();
+        freeIds = new ConcurrentSkipListSet<Integer>();
+        nextId = new AtomicInteger(0);
+        version = new AtomicLong(0);
+        snapshot = new AtomicReference<Snapshot>(new Snapshot(0, new ClientNetworkController[0]));
+    }
+
+    /**
+     * the clients as of some version of the registry, never changed once made
+     */
+    static class Snapshot {
+        final long version;
+        final ClientNetworkController[] clients;
+
+        Snapshot(long version, ClientNetworkController[] clients) {
+            this.version = version;
+            this.clients = clients;
+        }
+    }
+
+    /**
+     * names are compared ignoring case
+     */
+    static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * reserve an id for a new client
+     * @return the lowest id not in use
+     */
+    public int allocateId() {
+        Integer id = freeIds.pollFirst();
+        if(id != null)
+            return id;
+        return nextId.getAndIncrement();
+    }
+
+    /**
+     * put a client in the registry under the id it was given by allocateId, and claim its name if it can
+     * @param conn the client, whose ClientModel is already set up
+     * @return false if somebody else already has the client's name, and it needs a new one
+     */
+    public boolean add(ClientNetworkController conn) {
+        byId.put(conn.client.getId(), conn);
+        version.incrementAndGet();
+        return claimName(conn, conn.client.getName());
+    }
+
+    /**
+     * take a client out of the registry and free up its id and name
+     * @param conn the client to remove
+     */
+    public void remove(ClientNetworkController conn) {
+        int id = conn.client.getId();
+        if(!byId.remove(id, conn))
+            return;
+        version.incrementAndGet();
+        byName.remove(fold(conn.client.getName()), conn);
+        freeIds.add(id);
+    }
+
+    /**
+     * find a client by id
+     * @param id id of the client
+     * @return the client, or null if nobody has that id
+     */
+    public ClientNetworkController get(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * find a client given a name, ignoring case
+     * @param name name of client
+     * @return id of client or -1 if not found
+     */
+    public int findByName(String name) {
+        ClientNetworkController conn = byName.get(fold(name));
+        if(conn == null)
+            return -1;
+        return conn.client.getId();
+    }
+
+    /**
+     * find a client given a name, ignoring case. hang on to what this returns instead of looking the id up again
+     * later, the client can leave and its id go to somebody else in between
+     * @param name name of client
+     * @return the client, or null if not found
+     */
+    public ClientNetworkController getByName(String name) {
+        return byName.get(fold(name));
+    }
+
+    /**
+     * try to take a name for a client, giving up its old one if it works
+     * @param conn client to name
+     * @param name the name it wants
+     * @return false if someone else already has the name
+     */
+    public boolean claimName(ClientNetworkController conn, String name) {
+        String key = fold(name);
+        ClientNetworkController owner = byName.putIfAbsent(key, conn);
+        if(owner != null && owner != conn)
+            return false;
+        String oldName = conn.client.getName();
+        if(oldName != null && !fold(oldName).equals(key))
+            byName.remove(fold(oldName), conn);
+        return true;
+    }
+
+    /**
+     * find the first name of the form UserN that nobody has, and claim it for a client
+     * @param conn client to name, or null to just find a free name without claiming it
+     * @return the name
+     */
+    public String claimUnusedName(ClientNetworkController conn) {
+        for(int n=0;;n++) {
+            String name = "User"+n;
+            if(conn == null ? !byName.containsKey(fold(name)) : claimName(conn, name))
+                return name;
+        }
+    }
+
+    /**
+     * how many clients are connected
+     * @return number of clients
+     */
+    public int count() {
+        return byId.size();
+    }
+
+    /**
+     * every connected client, in no particular order. the array is shared, don't change it
+     * @return the clients as of the latest add or remove
+     */
+    public ClientNetworkController[] all() {
+        Snapshot current = snapshot.get();
+        //read the version before copying, so a change made during the copy leaves the snapshot marked stale
+        long latest = version.get();
+        if(current.version == latest)
+            return current.clients;
+        Snapshot fresh = new Snapshot(latest, byId.values().toArray(new ClientNetworkController[0]));
+        //if someone else already published something at least as new, theirs is just as good
+        while(current.version < latest && !snapshot.compareAndSet(current, fresh))
+            current = snapshot.get();
+        return fresh.clients;
+    }
+}
@@ -1,6 +1,7 @@
 package edu.ucsb.cs56.games.client_server.Controllers.Network;
 
 import edu.ucsb.cs56.games.client_server.JavaServer;
+import edu.ucsb.cs56.games.client_server.Log;
 import edu.ucsb.cs56.games.client_server.Models.ClientModel;
 
 /**
@@ -26,8 +27,11 @@ public class EchoNetworkController extends ClientNetworkController {
             if(id == client.getId())
                 return;
             String msg = string.substring(5+data[0].length()+1);
-            System.out.println("echo said this: "+msg);
-            handleMessage("MSG;/msg "+JavaServer.clients.get(id).client.getName()+" "+string.substring(5+data[0].length()+1));
+            Log.debug("echo said this: "+msg);
+            //whoever it was might have left already
+            ClientNetworkController sender = JavaServer.clients.get(id);
+            if(sender != null)
+                handleMessage("MSG;/msg "+sender.client.getName()+" "+msg);
         }
     }
 }
\ No newline at end of file
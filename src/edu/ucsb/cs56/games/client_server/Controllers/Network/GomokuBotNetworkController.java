@@ -0,0 +1,89 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+import edu.ucsb.cs56.games.client_server.Log;
+import edu.ucsb.cs56.games.client_server.Controllers.GomokuController;
+import edu.ucsb.cs56.games.client_server.Models.GomokuModel;
+import edu.ucsb.cs56.games.client_server.Models.Gomoku.Board;
+import edu.ucsb.cs56.games.client_server.Models.Gomoku.Search;
+
+/**
+ * a gomoku bot sits in a gomoku room, see BotNetworkController. it copies the stones and searches them for
+ * BotPool.moveMillis
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class GomokuBotNetworkController extends BotNetworkController<GomokuController> {
+    final Search search = new Search();
+
+    /**
+     * make a bot for a room, it has an id and a name but isn't in the room yet
+     * @param room the room it will play in
+     */
+    public GomokuBotNetworkController(GomokuController room) {
+        super(room, "GomokuBot");
+    }
+
+    @Override
+    public void sendMessage(String string) {
+        switch(Protocol.opcode(string)) {
+            case Protocol.STATE:
+            case Protocol.DELTA:
+            case Protocol.MOVE:
+            case Protocol.SIZE:
+            case Protocol.INIT:
+                think();
+                break;
+            case Protocol.WINNER:
+                stopThinking();
+                break;
+        }
+    }
+
+    @Override
+    void stopThinking() {
+        super.stopThinking();
+        search.stop();
+    }
+
+    /**
+     * copy the stones and search them
+     */
+    void think(final int current, final int team) {
+        GomokuModel game = room.gameData;
+        if(team == 0 || !room.gameStarted || game.winner != 0 || game.turn != team)
+            return;
+
+        final int size = game.cells;
+        final byte[] stones = new byte[size*size];
+        for(int y=0;y<size;y++)
+            for(int x=0;x<size;x++)
+                stones[y*size+x] = (byte)game.get(x, y);
+        BotPool.submitAfterFlush(new Runnable() {
+            public void run() {
+                play(current, size, stones, team);
+            }
+        });
+    }
+
+    void play(int current, int size, byte[] stones, int team) {
+        int move;
+        synchronized(search) {
+            if(generation.get() != current)
+                return;
+            Board board = new Board(size);
+            for(int cell=0;cell<stones.length;cell++) {
+                if(stones[cell] != 0)
+                    board.put(cell, stones[cell]);
+            }
+            board.turn = team;
+            move = search.think(board, BotPool.moveMillis);
+            Log.debug(client.getName()+" searched "+search.nodes+" nodes to depth "+search.completedDepth+", playing "
+                    +(move%size)+","+(move/size)+" at "+search.score);
+        }
+        if(move < 0)
+            return;
+        send(current, "MOVE;"+move%size+","+move/size);
+    }
+}
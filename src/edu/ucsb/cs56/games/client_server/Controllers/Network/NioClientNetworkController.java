@@ -0,0 +1,284 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import edu.ucsb.cs56.games.client_server.JavaServer;
+import edu.ucsb.cs56.games.client_server.Log;
+
+/**
+ * NioClientNetworkController is a client connection serviced by an NioEventLoop instead of its own thread.
+ * incoming bytes are split into lines, or frames once the client has asked for them, and handed to handleMessage just
+ * like the blocking version, and outgoing messages are queued up and written by the loop whenever the socket can take
+ * them, so nothing ever blocks
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class NioClientNetworkController extends ClientNetworkController {
+    //a client sending a line longer than this is dropped instead of buffering it forever
+    static final int MAX_LINE = 64*1024;
+
+    SocketChannel channel;
+    NioEventLoop loop;
+    SelectionKey key;
+
+    //bytes of a line that hasn't been terminated yet, only allocated while a line is split across reads
+    byte[] partial;
+    int partialLength;
+
+    //the message being written right now, if the socket couldn't take all of it at once
+    ByteBuffer current;
+    //whether the writer is past the BIN line and sending frames
+    boolean framesOut;
+    AtomicBoolean writeScheduled;
+    boolean disconnected;
+
+    /**
+     * set up a connection for a channel owned by an event loop
+     * @param channel the non-blocking client channel
+     * @param loop the loop servicing the channel
+     */
+    public NioClientNetworkController(SocketChannel channel, NioEventLoop loop) {
+        super(null);
+        this.channel = channel;
+        this.loop = loop;
+        outbound = new OutboundQueue();
+        writeScheduled = new AtomicBoolean(false);
+        closed = JavaServer.isBanned(getRemoteAddress());
+    }
+
+    /**
+     * read whatever is available and handle every complete line
+     * @param buffer the loop's scratch buffer
+     * @throws IOException if the read fails
+     */
+    void handleRead(ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        int read = channel.read(buffer);
+        if(read < 0) {
+            close();
+            return;
+        }
+        //the client said goodbye, or is being dropped, so nothing else it sends counts
+        if(closed)
+            return;
+        buffer.flip();
+        int start = buffer.position();
+        if(framesIn) {
+            readFrames(buffer, start);
+            return;
+        }
+        while(buffer.hasRemaining()) {
+            int i = buffer.position();
+            if(buffer.get() != '\n')
+                continue;
+            String line = decode(buffer, start, i);
+            start = buffer.position();
+            dispatch(line);
+            if(closed)
+                return;
+            //that line asked for frames, so the rest of the read is frames
+            if(framesIn) {
+                readFrames(buffer, start);
+                return;
+            }
+        }
+        if(start < buffer.limit())
+            keep(buffer, start, buffer.limit());
+    }
+
+    /**
+     * turn bytes from start to end, plus anything left over from the last read, into a line
+     */
+    String decode(ByteBuffer buffer, int start, int end) {
+        if(end > start && buffer.get(end-1) == '\r')
+            end--;
+        else if(end == start && partialLength > 0 && partial[partialLength-1] == '\r')
+            partialLength--;
+        byte[] bytes = new byte[partialLength+end-start];
+        if(partialLength > 0)
+            System.arraycopy(partial, 0, bytes, 0, partialLength);
+        for(int i=start;i<end;i++)
+            bytes[partialLength+i-start] = buffer.get(i);
+        partial = null;
+        partialLength = 0;
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * hold on to the unterminated end of a read until the rest of the line shows up
+     */
+    void keep(ByteBuffer buffer, int start, int end) {
+        int length = end-start;
+        if(partialLength+length > MAX_LINE) {
+            Log.warn("line too long from "+client.getId());
+            crashed("Client crashed!");
+            return;
+        }
+        if(partial == null || partial.length < partialLength+length) {
+            byte[] bigger = new byte[Math.max(256, (partialLength+length)*2)];
+            if(partial != null)
+                System.arraycopy(partial, 0, bigger, 0, partialLength);
+            partial = bigger;
+        }
+        for(int i=start;i<end;i++)
+            partial[partialLength++] = buffer.get(i);
+    }
+
+    /**
+     * add bytes from start to the end of the buffer to whatever's left of the last frame, and handle every frame
+     * that's complete
+     */
+    void readFrames(ByteBuffer buffer, int start) {
+        int length = buffer.limit()-start;
+        if(partial == null || partial.length < partialLength+length)
+            partial = Arrays.copyOf(partial == null ? new byte[0] : partial, Math.max(256, (partialLength+length)*2));
+        for(int i=start;i<buffer.limit();i++)
+            partial[partialLength++] = buffer.get(i);
+
+        int pos = 0;
+        while(pos < partialLength) {
+            String message;
+            try {
+                long frame = BinaryProtocol.frameLength(partial, pos, partialLength);
+                int header = (int)(frame>>>32);
+                int size = (int)frame;
+                if(frame < 0 || pos+header+size > partialLength)
+                    break;
+                message = BinaryProtocol.decode(partial, pos+header, size);
+                pos += header+size;
+            } catch(IllegalArgumentException ex) {
+                Log.warn("bad frame from "+client.getId()+": "+ex.getMessage());
+                crashed("Client crashed!");
+                return;
+            }
+            dispatch(message);
+            if(closed)
+                return;
+        }
+        //the start of the next frame goes to the front
+        System.arraycopy(partial, pos, partial, 0, partialLength-pos);
+        partialLength -= pos;
+    }
+
+    /**
+     * write as much of the queue as the socket will take, and close up if we were asked to
+     * @throws IOException if the write fails
+     */
+    void handleWrite() throws IOException {
+        if(disconnected)
+            return;
+        writeScheduled.set(false);
+        while(true) {
+            if(current == null) {
+                OutboundMessage message = outbound.poll();
+                if(message == null)
+                    break;
+                current = (framesOut ? message.frameView() : message.view());
+                if(message.switchesToFrames)
+                    framesOut = true;
+            }
+            channel.write(current);
+            if(current.hasRemaining())
+                break;
+            current = null;
+        }
+        if(current == null) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if(closed)
+                close();
+        } else
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * have the loop flush this connection, if it isn't already going to
+     */
+    void requestWrite() {
+        if(!writeScheduled.compareAndSet(false, true))
+            return;
+        loop.execute(new Runnable() {
+            public void run() {
+                try {
+                    handleWrite();
+                } catch(IOException ex) {
+                    ex.printStackTrace();
+                    crashed("Client crashed!");
+                }
+            }
+        });
+    }
+
+    /**
+     * the connection broke or was dropped, tell everyone and clean up
+     * @param reason reason given to everyone else
+     */
+    void crashed(String reason) {
+        if(disconnected)
+            return;
+        outbound.close();
+        JavaServer.broadcastMessage("DCON["+client.getId()+"]"+reason);
+        close();
+    }
+
+    @Override
+    void overflowed() {
+        if(closed)
+            return;
+        Log.warn("outgoing queue full for "+client.getId()+", dropping it");
+        closed = true;
+        outbound.close();
+        outbound.clear();
+        loop.execute(new Runnable() {
+            public void run() {
+                crashed("Too slow");
+            }
+        });
+    }
+
+    /**
+     * close the channel and take the client off the server, only does anything the first time
+     */
+    void close() {
+        if(disconnected)
+            return;
+        disconnected = true;
+        closed = true;
+        if(key != null)
+            key.cancel();
+        try {
+            channel.close();
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
+        outbound.clear();
+        if(client != null)
+            onDisconnect();
+    }
+
+    @Override
+    public void disconnect(String message) {
+        super.disconnect(message);
+        requestWrite();
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        try {
+            return channel.getRemoteAddress().toString();
+        } catch(Exception ex) {
+            return "";
+        }
+    }
+
+    @Override
+    void wakeWriter() {
+        requestWrite();
+    }
+}
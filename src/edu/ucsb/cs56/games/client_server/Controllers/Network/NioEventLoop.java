@@ -0,0 +1,141 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * NioEventLoop is one of a small, fixed number of threads that service every client connected in non-blocking mode.
+ * each loop owns a selector and the connections registered with it, reads newline-delimited messages off of them
+ * and writes out whatever has been queued for them, so thousands of idle clients cost a selection key each instead
+ * of a whole thread
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class NioEventLoop extends Thread {
+    Selector selector;
+    //work handed to this loop by other threads, run on the loop between selects
+    ConcurrentLinkedQueue<Runnable> tasks;
+    //scratch buffer shared by every connection on this loop, only touched by the loop thread
+    ByteBuffer readBuffer;
+
+    public boolean running;
+
+    /**
+     * open a selector for a new event loop
+     * @param n number of this loop, used to name the thread
+     * @throws IOException if the selector can't be opened
+     */
+    public NioEventLoop(int n) throws IOException {
+        super("nio-loop-"+n);
+        setDaemon(true);
+        selector = Selector.open();
+        tasks = new ConcurrentLinkedQueue<Runnable>();
+        readBuffer = ByteBuffer.allocateDirect(64*1024);
+    }
+
+    /**
+     * hand a freshly accepted channel to this loop, the client is set up on the loop thread
+     * @param channel the accepted client channel
+     */
+    public void register(final SocketChannel channel) {
+        execute(new Runnable() {
+            public void run() {
+                try {
+                    channel.configureBlocking(false);
+                    NioClientNetworkController conn = new NioClientNetworkController(channel, NioEventLoop.this);
+                    conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+                    conn.onConnect();
+                    if(conn.isClosed())
+                        conn.close();
+                } catch(IOException ex) {
+                    ex.printStackTrace();
+                    try {
+                        channel.close();
+                    } catch(IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * run a task on this loop's thread
+     * @param task the task to run
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if(Thread.currentThread() != this)
+            selector.wakeup();
+    }
+
+    /**
+     * stop the loop and close every connection it owns
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    public void run() {
+        running = true;
+        try {
+            while(running) {
+                //tasks queued by the loop itself don't wake the selector, so don't block if any are waiting
+                if(tasks.isEmpty())
+                    selector.select();
+                else
+                    selector.selectNow();
+                Runnable task;
+                while((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch(Exception ex) {
+                        ex.printStackTrace();
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioClientNetworkController conn = (NioClientNetworkController)key.attachment();
+                    if(!key.isValid()) {
+                        conn.close();
+                        continue;
+                    }
+                    try {
+                        if(key.isReadable())
+                            conn.handleRead(readBuffer);
+                        if(key.isValid() && key.isWritable())
+                            conn.handleWrite();
+                    } catch(Exception ex) {
+                        ex.printStackTrace();
+                        conn.crashed("Client crashed!");
+                    }
+                }
+            }
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        } catch(ClosedSelectorException ex) {
+            ex.printStackTrace();
+        }
+
+        for(SelectionKey key : new ArrayList<SelectionKey>(selector.keys()))
+            ((NioClientNetworkController)key.attachment()).close();
+        try {
+            selector.close();
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * OutboundMessage is a message on its way to one or more clients, encoded to bytes exactly once when it's made.
+ * a broadcast makes one of these and hands the same object to every client's queue, so sending to a room of N
+ * users costs one encoding instead of N. the bytes are never changed after encoding, every writer reads its own
+ * view of them
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class OutboundMessage {
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    //encode into direct buffers, which the nio event loops can write without another copy
+    public static boolean direct;
+
+    public final String text;
+    //the encoded line, newline included. exactly one of these is set, depending on direct
+    final byte[] bytes;
+    final ByteBuffer buffer;
+    //the message as a BinaryProtocol frame, made the first time a client that reads frames needs it
+    volatile byte[] frame;
+    //the client's writer sends frames after this message
+    final boolean switchesToFrames;
+
+    /**
+     * encode a message
+     * @param text the message, without a newline
+     */
+    public OutboundMessage(String text) {
+        this(text, false);
+    }
+
+    OutboundMessage(String text, boolean switchesToFrames) {
+        this.text = text;
+        this.switchesToFrames = switchesToFrames;
+        byte[] encoded = (text+"\n").getBytes(UTF8);
+        if(direct) {
+            ByteBuffer data = ByteBuffer.allocateDirect(encoded.length);
+            data.put(encoded);
+            data.flip();
+            buffer = data.asReadOnlyBuffer();
+            bytes = null;
+        } else {
+            bytes = encoded;
+            buffer = null;
+        }
+    }
+
+    /**
+     * a fresh view of the encoded bytes with its own position, for writing to a channel
+     * @return read-only buffer over the encoded message
+     */
+    public ByteBuffer view() {
+        if(buffer != null)
+            return buffer.duplicate();
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * the line that tells a client the server has switched to frames, the last thing it's sent as text
+     * @return the message
+     */
+    public static OutboundMessage switchToFrames() {
+        return new OutboundMessage("BIN;"+BinaryProtocol.VERSION, true);
+    }
+
+    /**
+     * the message as a frame, encoded once for everyone who reads frames
+     * @return the frame, length included
+     */
+    public byte[] frame() {
+        byte[] encoded = frame;
+        if(encoded == null) {
+            encoded = BinaryProtocol.encode(text);
+            frame = encoded;
+        }
+        return encoded;
+    }
+
+    /**
+     * a fresh view of the frame, for writing to a channel
+     * @return read-only buffer over the frame
+     */
+    public ByteBuffer frameView() {
+        return ByteBuffer.wrap(frame()).asReadOnlyBuffer();
+    }
+
+    /**
+     * write the encoded bytes to a stream
+     * @param out stream to write to
+     * @param scratch buffer to copy through if the message lives in direct memory
+     * @throws IOException if the write fails
+     */
+    public void writeTo(OutputStream out, byte[] scratch) throws IOException {
+        if(bytes != null) {
+            out.write(bytes);
+            return;
+        }
+        ByteBuffer data = buffer.duplicate();
+        while(data.hasRemaining()) {
+            int n = Math.min(scratch.length, data.remaining());
+            data.get(scratch, 0, n);
+            out.write(scratch, 0, n);
+        }
+    }
+
+    /**
+     * number of encoded bytes, newline included
+     * @return length of the message on the wire
+     */
+    public int length() {
+        return (bytes != null ? bytes.length : buffer.limit());
+    }
+
+    public String toString() {
+        return text;
+    }
+}
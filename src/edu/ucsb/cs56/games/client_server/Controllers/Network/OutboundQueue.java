@@ -0,0 +1,255 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * OutboundQueue holds the messages waiting to be written to one client. it's bounded so a client that stops reading
+ * can't make the server hold on to everything ever sent to it, and what happens when it fills up is decided by the
+ * overflow policy: throw away the oldest chat, throw away game updates a newer one makes pointless, or give up on the
+ * client entirely. adding never blocks, so whoever is broadcasting never waits on somebody else's socket
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class OutboundQueue {
+    //when full, drop the oldest chat message to make room
+    public static final int DROP_OLDEST_CHAT = 0;
+    //when full, drop game messages that a newer STATE or PLAYERS replaces, then chat if that wasn't enough
+    public static final int COALESCE_STATE = 1;
+    //when full, disconnect the client
+    public static final int DISCONNECT = 2;
+
+    //server-wide settings, changed from the command line
+    public static int defaultCapacity = 1024;
+    public static int defaultPolicy = COALESCE_STATE;
+
+    ArrayDeque<OutboundMessage> messages;
+    int capacity;
+    int policy;
+    boolean closed;
+
+    ReentrantLock lock;
+    Condition notEmpty;
+
+    /**
+     * make a queue with the server-wide capacity and policy
+     */
+    public OutboundQueue() {
+        this(defaultCapacity, defaultPolicy);
+    }
+
+    /**
+     * make a queue
+     * @param capacity most messages that can wait at once
+     * @param policy what to do when it's full, one of DROP_OLDEST_CHAT, COALESCE_STATE or DISCONNECT
+     */
+    public OutboundQueue(int capacity, int policy) {
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        messages = new ArrayDeque<OutboundMessage>();
+        lock = new ReentrantLock();
+        notEmpty = lock.newCondition();
+    }
+
+    /**
+     * parse a policy name from the command line
+     * @param name drop-chat, coalesce, or disconnect
+     * @return the policy, or -1 if the name isn't one
+     */
+    public static int parsePolicy(String name) {
+        if(name.equalsIgnoreCase("drop-chat"))
+            return DROP_OLDEST_CHAT;
+        if(name.equalsIgnoreCase("coalesce"))
+            return COALESCE_STATE;
+        if(name.equalsIgnoreCase("disconnect"))
+            return DISCONNECT;
+        return -1;
+    }
+
+    /**
+     * queue up a message, making room according to the policy if needed
+     * @param message message to send
+     * @return false if there was no room and the client should be disconnected
+     */
+    public boolean offer(OutboundMessage message) {
+        lock.lock();
+        try {
+            if(closed)
+                return true;
+            if(messages.size() >= capacity && !makeRoom(message))
+                return false;
+            messages.add(message);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * queue up several messages at once, waking the writer only once
+     * @param batch messages to send, in order
+     * @return false if there was no room and the client should be disconnected
+     */
+    public boolean offerAll(List<OutboundMessage> batch) {
+        lock.lock();
+        try {
+            if(closed)
+                return true;
+            for(int i=0;i<batch.size();i++) {
+                OutboundMessage message = batch.get(i);
+                if(messages.size() >= capacity && !makeRoom(message))
+                    return false;
+                messages.add(message);
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * try to free up a spot for message, called with the lock held
+     */
+    boolean makeRoom(OutboundMessage message) {
+        if(policy == DISCONNECT)
+            return false;
+        if(policy == COALESCE_STATE && coalesce(message))
+            return true;
+        return dropOldestChat();
+    }
+
+    /**
+     * a STATE makes earlier board updates pointless, a PLAYERS makes earlier PLAYERS pointless, and a POS makes both
+     * pointless
+     * @return if anything was removed
+     */
+    boolean coalesce(OutboundMessage message) {
+        boolean state = message.text.startsWith("STATE[");
+        boolean players = message.text.startsWith("PLAYERS;");
+        boolean position = message.text.startsWith("POS[");
+        if(!state && !players && !position)
+            return false;
+        boolean removed = false;
+        Iterator<OutboundMessage> it = messages.iterator();
+        while(it.hasNext()) {
+            String queued = it.next().text;
+            boolean replaced;
+            if(position)
+                replaced = queued.startsWith("PLAYERS;") || isBoardUpdate(queued);
+            else
+                replaced = (players ? queued.startsWith("PLAYERS;") : isBoardUpdate(queued));
+            if(replaced) {
+                it.remove();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    boolean dropOldestChat() {
+        Iterator<OutboundMessage> it = messages.iterator();
+        while(it.hasNext()) {
+            if(isChat(it.next().text)) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isBoardUpdate(String message) {
+        return message.startsWith("STATE[") || message.startsWith("POS[") || message.startsWith("MOVE[")
+                || message.startsWith("PROMOTE") || message.startsWith("WINNER;") || message.startsWith("INIT;");
+    }
+
+    static boolean isChat(String message) {
+        return message.startsWith("MSG[") || message.startsWith("SMSG;")
+                || message.startsWith("PMSG[") || message.startsWith("RMSG[");
+    }
+
+    /**
+     * take the next message without waiting
+     * @return the next message, or null if there isn't one
+     */
+    public OutboundMessage poll() {
+        lock.lock();
+        try {
+            return messages.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * wait for the next message
+     * @param timeout longest to wait, in milliseconds
+     * @return the next message, or null if none came or the queue was closed and emptied
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public OutboundMessage take(long timeout) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+            while(messages.isEmpty() && !closed && nanos > 0)
+                nanos = notEmpty.awaitNanos(nanos);
+            return messages.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * stop accepting messages, whatever is already queued can still be taken
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * whether the queue is closed and has nothing left in it
+     * @return if the writer is done
+     */
+    public boolean isFinished() {
+        lock.lock();
+        try {
+            return closed && messages.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return messages.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * throw away everything queued
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            messages.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
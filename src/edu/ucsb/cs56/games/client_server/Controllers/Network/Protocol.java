@@ -0,0 +1,148 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+/**
+ * Protocol knows every opcode that goes over the wire, in either direction. a message starts with its opcode, which
+ * runs up to the first ; or [, and opcode() reads it once and looks it up in a small hash table, so whoever handles
+ * the message can switch on a number instead of trying indexOf against every opcode it knows in turn. the lookup
+ * compares characters in place and never allocates
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Protocol {
+    //not an opcode we know, or not a message at all
+    public static final int UNKNOWN = 0;
+
+    //connection and chat
+    public static final int CON = 1;
+    public static final int DCON = 2;
+    public static final int INFO = 3;
+    public static final int NAME = 4;
+    public static final int MSG = 5;
+    public static final int PMSG = 6;
+    public static final int RMSG = 7;
+    public static final int SMSG = 8;
+    public static final int ID = 9;
+    public static final int ALL = 10;
+    public static final int SERV = 11;
+    public static final int NEW = 12;
+    public static final int MOVED = 13;
+
+    //games
+    public static final int PLAY = 14;
+    public static final int SPEC = 15;
+    public static final int MOVE = 16;
+    public static final int PROMOTE = 17;
+    public static final int SIZE = 18;
+    //the whole board, or from a client, a request for it when a DELTA didn't match its board
+    public static final int STATE = 19;
+    public static final int PLAYERS = 20;
+    public static final int WINNER = 21;
+    public static final int INIT = 22;
+    //a whole chess game in one message, POS[player1,player2] then the packed position in base64. a client says POS;
+    //when it connects if it can read them, anyone who doesn't gets STATE and PLAYERS like before
+    public static final int POS = 23;
+    //the moves a client missed, DELTA[turn]from;x,y,player;... see MoveLog
+    public static final int DELTA = 24;
+
+    //switching to frames, see BinaryProtocol
+    public static final int BIN = 25;
+
+    //indexed by opcode
+    static final String[] NAMES = {
+        null,
+        "CON", "DCON", "INFO", "NAME", "MSG", "PMSG", "RMSG", "SMSG", "ID", "ALL", "SERV", "NEW", "MOVED",
+        "PLAY", "SPEC", "MOVE", "PROMOTE", "SIZE", "STATE", "PLAYERS", "WINNER", "INIT", "POS",
+        "DELTA", "BIN"
+    };
+
+    //longest opcode, nothing past this many characters needs looking at
+    static final int MAX_LENGTH = 7;
+
+    //open addressing, big enough that most slots are empty and probes stay short
+    static final int[] table = new int[64];
+
+    static {
+        for(int op=1;op<NAMES.length;op++) {
+            String name = NAMES[op];
+            int slot = hash(name, name.length());
+            while(table[slot] != UNKNOWN)
+                slot = (slot+1)&(table.length-1);
+            table[slot] = op;
+        }
+    }
+
+    static int hash(CharSequence message, int length) {
+        int h = 0;
+        for(int i=0;i<length;i++)
+            h = 31*h+message.charAt(i);
+        return (h^(h>>>7))&(table.length-1);
+    }
+
+    /**
+     * figure out which opcode a message starts with
+     * @param message a line from the other end
+     * @return one of the opcode constants, or UNKNOWN
+     */
+    public static int opcode(CharSequence message) {
+        int length = delimiter(message);
+        if(length <= 0)
+            return UNKNOWN;
+        int slot = hash(message, length);
+        int op;
+        while((op = table[slot]) != UNKNOWN) {
+            if(matches(message, length, NAMES[op]))
+                return op;
+            slot = (slot+1)&(table.length-1);
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * where the opcode ends
+     * @param message a line from the other end
+     * @return index of the ; or [ after the opcode, or -1 if there isn't one close enough to the start
+     */
+    public static int delimiter(CharSequence message) {
+        int end = Math.min(message.length(), MAX_LENGTH+1);
+        for(int i=0;i<end;i++) {
+            char c = message.charAt(i);
+            if(c == ';' || c == '[')
+                return i;
+            if(c < 'A' || c > 'Z')
+                return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * whether a message's opcode is followed by a [, like MSG[id]text, rather than a ;
+     * @param message a line that opcode() recognized
+     * @return if the opcode is followed by [
+     */
+    public static boolean bracketed(CharSequence message) {
+        int end = delimiter(message);
+        return end >= 0 && message.charAt(end) == '[';
+    }
+
+    static boolean matches(CharSequence message, int length, String name) {
+        if(name.length() != length)
+            return false;
+        for(int i=0;i<length;i++)
+            if(message.charAt(i) != name.charAt(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * the name of an opcode, for logging
+     * @param op an opcode constant
+     * @return its name
+     */
+    public static String name(int op) {
+        if(op <= UNKNOWN || op >= NAMES.length)
+            return "UNKNOWN";
+        return NAMES[op];
+    }
+}
@@ -1,5 +1,6 @@
 package edu.ucsb.cs56.games.client_server.Controllers.Network;
 
+import edu.ucsb.cs56.games.client_server.Log;
 import edu.ucsb.cs56.games.client_server.Models.ClientModel;
 
 /**
@@ -16,7 +17,7 @@ public class ServerNetworkController extends ClientNetworkController {
     public ServerNetworkController(int id) {
         super(null);
         client = new ClientModel(id, "Server", 0);
-        System.out.println("server has client: "+client.getName());
+        Log.debug("server has client: "+client.getName());
     }
 
     @Override
@@ -26,7 +27,7 @@ public class ServerNetworkController extends ClientNetworkController {
             String[] data = string.substring(5).split("]");
             int id = Integer.parseInt(data[0]);
             String msg = string.substring(5+data[0].length()+1);
-            System.out.println("server wanted to say this: ");
+            Log.debug("server wanted to say this: ");
             //edu.ucsb.cs56.W12.jcolicchio.issue535.JavaServer.clients.get(id).sendMessage("PMSG[0]Echo You said "+msg);
         }
     }
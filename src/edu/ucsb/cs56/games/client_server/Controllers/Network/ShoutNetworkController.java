@@ -1,6 +1,7 @@
 package edu.ucsb.cs56.games.client_server.Controllers.Network;
 
 import edu.ucsb.cs56.games.client_server.JavaServer;
+import edu.ucsb.cs56.games.client_server.Log;
 import edu.ucsb.cs56.games.client_server.Models.ClientModel;
 
 /**
@@ -27,7 +28,7 @@ public class ShoutNetworkController extends ClientNetworkController {
                 return;
             String msg = string.substring(5+data[0].length()+1);
             //handleMessage("MSG;"+string.substring(5+data[0].length()+1));
-            System.out.println("shout said this: " + string.substring(5 + data[0].length() + 1));
+            Log.debug("shout said this: " + string.substring(5 + data[0].length() + 1));
 //            if(string.substring(5+data[0].length()+1).indexOf("/me ") == 0)
             JavaServer.broadcastMessage("MSG["+client.getId()+"]"+string.substring(5+data[0].length()+1));
 //            else
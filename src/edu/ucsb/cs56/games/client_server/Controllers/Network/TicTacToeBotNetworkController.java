@@ -0,0 +1,56 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+import edu.ucsb.cs56.games.client_server.Controllers.TicTacToeController;
+import edu.ucsb.cs56.games.client_server.Models.TicTacToeModel;
+import edu.ucsb.cs56.games.client_server.Models.TicTacToeSolver;
+
+/**
+ * a tic tac toe bot sits in a tic tac toe room, see BotNetworkController, and never loses. it doesn't need to think,
+ * it looks its move up in TicTacToeSolver's table, but it still sends the move from a bot thread once the room is done
+ * telling everyone about the last one, like the other bots
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class TicTacToeBotNetworkController extends BotNetworkController<TicTacToeController> {
+    /**
+     * make a bot for a room, it has an id and a name but isn't in the room yet
+     * @param room the room it will play in
+     */
+    public TicTacToeBotNetworkController(TicTacToeController room) {
+        super(room, "TicTacToeBot");
+    }
+
+    @Override
+    public void sendMessage(String string) {
+        switch(Protocol.opcode(string)) {
+            case Protocol.STATE:
+            case Protocol.DELTA:
+            case Protocol.MOVE:
+            case Protocol.INIT:
+                think();
+                break;
+            case Protocol.WINNER:
+                stopThinking();
+                break;
+        }
+    }
+
+    /**
+     * look up a move
+     */
+    void think(final int current, int team) {
+        TicTacToeModel game = room.gameData;
+        if(team == 0 || !room.gameStarted || game.winner != 0 || game.turn != team)
+            return;
+        final int move = TicTacToeSolver.bestMove(game);
+        if(move == TicTacToeSolver.NONE)
+            return;
+        BotPool.submitAfterFlush(new Runnable() {
+            public void run() {
+                send(current, "MOVE;"+move%3+","+move/3);
+            }
+        });
+    }
+}
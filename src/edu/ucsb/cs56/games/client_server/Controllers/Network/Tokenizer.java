@@ -0,0 +1,90 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+/**
+ * Tokenizer reads numbers and characters straight out of a message, in place, so parsing something like
+ * MOVE;3,4 or a whole STATE[ board doesn't make a substring, a String[] from split, and a string per field the way
+ * substring+split+parseInt does. it's a cursor, so one can be kept around and reset for every message, but it isn't
+ * thread safe: each connection and each model keeps its own
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Tokenizer {
+    CharSequence text;
+    int pos;
+
+    /**
+     * start reading a new message
+     * @param text the message
+     * @param start index of the first character to read, usually just past the opcode
+     * @return this tokenizer, for chaining
+     */
+    public Tokenizer reset(CharSequence text, int start) {
+        this.text = text;
+        this.pos = start;
+        return this;
+    }
+
+    /**
+     * whether there's anything left to read
+     * @return if the cursor isn't at the end
+     */
+    public boolean hasMore() {
+        return pos < text.length();
+    }
+
+    /**
+     * read a whole number, with an optional minus sign, and step over the , ; or ] after it if there is one
+     * @return the number
+     * @throws NumberFormatException if there isn't a number at the cursor, or it doesn't fit in an int
+     */
+    public int nextInt() {
+        int length = text.length();
+        boolean negative = false;
+        if(pos < length && text.charAt(pos) == '-') {
+            negative = true;
+            pos++;
+        }
+        int start = pos;
+        //counted below zero like parseInt does, since there's one more negative int than positive
+        int limit = (negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE);
+        int value = 0;
+        while(pos < length) {
+            char c = text.charAt(pos);
+            if(c < '0' || c > '9')
+                break;
+            int digit = c-'0';
+            if(value < limit/10 || value*10 < limit+digit)
+                throw new NumberFormatException("number too big at "+start+" in "+text);
+            value = value*10-digit;
+            pos++;
+        }
+        if(pos == start)
+            throw new NumberFormatException("expected a number at "+start+" in "+text);
+        skipSeparator();
+        return negative ? value : -value;
+    }
+
+    /**
+     * read a single character, without stepping over anything after it
+     * @return the character
+     * @throws IndexOutOfBoundsException if there's nothing left
+     */
+    public char nextChar() {
+        if(pos >= text.length())
+            throw new IndexOutOfBoundsException("ran out of message at "+pos);
+        return text.charAt(pos++);
+    }
+
+    /**
+     * step over a , ; or ] if the cursor is on one
+     */
+    public void skipSeparator() {
+        if(pos < text.length()) {
+            char c = text.charAt(pos);
+            if(c == ',' || c == ';' || c == ']')
+                pos++;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package edu.ucsb.cs56.games.client_server.Controllers.Network;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * WriteBatch collects everything sent while one incoming message is being handled, and hands it to each client's
+ * queue all at once when handling is done. a single move can send MOVE and WINNER, or STATE and PLAYERS, to everyone
+ * in a room, and this way each client's writer sees them together and flushes them in one write instead of one each.
+ * nothing is held longer than maxLatencyMillis: the first message a batch collects sets a timer, and if handling is
+ * still going when it goes off, whatever has been collected so far is queued from the timer's thread, even if the
+ * handler is stuck in something slow and never sends another message. something that has to happen only after all
+ * of that is queued, like a bot answering a move, can wait for it with afterFlush
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class WriteBatch {
+    //server-wide settings, changed from the command line
+    public static boolean enabled = true;
+    public static long maxLatencyMillis = 5;
+
+    static final ThreadLocal<WriteBatch> current = new ThreadLocal<WriteBatch>();
+    static ScheduledThreadPoolExecutor timer;
+
+    //only touched while holding the batch, since the timer can flush it from its own thread
+    IdentityHashMap<ClientNetworkController, ArrayList<OutboundMessage>> pending;
+    ScheduledFuture<?> deadline;
+    //held while a flush hands its messages to the queues, so an early flush and the next one can't pass each other
+    final ReentrantLock flushing = new ReentrantLock();
+    ArrayList<Runnable> after;
+    int depth;
+
+    WriteBatch() {
+        pending = new IdentityHashMap<ClientNetworkController, ArrayList<OutboundMessage>>();
+    }
+
+    /**
+     * start collecting messages sent by this thread, batches can nest and only the outermost one flushes
+     */
+    public static void begin() {
+        //still counted when batching is off, so afterFlush knows when handling is done
+        WriteBatch batch = current.get();
+        if(batch == null) {
+            batch = new WriteBatch();
+            current.set(batch);
+        }
+        batch.depth++;
+    }
+
+    /**
+     * stop collecting, and queue everything collected
+     */
+    public static void end() {
+        WriteBatch batch = current.get();
+        if(batch == null || batch.depth == 0)
+            return;
+        if(--batch.depth == 0) {
+            batch.flush();
+            if(batch.after != null && !batch.after.isEmpty()) {
+                ArrayList<Runnable> tasks = new ArrayList<Runnable>(batch.after);
+                batch.after.clear();
+                for(Runnable task : tasks)
+                    task.run();
+            }
+        }
+    }
+
+    /**
+     * run something once this thread is done handling its message and everything it sent has been queued, or right
+     * away if it isn't handling one
+     * @param task what to run
+     */
+    public static void afterFlush(Runnable task) {
+        WriteBatch batch = current.get();
+        if(batch == null || batch.depth == 0) {
+            task.run();
+            return;
+        }
+        if(batch.after == null)
+            batch.after = new ArrayList<Runnable>(2);
+        batch.after.add(task);
+    }
+
+    /**
+     * hold on to a message if this thread is collecting
+     * @param conn client the message is for
+     * @param message the message
+     * @return false if there's no batch open and the message should be queued right away
+     */
+    static boolean add(ClientNetworkController conn, OutboundMessage message) {
+        WriteBatch batch = current.get();
+        if(!enabled || batch == null || batch.depth == 0)
+            return false;
+        synchronized(batch) {
+            //the clock starts with the first message held, not with the handling
+            if(batch.pending.isEmpty())
+                batch.arm();
+            ArrayList<OutboundMessage> messages = batch.pending.get(conn);
+            if(messages == null) {
+                messages = new ArrayList<OutboundMessage>(4);
+                batch.pending.put(conn, messages);
+            }
+            messages.add(message);
+        }
+        return true;
+    }
+
+    static synchronized ScheduledThreadPoolExecutor timer() {
+        if(timer == null) {
+            timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "write-batch-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            //most deadlines are cancelled by end() long before they'd go off
+            timer.setRemoveOnCancelPolicy(true);
+        }
+        return timer;
+    }
+
+    void arm() {
+        deadline = timer().schedule(new Runnable() {
+            public void run() {
+                //if the handler flushed and started collecting again since, this only sends the new ones early
+                flush();
+            }
+        }, maxLatencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void flush() {
+        flushing.lock();
+        try {
+            IdentityHashMap<ClientNetworkController, ArrayList<OutboundMessage>> taken;
+            synchronized(this) {
+                if(deadline != null) {
+                    deadline.cancel(false);
+                    deadline = null;
+                }
+                if(pending.isEmpty())
+                    return;
+                taken = pending;
+                pending = new IdentityHashMap<ClientNetworkController, ArrayList<OutboundMessage>>();
+            }
+            //queued without holding the batch, a handler can be adding to it while it holds a client's writeLock,
+            //which queueAll needs too
+            for(Map.Entry<ClientNetworkController, ArrayList<OutboundMessage>> entry : taken.entrySet())
+                entry.getKey().queueAll(entry.getValue());
+        } finally {
+            flushing.unlock();
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package edu.ucsb.cs56.games.client_server.Controllers;
 
+import edu.ucsb.cs56.games.client_server.Log;
 import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.OutboundMessage;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Protocol;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.TicTacToeBotNetworkController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Tokenizer;
 import edu.ucsb.cs56.games.client_server.Models.TicTacToeModel;
+import edu.ucsb.cs56.games.client_server.Models.TicTacToeSolver;
 
 /**
  * gictactoeservice allows clientconnect to communicate with tictactoe game
@@ -13,11 +19,6 @@ import edu.ucsb.cs56.games.client_server.Models.TicTacToeModel;
 public class TicTacToeController extends TwoPlayerGameController {
     public TicTacToeModel gameData;
 
-    public ClientNetworkController player1;
-    public ClientNetworkController player2;
-
-    public boolean gameStarted;
-
     public TicTacToeController(int ID) {
         super(ID);
         gameData = new TicTacToeModel();
@@ -27,24 +28,59 @@ public class TicTacToeController extends TwoPlayerGameController {
     
     public void init() {
         gameData.init();
+        changed();
         broadcastData("INIT;");
+        sentAll(gameData.log.stamp());
     }
 
     public void playClient(ClientNetworkController client) {
         if(player1 == null) {
             player1 = client;
             gameData.player1 = client.client;
+            changed();
         } else if(player2 == null && player1 != client) {
             player2 = client;
             gameData.player2 = client.client;
             gameStarted = true;
-            System.out.println("ready to play: "+player1.client.getId()+" vs "+player2.client.getId());
+            Log.info("ready to play: "+player1.client.getId()+" vs "+player2.client.getId());
             gameData.init();
+            changed();
         }
 
         updateAll();
     }
 
+    /**
+     * tell a client the best move for whoever's turn it is, and how the game goes from there
+     * @param client the client asking
+     */
+    public void hint(ClientNetworkController client) {
+        if(!gameStarted || gameData.winner != 0) {
+            client.fromServer("No game to give a hint for");
+            return;
+        }
+        int index = TicTacToeSolver.index(gameData.marks(1), gameData.marks(2));
+        int move = TicTacToeSolver.bestMove(index);
+        if(move == TicTacToeSolver.NONE) {
+            client.fromServer("No moves left");
+            return;
+        }
+        String player = (gameData.turn == 1 ? "X" : "O");
+        String result;
+        switch(TicTacToeSolver.outcome(index)) {
+            case TicTacToeSolver.WIN:
+                result = "wins";
+                break;
+            case TicTacToeSolver.LOSS:
+                result = "loses anyway";
+                break;
+            default:
+                result = "draws";
+                break;
+        }
+        client.fromServer("Best move for "+player+" is "+move%3+","+move/3+", which "+result+" with best play");
+    }
+
     //if a client was a player, spec him, and then probably stop the game
     public void specClient(ClientNetworkController client) {
         if(player1 != client && player2 != client)
@@ -64,52 +100,87 @@ public class TicTacToeController extends TwoPlayerGameController {
             gameData.init();
         }
 
+        changed();
         updateAll();
     }
 
+    protected TicTacToeBotNetworkController newBot() {
+        return new TicTacToeBotNetworkController(this);
+    }
+
     //get move from player, if it's their turn
-    public void handleData(ClientNetworkController client, String string) {
-        if(string.indexOf("PLAY;") == 0)
-            playClient(client);
-        else if(string.indexOf("SPEC;") == 0)
-            specClient(client);
-        else if(string.indexOf("MSG;") == 0) {
-            String message = string.substring(4);
-            if(message.indexOf("/play")==0) {
+    protected boolean handleGame(ClientNetworkController client, int opcode, String string) {
+        switch(opcode) {
+            case Protocol.PLAY:
                 playClient(client);
-            } else if(message.indexOf("/spec") == 0) {
+                return true;
+            case Protocol.SPEC:
                 specClient(client);
-            } else if(message.indexOf("/newgame") == 0) {
-                if(client == player1 || client == player2)
-                    init();
-            } else
-                super.handleData(client, string);
+                return true;
+            case Protocol.MSG:
+                String message = string.substring(4);
+                if(message.indexOf("/play")==0) {
+                    playClient(client);
+                } else if(message.indexOf("/spec") == 0) {
+                    specClient(client);
+                } else if(message.indexOf("/bot") == 0) {
+                    addBot(client);
+                } else if(message.indexOf("/hint") == 0) {
+                    hint(client);
+                } else if(message.indexOf("/newgame") == 0) {
+                    if(client == player1 || client == player2)
+                        init();
+                } else
+                    return false;
+                return true;
+            case Protocol.MOVE:
+                break;
+            default:
+                return true;
         }
 
         if(!gameStarted)
-            return;
-        System.out.println(gameData.turn+", "+client.client.getId()+", "+player1.client.getId()+":"+player2.client.getId());
+            return true;
+        if(client.isTraced())
+            Log.always(gameData.turn+", "+client.client.getId()+", "+player1.client.getId()+":"+player2.client.getId());
         if(gameData.turn == 1 && client != player1)
-            return;
+            return true;
         if(gameData.turn == 2 && client != player2)
-            return;
-        if(string.indexOf("MOVE;") == 0) {
-            if(gameData.winner != 0)
-                return;
-            System.out.println("got move command from "+client.client.getId()+": "+string);
-            String[] data = string.substring(5).split(",");
-            int X = Integer.parseInt(data[0]);
-            int Y = Integer.parseInt(data[1]);
-
-            if(gameData.grid[Y][X] != 0)
-                return;
-
-            gameData.grid[Y][X] = gameData.turn;
-            broadcastData("MOVE[" + gameData.turn + "]" + X + "," + Y);
-            if(gameData.checkWinner())
-                broadcastData("WINNER;"+gameData.winner);
-            gameData.turn = 3-gameData.turn;
-        }
+            return true;
+        if(gameData.winner != 0)
+            return true;
+        if(client.isTraced())
+            Log.always("got move command from "+client.client.getId()+": "+string);
+        Tokenizer data = client.tokens.reset(string, 5);
+        int X = data.nextInt();
+        int Y = data.nextInt();
+
+        if(X < 0 || Y < 0 || X >= 3 || Y >= 3 || gameData.get(X, Y) != 0)
+            return true;
+
+        //the turn passes before anyone hears about the move, so a bot hearing it sees whose turn it really is
+        int team = gameData.turn;
+        gameData.play(X, Y, team);
+        boolean won = gameData.checkWinner();
+        gameData.turn = 3-team;
+        changed();
+        broadcastData("MOVE[" + team + "]" + X + "," + Y);
+        if(won)
+            broadcastData("WINNER;"+gameData.winner);
+        sentAll(gameData.log.stamp());
+        return true;
+    }
+
+    /**
+     * the whole board as a STATE message, and who's playing as a PLAYERS message
+     * @return the messages
+     */
+    protected OutboundMessage[] buildSnapshot() {
+        StringBuilder players = new StringBuilder(24);
+        players.append("PLAYERS;");
+        players.append(gameData.player1 != null ? gameData.player1.getId() : -1).append(',');
+        players.append(gameData.player2 != null ? gameData.player2.getId() : -1);
+        return new OutboundMessage[] {new OutboundMessage(gameData.getState()), new OutboundMessage(players.toString())};
     }
 
     //this could be done better, just broadcast gameData.getGameState and have that function generate this:
@@ -118,20 +189,19 @@ public class TicTacToeController extends TwoPlayerGameController {
     public void sendGameState(ClientNetworkController client) {
         if(client == null)
             return;
-        synchronized (client) {
-            client.sendMessage(gameData.getState());
-            String players = "PLAYERS;";
-            if(gameData.player1 != null)
-                players += gameData.player1.getId();
+        client.writeLock.lock();
+        try {
+            OutboundMessage[] snapshot = snapshot();
+            //just the moves the client hasn't heard about, if that's shorter than the whole board
+            String delta = (deltas ? gameData.getDelta(sent(client)) : null);
+            if(delta != null)
+                client.sendMessage(delta);
             else
-                players += "-1";
-            players += ",";
-            if(gameData.player2 != null)
-                players += gameData.player2.getId();
-            else
-                players += "-1";
-
-            client.sendMessage(players);
+                client.sendMessage(snapshot[0]);
+            sent.put(client, gameData.log.stamp());
+            client.sendMessage(snapshot[1]);
+        } finally {
+            client.writeLock.unlock();
         }
     }
 }
\ No newline at end of file
@@ -1,12 +1,21 @@
 package edu.ucsb.cs56.games.client_server.Controllers;
 
-import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
+import edu.ucsb.cs56.games.client_server.Controllers.Network.BotNetworkController;
 import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.OutboundMessage;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Protocol;
 
 /**
  * an abstract service classification for games which have two players
  * all two-player games should extend this
+ * the game is only ever touched with lock held: real clients' moves come in on their own threads and bots' moves on
+ * BotPool's, so whatever reads or changes the game, or who's in the room, takes the lock first. chat is handled after
+ * it's let go, since /join and friends move the client to another room, which takes that room's lock
  *
  * @author Joseph Colicchio
  * @version for CS56, Choice Points, Winter 2012
@@ -17,9 +26,34 @@ public abstract class TwoPlayerGameController extends ChatController{
     public ClientNetworkController player2;
     
     public boolean gameStarted;
+
+    //held while the game or the seats are being looked at or changed, see above
+    public final ReentrantLock lock = new ReentrantLock();
+
+    //whether games that can send DELTAs do, set from the command line for clients too old to read them
+    public static boolean deltas = true;
+    //how far each client has been brought up to date, as the game's MoveLog stamps it, for games that keep one.
+    //this is what was queued to it, not what it has read, which is fine since a connection delivers in order: by the
+    //time a client reads a DELTA it has read everything queued before it. if one was lost anyway the client sees from
+    //doesn't match its board and asks for a STATE
+    protected final ConcurrentHashMap<ClientNetworkController, Long> sent = new ConcurrentHashMap<ClientNetworkController, Long>();
+    //bumped whenever the game or the seats change, so snapshot knows to build its messages again
+    final AtomicInteger version = new AtomicInteger();
+    volatile Snapshot snapshot;
+
+    //the messages snapshot last built, and the version they were built for
+    static class Snapshot {
+        final int version;
+        final OutboundMessage[] messages;
+
+        Snapshot(int version, OutboundMessage[] messages) {
+            this.version = version;
+            this.messages = messages;
+        }
+    }
     
     public TwoPlayerGameController(int ID) {
-        clients = new ArrayList<ClientNetworkController>();
+        clients = new CopyOnWriteArrayList<ClientNetworkController>();
         gameStarted = false;
         id = ID;
     }
@@ -27,16 +61,18 @@ public abstract class TwoPlayerGameController extends ChatController{
     public abstract void init();
     
     public void updateAll() {
-        synchronized (clients) {
-            for(int i=0;i<clients.size();i++)
-                sendGameState(clients.get(i));
-        }
+        for(ClientNetworkController client : clients)
+            sendGameState(client);
     }
 
     public void addClient(ClientNetworkController client) {
-        synchronized (clients) {
+        lock.lock();
+        try {
+            sent.remove(client);
             super.addClient(client);
             sendGameState(client);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -44,17 +80,139 @@ public abstract class TwoPlayerGameController extends ChatController{
 
     public abstract void specClient(ClientNetworkController client);
 
+    /**
+     * take a client out of the room, and send the bots home once there's nobody left for them to play
+     * @param client client leaving
+     */
     public void removeClient(ClientNetworkController client) {
-        specClient(client);
-        super.removeClient(client);
+        lock.lock();
+        try {
+            specClient(client);
+            super.removeClient(client);
+            sent.remove(client);
+        } finally {
+            lock.unlock();
+        }
+        for(ClientNetworkController other : clients) {
+            if(!(other instanceof BotNetworkController))
+                return;
+        }
+        for(ClientNetworkController other : clients)
+            ((BotNetworkController<?>)other).leave();
+    }
+
+    /**
+     * sit a bot down in the free seat, or if the room already has one, give it a nudge in case it lost track of
+     * whose turn it is
+     * @param client client asking for the bot
+     */
+    public void addBot(ClientNetworkController client) {
+        for(ClientNetworkController other : clients) {
+            if(other instanceof BotNetworkController) {
+                ((BotNetworkController<?>)other).think();
+                return;
+            }
+        }
+        if(player1 != null && player2 != null) {
+            client.fromServer("Both seats are taken");
+            return;
+        }
+        newBot().join();
+    }
+
+    /**
+     * a bot for this room's game, not in the room yet
+     * @return the bot
+     */
+    protected abstract BotNetworkController<?> newBot();
+
+    /**
+     * handle data from a client, the game's part with the room locked and anything else as chat once it's unlocked
+     * @param client the client sending the data
+     * @param opcode the data's opcode
+     * @param data data to handle
+     */
+    @Override
+    public void handleData(ClientNetworkController client, int opcode, String data) {
+        boolean handled;
+        lock.lock();
+        try {
+            if(opcode == Protocol.STATE) {
+                //the client couldn't use a DELTA, forget how far it was brought and send it everything
+                sent.remove(client);
+                sendGameState(client);
+                handled = true;
+            } else
+                handled = handleGame(client, opcode, data);
+        } finally {
+            lock.unlock();
+        }
+        if(!handled)
+            super.handleData(client, opcode, data);
+    }
+
+    /**
+     * handle data from a client, called with the room locked
+     * @param client the client sending the data
+     * @param opcode the data's opcode
+     * @param data data to handle
+     * @return false if it isn't for the game, and should be handled as chat
+     */
+    protected abstract boolean handleGame(ClientNetworkController client, int opcode, String data);
+
+    /**
+     * everyone in the room has just been told about everything up to stamp, by a broadcast. called with the room
+     * locked, in the same go as the broadcast, so sendGameState can't work out a DELTA from an older stamp in between
+     * @param stamp the game's MoveLog stamp
+     */
+    public void sentAll(long stamp) {
+        for(ClientNetworkController client : clients)
+            sent.put(client, stamp);
+    }
+
+    /**
+     * how far a client has been brought up to date
+     * @return the game's MoveLog stamp from then, or -1 if it hasn't been sent the game
+     */
+    public long sent(ClientNetworkController client) {
+        Long stamp = sent.get(client);
+        return stamp == null ? -1 : stamp;
     }
     
     public void broadcastDate(String data) {
-        synchronized (clients) {
-            for(int i=0;i<clients.size();i++)
-                clients.get(i).sendMessage(data);
+        OutboundMessage message = new OutboundMessage(data);
+        for(ClientNetworkController client : clients)
+            client.sendMessage(message);
+    }
+
+    /**
+     * the game or who's playing it changed, so snapshot has to build its messages again the next time it's asked
+     */
+    public void changed() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * the messages that send a client the whole game, built once and shared by everyone they're sent to until the
+     * next change, so updateAll in a room full of spectators doesn't build and encode the same strings for each one.
+     * a snapshot built while the game was changing is never kept past the change, it has the old version
+     * @return the messages, in the order they're sent
+     */
+    public OutboundMessage[] snapshot() {
+        int current = version.get();
+        Snapshot cached = snapshot;
+        if(cached == null || cached.version != current) {
+            cached = new Snapshot(current, buildSnapshot());
+            snapshot = cached;
         }
+        return cached.messages;
     }
 
+    /**
+     * build the messages for snapshot from the game as it is now
+     * @return the messages
+     */
+    protected abstract OutboundMessage[] buildSnapshot();
+
     public abstract void sendGameState(ClientNetworkController client);
 }
@@ -8,6 +8,8 @@ import java.util.ArrayList;
 import javax.swing.*;
 
 import edu.ucsb.cs56.games.client_server.Controllers.Controller;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.BinaryProtocol;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Protocol;
 import edu.ucsb.cs56.games.client_server.Models.MessageModel;
 import edu.ucsb.cs56.games.client_server.Models.ClientModel;
 import edu.ucsb.cs56.games.client_server.Models.ResModel;
@@ -34,9 +36,14 @@ public class JavaClient implements KeyListener {
     public static JavaClient javaClient;
 
     Socket sock;
-    InputStreamReader stream;
-    BufferedReader reader;
+    InputStream input;
+    OutputStream output;
     PrintWriter writer;
+    //take the server up on BinaryProtocol frames if it offers them
+    public static boolean useFrames = true;
+    //sending frames, and reading them, once the server has said where its text stops
+    boolean framesOut;
+    volatile boolean framesIn;
 
     private ArrayList<ClientModel> clients;
     ArrayList<Integer> services;
@@ -64,7 +71,15 @@ public class JavaClient implements KeyListener {
     RefreshThread refreshThread;
     private boolean connected;
 
+    /**
+     * start the client. --text-only keeps it talking text even to a server that offers frames
+     * @param args command line arguments
+     */
     public static void main(String [] args) {
+        for(int i=0;i<args.length;i++) {
+            if(args[i].equals("--text-only"))
+                useFrames = false;
+        }
         javaClient = new JavaClient();
     }
 
@@ -273,9 +288,11 @@ public class JavaClient implements KeyListener {
             System.out.println("Connected");
             setConnected(true);
             init();
-            stream = new InputStreamReader(sock.getInputStream());
-            reader = new BufferedReader(stream);
-            writer = new PrintWriter(sock.getOutputStream());
+            input = new BufferedInputStream(sock.getInputStream());
+            output = sock.getOutputStream();
+            writer = new PrintWriter(output);
+            framesOut = false;
+            framesIn = false;
             sendMessage("ACKNOWLEDGE ME!");
             thread = new InputReader();
             thread.start();
@@ -302,129 +319,165 @@ public class JavaClient implements KeyListener {
      * @param string the data from the server to handle
      */
     public void handleMessage(String string) {
-        if(string.indexOf("CON;") == 0) {
-            int pid = Integer.parseInt(string.substring(4));
-            System.out.println("Client "+pid+" has connected");
-            while(getClients().size() <= pid)
-                getClients().add(null);
-            if(getClients().get(pid) == null)
-                getClients().set(pid, new ClientModel(pid));
-            else
-                sendMessage("INFO;");
-            messages.add(new MessageModel(getClients().get(pid).getName()+" connected", "Server",true,false));
-            updateClients();
-            updateMessages();
-        } else if(string.indexOf("DCON[") == 0) {
-            String[] data = string.substring(5).split("]");
-            int pid = Integer.parseInt(data[0]);
-            System.out.println("Client " + pid + " has disconnected: " + data[1]);
-            if(getClients().size() > pid && getClients().get(pid) != null) {
-                messages.add(new MessageModel(getClients().get(pid).getName() + " disconnected: "+data[1], "Server", true, false));
-                getClients().set(pid, null);
-            }
-            updateClients();
-            updateMessages();
-            if(pid == getId())
-                thread.running = false;
-        } else if(string.indexOf("MSG[") == 0) {
-            String[] data = string.substring(4).split("]");
-            int pid = Integer.parseInt(data[0]);
-            if(getClients().size() <= pid || getClients().get(pid) == null)
-                return;
-            String msg = string.substring(4+data[0].length()+1);
-            System.out.println("Client "+pid+" said "+msg);
-            if(getClients().size() > pid) {
-                messages.add(new MessageModel(msg,getClients().get(pid).getName(),false,false));
+        int opcode = Protocol.opcode(string);
+        switch(opcode) {
+            case Protocol.CON: {
+                int pid = Integer.parseInt(string.substring(4));
+                System.out.println("Client "+pid+" has connected");
+                while(getClients().size() <= pid)
+                    getClients().add(null);
+                if(getClients().get(pid) == null)
+                    getClients().set(pid, new ClientModel(pid));
+                else
+                    sendMessage("INFO;");
+                messages.add(new MessageModel(getClients().get(pid).getName()+" connected", "Server",true,false));
+                updateClients();
                 updateMessages();
+                break;
             }
-        } else if(string.indexOf("PMSG[") == 0) {
-            String[] data = string.substring(5).split("]");
-            int pid = Integer.parseInt(data[0]);
-            String msg = string.substring(5+data[0].length()+1);
-            System.out.println("Client "+pid+" privately said "+msg);
-            if(getClients().size() > pid) {
-                messages.add(new MessageModel(msg,getClients().get(pid).getName(), true, false));
+            case Protocol.DCON: {
+                String[] data = string.substring(5).split("]");
+                int pid = Integer.parseInt(data[0]);
+                System.out.println("Client " + pid + " has disconnected: " + data[1]);
+                if(getClients().size() > pid && getClients().get(pid) != null) {
+                    messages.add(new MessageModel(getClients().get(pid).getName() + " disconnected: "+data[1], "Server", true, false));
+                    getClients().set(pid, null);
+                }
+                updateClients();
                 updateMessages();
+                if(pid == getId())
+                    thread.running = false;
+                break;
             }
-        } else if(string.indexOf("RMSG[") == 0) {
-            String[] data = string.substring(5).split("]");
-            int pid = Integer.parseInt(data[0]);
-            String msg = string.substring(5+data[0].length()+1);
-            if(getClients().size() > pid) {
-                messages.add(new MessageModel(msg,getClients().get(pid).getName(),true,true));
-                updateMessages();
+            case Protocol.MSG: {
+                String[] data = string.substring(4).split("]");
+                int pid = Integer.parseInt(data[0]);
+                if(getClients().size() <= pid || getClients().get(pid) == null)
+                    return;
+                String msg = string.substring(4+data[0].length()+1);
+                System.out.println("Client "+pid+" said "+msg);
+                if(getClients().size() > pid) {
+                    messages.add(new MessageModel(msg,getClients().get(pid).getName(),false,false));
+                    updateMessages();
+                }
+                break;
             }
-        } else if(string.indexOf("SMSG;") == 0) {
-            String msg = string.substring(5);
-            if(msg != null && msg.length() > 0) {
-                messages.add(new MessageModel(msg,"Server",true,false));
-                updateMessages();
+            case Protocol.PMSG: {
+                String[] data = string.substring(5).split("]");
+                int pid = Integer.parseInt(data[0]);
+                String msg = string.substring(5+data[0].length()+1);
+                System.out.println("Client "+pid+" privately said "+msg);
+                if(getClients().size() > pid) {
+                    messages.add(new MessageModel(msg,getClients().get(pid).getName(), true, false));
+                    updateMessages();
+                }
+                break;
             }
-        } else if(string.indexOf("ID;") == 0) {
-            setId(Integer.parseInt(string.substring(3)));
-            if(name == null)
-                name = "User"+getId();
-
-            sendMessage("CON;");
-            sendMessage("NAME;"+name);
-            sendMessage("INFO;");
-            System.out.println(location);
-        } else if(string.indexOf("ALL;") == 0) {
-            String[] connected = string.substring(4).split(";");
-            for(int i=0;i<connected.length;i++) {
-                String[] info = connected[i].split(",");
-                if(getClients().size() <= i)
-                    getClients().add(null);
-                if(connected[i].equals(","))
-                    continue;
-                if(info[0].equals("")) {
-                    if(getClients().get(i) != null)
-                        getClients().set(i, null);
-                } else {
-                    getClients().set(i, new ClientModel(i, info[0], Integer.parseInt(info[1])));
-                    if(getId() == i)
-                        changeLocation(Integer.parseInt(info[1]));
+            case Protocol.RMSG: {
+                String[] data = string.substring(5).split("]");
+                int pid = Integer.parseInt(data[0]);
+                String msg = string.substring(5+data[0].length()+1);
+                if(getClients().size() > pid) {
+                    messages.add(new MessageModel(msg,getClients().get(pid).getName(),true,true));
+                    updateMessages();
                 }
+                break;
             }
-            //the problem is here, we need to have something else removing the clients from the list and re-adding them
-            //otherwise when the thing redraws, it'll freak out
-            updateClients();
-        } else if(string.indexOf("SERV;") == 0) {
-            String[] serv = string.substring(5).split(",");
-            for(int i=0;i<serv.length;i++) {
-                if(services.size() <= i)
-                    services.add(null);
-                services.set(i, Integer.parseInt(serv[i]));
+            case Protocol.SMSG: {
+                String msg = string.substring(5);
+                if(msg != null && msg.length() > 0) {
+                    messages.add(new MessageModel(msg,"Server",true,false));
+                    updateMessages();
+                }
+                break;
             }
-            updateClients();
-            changeLocation(location);
-        } else if(string.indexOf("NEW;") == 0) {
-            services.add(Integer.parseInt(string.substring(4)));
-        } else if(string.indexOf("NAME[") == 0) {
-            String[] data = string.substring(5).split("]");
-            int pid = Integer.parseInt(data[0]);
-            String pname = data[1];
-            if(getClients().size() <= pid)
-                return;
-            if(getClients().get(pid) == null)
-                getClients().set(pid, new ClientModel(getId(), pname, 0));
-            //messages.add(new edu.ucsb.cs56.W12.jcolicchio.issue535.Message(clients.get(pid).name+" changed his name to "+pname, "Server",true,false,clients.get(0).getColor()));
-            getClients().get(pid).setName(pname);
-            if(pid == getId())
-                name = pname;
-            updateClients();
-            updateMessages();
-        } else if(string.indexOf("MOVED[") == 0) {
-            String[] data = string.substring(6).split("]");
-            int pid = Integer.parseInt(data[0]);
-            getClients().get(pid).setLocation(Integer.parseInt(data[1]));
-            if(pid == getId()) {
-                changeLocation(getClients().get(getId()).getLocation());
+            case Protocol.ID: {
+                setId(Integer.parseInt(string.substring(3)));
+                if(name == null)
+                    name = "User"+getId();
+
+                //we can read a chess game as one POS message, so the server doesn't send STATE and PLAYERS
+                sendMessage("POS;");
+                sendMessage("CON;");
+                sendMessage("NAME;"+name);
+                sendMessage("INFO;");
+                System.out.println(location);
+                break;
+            }
+            case Protocol.BIN: {
+                //the first BIN is the server offering frames, the second is where its text stops
+                if(framesOut)
+                    framesIn = true;
+                else if(useFrames && Integer.parseInt(string.substring(4)) == BinaryProtocol.VERSION)
+                    startFrames();
+                break;
+            }
+            case Protocol.ALL: {
+                String[] connected = string.substring(4).split(";");
+                for(int i=0;i<connected.length;i++) {
+                    String[] info = connected[i].split(",");
+                    if(getClients().size() <= i)
+                        getClients().add(null);
+                    if(connected[i].equals(","))
+                        continue;
+                    if(info[0].equals("")) {
+                        if(getClients().get(i) != null)
+                            getClients().set(i, null);
+                    } else {
+                        getClients().set(i, new ClientModel(i, info[0], Integer.parseInt(info[1])));
+                        if(getId() == i)
+                            changeLocation(Integer.parseInt(info[1]));
+                    }
+                }
+                //the problem is here, we need to have something else removing the clients from the list and re-adding them
+                //otherwise when the thing redraws, it'll freak out
+                updateClients();
+                break;
+            }
+            case Protocol.SERV: {
+                String[] serv = string.substring(5).split(",");
+                for(int i=0;i<serv.length;i++) {
+                    if(services.size() <= i)
+                        services.add(null);
+                    services.set(i, Integer.parseInt(serv[i]));
+                }
+                updateClients();
+                changeLocation(location);
+                break;
+            }
+            case Protocol.NEW: {
+                services.add(Integer.parseInt(string.substring(4)));
+                break;
+            }
+            case Protocol.NAME: {
+                String[] data = string.substring(5).split("]");
+                int pid = Integer.parseInt(data[0]);
+                String pname = data[1];
+                if(getClients().size() <= pid)
+                    return;
+                if(getClients().get(pid) == null)
+                    getClients().set(pid, new ClientModel(getId(), pname, 0));
+                //messages.add(new edu.ucsb.cs56.W12.jcolicchio.issue535.Message(clients.get(pid).name+" changed his name to "+pname, "Server",true,false,clients.get(0).getColor()));
+                getClients().get(pid).setName(pname);
+                if(pid == getId())
+                    name = pname;
+                updateClients();
+                updateMessages();
+                break;
+            }
+            case Protocol.MOVED: {
+                String[] data = string.substring(6).split("]");
+                int pid = Integer.parseInt(data[0]);
+                getClients().get(pid).setLocation(Integer.parseInt(data[1]));
+                if(pid == getId()) {
+                    changeLocation(getClients().get(getId()).getLocation());
+                }
+                updateClients();
+                updateMessages();
+                break;
             }
-            updateClients();
-            updateMessages();
         }
-        canvasRef.handleMessage(string);
+        canvasRef.handleMessage(opcode, string);
     }
 
     /** changes the location of the client, in order to generate a service panel associated with
@@ -470,9 +523,27 @@ public class JavaClient implements KeyListener {
      * or a literal message to be broadcast to all users in the message box
      * @param string a string of data to send to the server
      */
-    public void sendMessage(String string) {
-        writer.println(string);
+    public synchronized void sendMessage(String string) {
+        if(!framesOut) {
+            writer.println(string);
+            writer.flush();
+            return;
+        }
+        try {
+            output.write(BinaryProtocol.encode(string));
+            output.flush();
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * answer the server's offer of frames, and send nothing but frames from here on
+     */
+    synchronized void startFrames() {
+        writer.println("BIN;"+BinaryProtocol.VERSION);
         writer.flush();
+        framesOut = true;
     }
 
     @Override
@@ -541,7 +612,7 @@ public class JavaClient implements KeyListener {
             String line;
             running = true;
             try {
-                while(running && (line = reader.readLine()) != null) {
+                while(running && (line = (framesIn ? BinaryProtocol.readFrame(input) : BinaryProtocol.readLine(input))) != null) {
                     System.out.println("incoming... "+line);
                     handleMessage(line);
                 }
@@ -551,8 +622,7 @@ public class JavaClient implements KeyListener {
             } catch(Exception ex) {
                 ex.printStackTrace();
                 System.out.println("crashed for some other reason, disconnecting...");
-                writer.println("DCON;"+getId());
-                writer.flush();
+                sendMessage("DCON;"+getId());
             }
 
             try{
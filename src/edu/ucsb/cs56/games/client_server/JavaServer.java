@@ -8,13 +8,24 @@ import edu.ucsb.cs56.games.client_server.Controllers.GomokuController;
 import edu.ucsb.cs56.games.client_server.Controllers.LobbyController;
 import edu.ucsb.cs56.games.client_server.Controllers.Controller;
 import edu.ucsb.cs56.games.client_server.Controllers.TicTacToeController;
+import edu.ucsb.cs56.games.client_server.Controllers.TwoPlayerGameController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.BinaryProtocol;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.BotPool;
 import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientNetworkController;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.ClientRegistry;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.NioEventLoop;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.OutboundMessage;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.OutboundQueue;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.WriteBatch;
+import edu.ucsb.cs56.games.client_server.Models.Chess.OpeningBook;
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.*;
 import java.net.*;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Enumeration;
 
@@ -32,7 +43,7 @@ import java.util.Enumeration;
 //start a java message server that listens for connections to port X and then connects the client 
 public class JavaServer{
     //this belongs to the server itself, independent of the chat standards
-    public static ArrayList<ClientNetworkController> clients;
+    public static ClientRegistry clients;
     public static ArrayList<Controller> services;
     public static LobbyController lobby;
     
@@ -59,15 +70,73 @@ public class JavaServer{
     public int portNum;
     public static boolean nogui;
 
+    //serve clients from a few selector threads instead of a thread each
+    public static boolean useNio;
+    public static int nioThreads = Runtime.getRuntime().availableProcessors();
+    public NioEventLoop[] loops;
+    //run each blocking client connection on a virtual thread, where the jvm supports them
+    public static boolean useVirtualThreads;
+
+    /**
+     * start the server. a port number as an argument starts it without the gui, and options can follow:
+     * --nio to use non-blocking io, --nio-threads=N to set how many event loops it uses, or --virtual to keep
+     * blocking io but give each client a virtual thread instead of a platform thread.
+     * --queue-size=N caps how many messages can wait for a client, and --overflow=drop-chat|coalesce|disconnect
+     * picks what happens to a client that falls that far behind. --batch-latency=MS bounds how long replies to one
+     * message are held back to be written together, 0 turns that off. --direct-buffers encodes outgoing messages into
+     * direct memory, which saves the nio loops a copy. --log-level=trace|debug|info|warn|error|off picks how much gets
+     * logged. --bot-threads=N sets how many threads bots search on between them, --bot-search-threads=N how many of
+     * those one bot's move can use at once, and --bot-time=MS how long a bot thinks about each move. --book=PATH
+     * points the bots at an opening book other than the one ant book makes. --no-deltas always sends gomoku and tic
+     * tac toe players the whole board, for clients that don't know DELTA, and --text-only never offers clients
+     * BinaryProtocol frames
+     * @param args command line arguments
+     */
     public static void main(String [] args) {
-        if(args.length > 0) {
+        String port = null;
+        for(int i=0;i<args.length;i++) {
+            if(args[i].equals("--nio"))
+                useNio = true;
+            else if(args[i].equals("--virtual"))
+                useVirtualThreads = true;
+            else if(args[i].equals("--direct-buffers"))
+                OutboundMessage.direct = true;
+            else if(args[i].indexOf("--batch-latency=") == 0) {
+                WriteBatch.maxLatencyMillis = Integer.parseInt(args[i].substring(16));
+                WriteBatch.enabled = WriteBatch.maxLatencyMillis > 0;
+            } else if(args[i].indexOf("--queue-size=") == 0)
+                OutboundQueue.defaultCapacity = Math.max(1, Integer.parseInt(args[i].substring(13)));
+            else if(args[i].indexOf("--overflow=") == 0 && OutboundQueue.parsePolicy(args[i].substring(11)) >= 0)
+                OutboundQueue.defaultPolicy = OutboundQueue.parsePolicy(args[i].substring(11));
+            else if(args[i].indexOf("--log-level=") == 0 && Log.parseLevel(args[i].substring(12)) >= 0)
+                Log.level = Log.parseLevel(args[i].substring(12));
+            else if(args[i].indexOf("--bot-threads=") == 0) {
+                BotPool.threads = Math.max(1, Integer.parseInt(args[i].substring(14)));
+                BotPool.searchThreads = BotPool.threads;
+            } else if(args[i].indexOf("--bot-search-threads=") == 0)
+                BotPool.searchThreads = Math.max(1, Integer.parseInt(args[i].substring(21)));
+            else if(args[i].equals("--no-deltas"))
+                TwoPlayerGameController.deltas = false;
+            else if(args[i].equals("--text-only"))
+                BinaryProtocol.offered = false;
+            else if(args[i].indexOf("--book=") == 0)
+                OpeningBook.path = args[i].substring(7);
+            else if(args[i].indexOf("--bot-time=") == 0)
+                BotPool.moveMillis = Math.max(1, Long.parseLong(args[i].substring(11)));
+            else if(args[i].indexOf("--nio-threads=") == 0) {
+                useNio = true;
+                nioThreads = Math.max(1, Integer.parseInt(args[i].substring(14)));
+            } else if(port == null)
+                port = args[i];
+        }
+        if(port != null) {
             try {
-                int portNum = Integer.parseInt(args[0]);
+                int portNum = Integer.parseInt(port);
                 nogui = true;
                 javaServer = new JavaServer();
                 javaServer.connect(portNum);
             } catch(Exception ex) {
-                System.out.println("bad port: "+args[0]);
+                System.out.println("bad port: "+port);
                 System.exit(1);
             }
         } else
@@ -83,7 +152,7 @@ public class JavaServer{
             URL ipGetter = new URL(" http://api.externalip.net/ip/");
             BufferedReader ip = new BufferedReader(new InputStreamReader(ipGetter.openStream()));
             runningOn = ip.readLine();
-            System.out.println(runningOn);
+            Log.info(runningOn);
         } catch(Exception ex) {
             ex.printStackTrace();
         }
@@ -126,6 +195,27 @@ public class JavaServer{
         mainFrame.setVisible(true);
     }
 
+    /**
+     * make an unstarted thread to run a client connection on, a virtual thread if they were asked for and this
+     * jvm has them (java 21+), otherwise a regular platform thread
+     * @param conn the connection to run
+     * @return thread that will run the connection
+     */
+    public static Thread newConnectionThread(Runnable conn) {
+        if(useVirtualThreads) {
+            try {
+                //looked up reflectively so the server still builds and runs on jvms without virtual threads
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                return (Thread)builderClass.getMethod("unstarted", Runnable.class).invoke(builder, conn);
+            } catch(Exception ex) {
+                Log.warn("virtual threads not available, using platform threads");
+                useVirtualThreads = false;
+            }
+        }
+        return new Thread(conn);
+    }
+
     /**
      * update gui with number of clients
      */
@@ -133,7 +223,7 @@ public class JavaServer{
         if(nogui)
             return;
         if(javaServer.running)
-            javaServer.status.setText(javaServer.runningOn+", "+clients.size()+" user"+(clients.size()!=1?"s":""));
+            javaServer.status.setText(javaServer.runningOn+", "+clients.count()+" user"+(clients.count()!=1?"s":""));
         else
             javaServer.status.setText("Offline");
     }
@@ -143,12 +233,12 @@ public class JavaServer{
      * @param string data to send
      */
     public static void broadcastMessage(String string) {
-        System.out.println("broadcasting... "+string);
-        synchronized (clients) {
-            for(int i=0;i<clients.size();i++)
-                if(clients.get(i) != null)
-                    clients.get(i).sendMessage(string);
-        }
+        if(Log.enabled(Log.DEBUG))
+            Log.debug("broadcasting... "+string);
+        OutboundMessage message = new OutboundMessage(string);
+        ClientNetworkController[] all = clients.all();
+        for(int i=0;i<all.length;i++)
+            all[i].sendMessage(message);
     }
 
     /** find a client given a string name
@@ -157,28 +247,24 @@ public class JavaServer{
      * @return id of client or -1 if not found
      */
     public static int findClientByName(String name) {
-        synchronized (clients) {
-            for(int i=0;i<clients.size();i++) {
-                if(clients.get(i) != null && clients.get(i).client.getName().equalsIgnoreCase(name))
-                    return i;
-            }
-        }
+        return clients.findByName(name);
+    }
 
-        return -1;
+    /**
+     * find a client given a string name
+     * @param name name of client
+     * @return the client, or null if not found
+     */
+    public static ClientNetworkController findClient(String name) {
+        return clients.getByName(name);
     }
-    
+
+    /**
+     * find the first name of the form UserN that nobody is using
+     * @return an unused name
+     */
     public static String findUnusedName() {
-        String name = "";
-        int id = 0;
-        int foundAt;
-        synchronized (clients) {
-            do {
-                name = "User"+id;
-                foundAt = findClientByName(name);
-                id++;
-            } while(foundAt != -1);
-        }
-        return name;
+        return clients.claimUnusedName(null);
     }
 
     /**
@@ -237,7 +323,7 @@ public class JavaServer{
             if(IP.equals(bannedList.get(i)))
                 return;
         }
-        System.out.println("B&: "+IP);
+        Log.info("B&: "+IP);
         bannedList.add(IP.split(":")[0]);
     }
 
@@ -302,7 +388,7 @@ public class JavaServer{
         
         public void run() {
             running = true;
-            clients = new ArrayList<ClientNetworkController>();
+            clients = new ClientRegistry();
             bannedList = new ArrayList<String>();
 
             services = new ArrayList<Controller>();
@@ -313,14 +399,18 @@ public class JavaServer{
             //clients.add(new edu.ucsb.cs56.W12.jcolicchio.issue535.ShoutConnect(clients.size()));
             ServerSocket serverSock = null;
             Socket sock = null;
-            System.out.println("total users: "+clients.size());
+            Log.debug("total users: "+clients.count());
+            if(useNio) {
+                runNio();
+                return;
+            }
             try {
                 connected = true;
                 serverSock = new ServerSocket(portNum);
                 
                 while(running) {
                     //a new client wants to connect
-                    System.out.println("waiting for next connection...");
+                    Log.debug("waiting for next connection...");
                     updateServerGUI();
                     sock = serverSock.accept();
                     if(!running) {
@@ -329,12 +419,12 @@ public class JavaServer{
                         break;
                     }
 
-                    System.out.println("incoming connecting...");
+                    Log.debug("incoming connecting...");
                     //give them a client object, run it in a thread
                     ClientNetworkController conn = new ClientNetworkController(sock);
-                    Thread thread = new Thread(conn);
+                    Thread thread = newConnectionThread(conn);
                     thread.start();
-                    System.out.println("thread started");
+                    Log.debug("thread started");
                 }
             } catch(IOException ex) {
                 if(!nogui) {
@@ -342,27 +432,78 @@ public class JavaServer{
                     javaServer.connectButton.setText("Start Server");
                 }
                 ex.printStackTrace();
-                System.out.println("requested port already taken. quitting...");
+                Log.error("requested port already taken. quitting...");
             }
             try {
-                for(int i=0;i<clients.size();i++)
-                    if(clients.get(i) != null)
-                        clients.get(i).disconnect("Server stopping");
-                int left = 0;
-                do {
-                    left = 0;
-                    for(int i=0;i<clients.size();i++) {
-                        if(clients.get(i) != null)
-                            left++;
-                    }
-                    Thread.sleep(50);
-                } while(left > 0);
+                disconnectAll();
                 serverSock.close();
             } catch(Exception ex) {
                 ex.printStackTrace();
             }
             connected = false;
         }
+
+        /**
+         * accept connections on a blocking channel and hand each one to an event loop, round robin
+         */
+        void runNio() {
+            ServerSocketChannel serverChannel = null;
+            try {
+                connected = true;
+                loops = new NioEventLoop[nioThreads];
+                for(int i=0;i<loops.length;i++) {
+                    loops[i] = new NioEventLoop(i);
+                    loops[i].start();
+                }
+                serverChannel = ServerSocketChannel.open();
+                serverChannel.socket().setReuseAddress(true);
+                serverChannel.bind(new InetSocketAddress(portNum), 1024);
+                Log.info("nio server using "+loops.length+" event loops");
+
+                int next = 0;
+                while(running) {
+                    updateServerGUI();
+                    SocketChannel channel = serverChannel.accept();
+                    if(!running) {
+                        updateServerGUI();
+                        channel.close();
+                        break;
+                    }
+                    channel.socket().setTcpNoDelay(true);
+                    loops[next].register(channel);
+                    next = (next+1)%loops.length;
+                }
+            } catch(IOException ex) {
+                if(!nogui) {
+                    javaServer.status.setText("Port already taken");
+                    javaServer.connectButton.setText("Start Server");
+                }
+                ex.printStackTrace();
+                Log.error("requested port already taken. quitting...");
+            }
+            try {
+                disconnectAll();
+                for(int i=0;i<loops.length;i++)
+                    if(loops[i] != null)
+                        loops[i].shutdown();
+                if(serverChannel != null)
+                    serverChannel.close();
+            } catch(Exception ex) {
+                ex.printStackTrace();
+            }
+            connected = false;
+        }
+
+        /**
+         * tell every client the server is stopping and wait for them all to leave
+         * @throws InterruptedException if interrupted while waiting
+         */
+        void disconnectAll() throws InterruptedException {
+            for(ClientNetworkController client : clients.all())
+                client.disconnect("Server stopping");
+            while(clients.count() > 0)
+                Thread.sleep(50);
+        }
     }
 }
 
@@ -0,0 +1,186 @@
+package edu.ucsb.cs56.games.client_server;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log is the server's logging, with levels so the chatty stuff can be turned off, and a ring buffer in front of stdout
+ * so whoever logs never waits on the console: a message is dropped into the next free slot and a background thread
+ * prints it. if the ring is full the message is thrown away and counted rather than making anyone wait. anything
+ * that would build a string per message should check enabled(), or a connection's tracing flag, before logging, so
+ * that it costs next to nothing when it's off
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Log {
+    public static final int TRACE = 0;
+    public static final int DEBUG = 1;
+    public static final int INFO = 2;
+    public static final int WARN = 3;
+    public static final int ERROR = 4;
+    public static final int OFF = 5;
+
+    static final String[] NAMES = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR", "OFF"};
+
+    //lowest level that gets printed, changed from the command line or by an op
+    public static volatile int level = INFO;
+
+    //must be a power of two
+    static final int CAPACITY = 8192;
+    static final int MASK = CAPACITY-1;
+
+    //slot i holds a message once sequences[i] is one more than the position it was claimed at, and is free to claim
+    //again at a position p once sequences[i] == p
+    static final String[] ring = new String[CAPACITY];
+    static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    static final AtomicLong head = new AtomicLong();
+    static final AtomicLong dropped = new AtomicLong();
+    //only touched inside drain
+    static long tail;
+
+    static final PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1<<16), false);
+    static final Thread printer;
+
+    static {
+        for(int i=0;i<CAPACITY;i++)
+            sequences.set(i, i);
+        printer = new Thread("log printer") {
+            public void run() {
+                while(true) {
+                    if(!drain())
+                        LockSupport.parkNanos(5000000L);
+                }
+            }
+        };
+        printer.setDaemon(true);
+        printer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                drain();
+            }
+        });
+    }
+
+    /**
+     * whether a message at some level would be printed
+     * @param messageLevel level of the message
+     * @return if it's at or above the current level
+     */
+    public static boolean enabled(int messageLevel) {
+        return messageLevel >= level;
+    }
+
+    public static void trace(String message) {
+        log(TRACE, message);
+    }
+
+    public static void debug(String message) {
+        log(DEBUG, message);
+    }
+
+    public static void info(String message) {
+        log(INFO, message);
+    }
+
+    public static void warn(String message) {
+        log(WARN, message);
+    }
+
+    public static void error(String message) {
+        log(ERROR, message);
+    }
+
+    /**
+     * log a message if its level is enabled
+     * @param messageLevel one of TRACE, DEBUG, INFO, WARN or ERROR
+     * @param message the message
+     */
+    public static void log(int messageLevel, String message) {
+        if(messageLevel >= level)
+            publish(message);
+    }
+
+    /**
+     * log a message no matter the level, for tracing that was turned on for a specific connection or service
+     * @param message the message
+     */
+    public static void always(String message) {
+        publish(message);
+    }
+
+    static void publish(String message) {
+        long pos;
+        while(true) {
+            pos = head.get();
+            long diff = sequences.get((int)pos&MASK)-pos;
+            if(diff == 0) {
+                if(head.compareAndSet(pos, pos+1))
+                    break;
+            } else if(diff < 0) {
+                //the printer hasn't caught up, don't wait for it
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+        int slot = (int)pos&MASK;
+        ring[slot] = message;
+        sequences.set(slot, pos+1);
+    }
+
+    /**
+     * print everything waiting in the ring. normally only the printer thread calls this, the lock is for the
+     * shutdown hook printing whatever is left
+     * @return if there was anything to print
+     */
+    static synchronized boolean drain() {
+        boolean any = false;
+        while(true) {
+            int slot = (int)tail&MASK;
+            if(sequences.get(slot) != tail+1)
+                break;
+            out.println(ring[slot]);
+            ring[slot] = null;
+            sequences.set(slot, tail+CAPACITY);
+            tail++;
+            any = true;
+        }
+        long lost = dropped.getAndSet(0);
+        if(lost > 0) {
+            out.println("("+lost+" log messages dropped)");
+            any = true;
+        }
+        if(any)
+            out.flush();
+        return any;
+    }
+
+    /**
+     * parse a level name
+     * @param name trace, debug, info, warn, error or off, ignoring case
+     * @return the level, or -1 if the name isn't one
+     */
+    public static int parseLevel(String name) {
+        for(int i=0;i<NAMES.length;i++)
+            if(NAMES[i].equalsIgnoreCase(name))
+                return i;
+        return -1;
+    }
+
+    /**
+     * name of a level, for showing to users
+     * @param messageLevel a level
+     * @return its name
+     */
+    public static String levelName(int messageLevel) {
+        if(messageLevel < 0 || messageLevel >= NAMES.length)
+            return "?";
+        return NAMES[messageLevel];
+    }
+}
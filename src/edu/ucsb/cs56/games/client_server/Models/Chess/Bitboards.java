@@ -0,0 +1,119 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+/**
+ * Bitboards holds the lookup tables the chess engine uses to find attacks without walking the board square by square.
+ * a bitboard is a long with one bit per square, and squares are numbered the same way ChessModel's grid is laid out:
+ * square = y*8+x, so square 0 is the top left corner on black's side and 63 is the bottom right on white's side.
+ * knight, king and pawn attacks are looked up directly, and sliding pieces use precomputed rays cut off at the first
+ * piece in the way
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Bitboards {
+    //ray directions, the first four are the rook's and the last four the bishop's
+    public static final int NORTH = 0;
+    public static final int SOUTH = 1;
+    public static final int EAST = 2;
+    public static final int WEST = 3;
+    public static final int NORTH_EAST = 4;
+    public static final int NORTH_WEST = 5;
+    public static final int SOUTH_EAST = 6;
+    public static final int SOUTH_WEST = 7;
+
+    static final int[] DX = {0, 0, 1, -1, 1, -1, 1, -1};
+    static final int[] DY = {-1, 1, 0, 0, -1, -1, 1, 1};
+    //whether squares get bigger going along the ray, which decides which end of the blockers is the nearest one
+    static final boolean[] INCREASING = {false, true, true, false, false, false, true, true};
+    static final int[] OPPOSITE = {SOUTH, NORTH, WEST, EAST, SOUTH_WEST, SOUTH_EAST, NORTH_WEST, NORTH_EAST};
+
+    public static final long[] KNIGHT = new long[64];
+    public static final long[] KING = new long[64];
+    //PAWN_ATTACKS[color][square] is where a pawn of that color on that square attacks
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+    //RAYS[direction][square] is every square from square to the edge of the board in that direction
+    public static final long[][] RAYS = new long[8][64];
+    //ROWS[y] is every square in row y of the grid
+    public static final long[] ROWS = new long[8];
+    //BETWEEN[a][b] is the squares strictly between a and b if they share a row, column or diagonal, otherwise empty
+    public static final long[][] BETWEEN = new long[64][64];
+    //LINE[a][b] is the whole row, column or diagonal through a and b, edge to edge, or empty if there isn't one
+    public static final long[][] LINE = new long[64][64];
+
+    static {
+        for(int y=0;y<8;y++) {
+            for(int x=0;x<8;x++) {
+                int square = y*8+x;
+                ROWS[y] |= bit(square);
+                KNIGHT[square] = offsets(x, y, new int[]{1, 2, 2, 1, -1, -2, -2, -1}, new int[]{2, 1, -1, -2, -2, -1, 1, 2});
+                KING[square] = offsets(x, y, new int[]{1, 1, 0, -1, -1, -1, 0, 1}, new int[]{0, 1, 1, 1, 0, -1, -1, -1});
+                PAWN_ATTACKS[Position.WHITE][square] = offsets(x, y, new int[]{-1, 1}, new int[]{-1, -1});
+                PAWN_ATTACKS[Position.BLACK][square] = offsets(x, y, new int[]{-1, 1}, new int[]{1, 1});
+                for(int dir=0;dir<8;dir++) {
+                    int tx = x+DX[dir];
+                    int ty = y+DY[dir];
+                    while(onBoard(tx, ty)) {
+                        RAYS[dir][square] |= bit(ty*8+tx);
+                        tx += DX[dir];
+                        ty += DY[dir];
+                    }
+                }
+            }
+        }
+        for(int a=0;a<64;a++) {
+            for(int dir=0;dir<8;dir++) {
+                long ray = RAYS[dir][a];
+                long line = ray|RAYS[OPPOSITE[dir]][a]|bit(a);
+                while(ray != 0) {
+                    int b = Long.numberOfTrailingZeros(ray);
+                    ray &= ray-1;
+                    BETWEEN[a][b] = RAYS[dir][a]&~RAYS[dir][b]&~bit(b);
+                    LINE[a][b] = line;
+                }
+            }
+        }
+    }
+
+    static long offsets(int x, int y, int[] dx, int[] dy) {
+        long targets = 0;
+        for(int i=0;i<dx.length;i++)
+            if(onBoard(x+dx[i], y+dy[i]))
+                targets |= bit((y+dy[i])*8+x+dx[i]);
+        return targets;
+    }
+
+    static boolean onBoard(int x, int y) {
+        return x >= 0 && x < 8 && y >= 0 && y < 8;
+    }
+
+    public static long bit(int square) {
+        return 1L<<square;
+    }
+
+    /**
+     * squares a slider sees in one direction, up to and including the first piece in the way
+     * @param dir one of the direction constants
+     * @param square where the slider is
+     * @param occupied every piece on the board
+     * @return the squares attacked along that ray
+     */
+    public static long ray(int dir, int square, long occupied) {
+        long ray = RAYS[dir][square];
+        long blockers = ray&occupied;
+        if(blockers == 0)
+            return ray;
+        int first = INCREASING[dir] ? Long.numberOfTrailingZeros(blockers) : 63-Long.numberOfLeadingZeros(blockers);
+        return ray^RAYS[dir][first];
+    }
+
+    public static long rookAttacks(int square, long occupied) {
+        return ray(NORTH, square, occupied)|ray(SOUTH, square, occupied)
+                |ray(EAST, square, occupied)|ray(WEST, square, occupied);
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return ray(NORTH_EAST, square, occupied)|ray(NORTH_WEST, square, occupied)
+                |ray(SOUTH_EAST, square, occupied)|ray(SOUTH_WEST, square, occupied);
+    }
+}
@@ -0,0 +1,149 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+/**
+ * Evaluation guesses how good a position is without searching any moves: material, plus a bonus or penalty for where
+ * each piece stands, from the well known simplified evaluation tables. the king wants to hide while there's a lot of
+ * material left and come to the middle once most of it is gone, so its table slides from one to the other as pieces
+ * come off. scores are in centipawns
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Evaluation {
+    //indexed by piece type, the king's value never matters since it's never taken
+    public static final int[] VALUES = {100, 320, 330, 500, 900, 0};
+
+    //how much each piece type counts toward the middlegame, a full board adds up to PHASE_TOTAL
+    static final int[] PHASE = {0, 1, 1, 2, 4, 0};
+    static final int PHASE_TOTAL = 24;
+
+    //from white's side, square 0 is a8, black looks them up with the square flipped top to bottom
+    static final int[] PAWN_TABLE = {
+         0,  0,  0,  0,  0,  0,  0,  0,
+        50, 50, 50, 50, 50, 50, 50, 50,
+        10, 10, 20, 30, 30, 20, 10, 10,
+         5,  5, 10, 25, 25, 10,  5,  5,
+         0,  0,  0, 20, 20,  0,  0,  0,
+         5, -5,-10,  0,  0,-10, -5,  5,
+         5, 10, 10,-20,-20, 10, 10,  5,
+         0,  0,  0,  0,  0,  0,  0,  0
+    };
+    static final int[] KNIGHT_TABLE = {
+        -50,-40,-30,-30,-30,-30,-40,-50,
+        -40,-20,  0,  0,  0,  0,-20,-40,
+        -30,  0, 10, 15, 15, 10,  0,-30,
+        -30,  5, 15, 20, 20, 15,  5,-30,
+        -30,  0, 15, 20, 20, 15,  0,-30,
+        -30,  5, 10, 15, 15, 10,  5,-30,
+        -40,-20,  0,  5,  5,  0,-20,-40,
+        -50,-40,-30,-30,-30,-30,-40,-50
+    };
+    static final int[] BISHOP_TABLE = {
+        -20,-10,-10,-10,-10,-10,-10,-20,
+        -10,  0,  0,  0,  0,  0,  0,-10,
+        -10,  0,  5, 10, 10,  5,  0,-10,
+        -10,  5,  5, 10, 10,  5,  5,-10,
+        -10,  0, 10, 10, 10, 10,  0,-10,
+        -10, 10, 10, 10, 10, 10, 10,-10,
+        -10,  5,  0,  0,  0,  0,  5,-10,
+        -20,-10,-10,-10,-10,-10,-10,-20
+    };
+    static final int[] ROOK_TABLE = {
+         0,  0,  0,  0,  0,  0,  0,  0,
+         5, 10, 10, 10, 10, 10, 10,  5,
+        -5,  0,  0,  0,  0,  0,  0, -5,
+        -5,  0,  0,  0,  0,  0,  0, -5,
+        -5,  0,  0,  0,  0,  0,  0, -5,
+        -5,  0,  0,  0,  0,  0,  0, -5,
+        -5,  0,  0,  0,  0,  0,  0, -5,
+         0,  0,  0,  5,  5,  0,  0,  0
+    };
+    static final int[] QUEEN_TABLE = {
+        -20,-10,-10, -5, -5,-10,-10,-20,
+        -10,  0,  0,  0,  0,  0,  0,-10,
+        -10,  0,  5,  5,  5,  5,  0,-10,
+         -5,  0,  5,  5,  5,  5,  0, -5,
+          0,  0,  5,  5,  5,  5,  0, -5,
+        -10,  5,  5,  5,  5,  5,  0,-10,
+        -10,  0,  5,  0,  0,  0,  0,-10,
+        -20,-10,-10, -5, -5,-10,-10,-20
+    };
+    static final int[] KING_MIDDLE_TABLE = {
+        -30,-40,-40,-50,-50,-40,-40,-30,
+        -30,-40,-40,-50,-50,-40,-40,-30,
+        -30,-40,-40,-50,-50,-40,-40,-30,
+        -30,-40,-40,-50,-50,-40,-40,-30,
+        -20,-30,-30,-40,-40,-30,-30,-20,
+        -10,-20,-20,-20,-20,-20,-20,-10,
+         20, 20,  0,  0,  0,  0, 20, 20,
+         20, 30, 10,  0,  0, 10, 30, 20
+    };
+    static final int[] KING_END_TABLE = {
+        -50,-40,-30,-20,-20,-30,-40,-50,
+        -30,-20,-10,  0,  0,-10,-20,-30,
+        -30,-10, 20, 30, 30, 20,-10,-30,
+        -30,-10, 30, 40, 40, 30,-10,-30,
+        -30,-10, 30, 40, 40, 30,-10,-30,
+        -30,-10, 20, 30, 30, 20,-10,-30,
+        -30,-30,  0,  0,  0,  0,-30,-30,
+        -50,-30,-30,-30,-30,-30,-30,-50
+    };
+
+    //SCORES[piece][square] is the piece's value plus its table bonus, for every piece but the kings
+    static final int[][] SCORES = new int[12][64];
+    //KING_MIDDLE[color][square] and KING_END[color][square]
+    static final int[][] KING_MIDDLE = new int[2][64];
+    static final int[][] KING_END = new int[2][64];
+
+    static {
+        int[][] tables = {PAWN_TABLE, KNIGHT_TABLE, BISHOP_TABLE, ROOK_TABLE, QUEEN_TABLE};
+        for(int square=0;square<64;square++) {
+            //square^56 flips a square to the other side of the board
+            for(int type=Position.PAWN;type<=Position.QUEEN;type++) {
+                SCORES[Position.WHITE*6+type][square] = VALUES[type]+tables[type][square];
+                SCORES[Position.BLACK*6+type][square] = VALUES[type]+tables[type][square^56];
+            }
+            KING_MIDDLE[Position.WHITE][square] = KING_MIDDLE_TABLE[square];
+            KING_MIDDLE[Position.BLACK][square] = KING_MIDDLE_TABLE[square^56];
+            KING_END[Position.WHITE][square] = KING_END_TABLE[square];
+            KING_END[Position.BLACK][square] = KING_END_TABLE[square^56];
+        }
+    }
+
+    /**
+     * how good the position is for the side to move
+     * @param position the position
+     * @return the score in centipawns, positive if the side to move is ahead
+     */
+    public static int evaluate(Position position) {
+        int score = 0;
+        int phase = 0;
+        for(int type=Position.PAWN;type<=Position.QUEEN;type++) {
+            for(int color=Position.WHITE;color<=Position.BLACK;color++) {
+                int piece = color*6+type;
+                long bits = position.pieces[piece];
+                int sum = 0;
+                while(bits != 0) {
+                    sum += SCORES[piece][Long.numberOfTrailingZeros(bits)];
+                    bits &= bits-1;
+                    phase += PHASE[type];
+                }
+                score += (color == Position.WHITE ? sum : -sum);
+            }
+        }
+        phase = Math.min(phase, PHASE_TOTAL);
+        int middle = 0;
+        int end = 0;
+        for(int color=Position.WHITE;color<=Position.BLACK;color++) {
+            int king = position.kingSquare(color);
+            if(king < 0)
+                continue;
+            int sign = (color == Position.WHITE ? 1 : -1);
+            middle += sign*KING_MIDDLE[color][king];
+            end += sign*KING_END[color][king];
+        }
+        score += (middle*phase+end*(PHASE_TOTAL-phase))/PHASE_TOTAL;
+        return position.side == Position.WHITE ? score : -score;
+    }
+}
@@ -0,0 +1,148 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+/**
+ * Fen reads and writes positions in Forsyth-Edwards notation, the usual one line way of writing down a chess
+ * position, so test positions from anywhere can be loaded into a Position and games can be saved in a form any chess
+ * program understands. the move counters at the end are optional when reading
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Fen {
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    /**
+     * set up a position from a FEN string
+     * @param fen the position
+     * @param position where to set it up, whatever was there is cleared first
+     * @throws IllegalArgumentException if fen isn't a position
+     */
+    public static void read(String fen, Position position) {
+        String[] fields = fen.trim().split("\\s+");
+        if(fields.length < 4)
+            throw new IllegalArgumentException("not a FEN position: "+fen);
+        position.clear();
+
+        int x = 0;
+        int y = 0;
+        String rows = fields[0];
+        for(int i=0;i<rows.length();i++) {
+            char c = rows.charAt(i);
+            if(c == '/') {
+                if(x != 8)
+                    throw new IllegalArgumentException("row "+(8-y)+" isn't 8 squares: "+fen);
+                x = 0;
+                y++;
+            } else if(c >= '1' && c <= '8') {
+                x += c-'0';
+            } else {
+                int piece = Position.pieceFor(c);
+                if(piece == Position.EMPTY || x > 7 || y > 7)
+                    throw new IllegalArgumentException("bad piece placement: "+fen);
+                position.setPiece(y*8+x, piece);
+                x++;
+            }
+        }
+        if(x != 8 || y != 7)
+            throw new IllegalArgumentException("not 8 rows of 8 squares: "+fen);
+
+        if(fields[1].equals("w"))
+            position.side = Position.WHITE;
+        else if(fields[1].equals("b"))
+            position.side = Position.BLACK;
+        else
+            throw new IllegalArgumentException("bad side to move: "+fen);
+
+        int castling = 0;
+        if(fields[2].indexOf('K') >= 0)
+            castling |= Position.WHITE_KINGSIDE;
+        if(fields[2].indexOf('Q') >= 0)
+            castling |= Position.WHITE_QUEENSIDE;
+        if(fields[2].indexOf('k') >= 0)
+            castling |= Position.BLACK_KINGSIDE;
+        if(fields[2].indexOf('q') >= 0)
+            castling |= Position.BLACK_QUEENSIDE;
+        position.castling = castling;
+
+        position.epSquare = (fields[3].equals("-") ? -1 : square(fields[3]));
+    }
+
+    /**
+     * write a position out as FEN
+     * @param position the position
+     * @param halfmoveClock moves since the last capture or pawn move
+     * @param fullmove the move number, starting at 1 and going up after black moves
+     * @return the FEN string
+     */
+    public static String write(Position position, int halfmoveClock, int fullmove) {
+        StringBuilder fen = new StringBuilder(90);
+        for(int y=0;y<8;y++) {
+            int empty = 0;
+            for(int x=0;x<8;x++) {
+                int piece = position.board[y*8+x];
+                if(piece == Position.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if(empty > 0)
+                    fen.append(empty);
+                empty = 0;
+                fen.append(Position.letterFor(piece));
+            }
+            if(empty > 0)
+                fen.append(empty);
+            if(y < 7)
+                fen.append('/');
+        }
+        fen.append(position.side == Position.WHITE ? " w " : " b ");
+        int castling = position.castling;
+        if(castling == 0)
+            fen.append('-');
+        if((castling&Position.WHITE_KINGSIDE) != 0)
+            fen.append('K');
+        if((castling&Position.WHITE_QUEENSIDE) != 0)
+            fen.append('Q');
+        if((castling&Position.BLACK_KINGSIDE) != 0)
+            fen.append('k');
+        if((castling&Position.BLACK_QUEENSIDE) != 0)
+            fen.append('q');
+        fen.append(' ');
+        if(position.epSquare < 0)
+            fen.append('-');
+        else
+            fen.append(Move.square(position.epSquare));
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmove);
+        return fen.toString();
+    }
+
+    /**
+     * the move counters at the end of a FEN string
+     * @param fen a FEN string
+     * @return the halfmove clock and fullmove number, 0 and 1 if they're left off
+     */
+    public static int[] counters(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        int[] counters = {0, 1};
+        try {
+            if(fields.length > 4)
+                counters[0] = Integer.parseInt(fields[4]);
+            if(fields.length > 5)
+                counters[1] = Integer.parseInt(fields[5]);
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException("bad move counters: "+fen);
+        }
+        return counters;
+    }
+
+    /**
+     * a square from its name
+     * @param name like e4
+     * @return the square, a8 is 0 and h1 is 63
+     */
+    public static int square(String name) {
+        if(name.length() != 2 || name.charAt(0) < 'a' || name.charAt(0) > 'h' || name.charAt(1) < '1' || name.charAt(1) > '8')
+            throw new IllegalArgumentException("bad square: "+name);
+        return ('8'-name.charAt(1))*8+(name.charAt(0)-'a');
+    }
+}
@@ -0,0 +1,131 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+/**
+ * GameStatus works out whether the side to move is checkmated, stalemated or still playing. after a move only the
+ * side to move can be out of moves, so only it gets looked at, and instead of making and unmaking every move it finds
+ * the king, the pieces giving check and the pieces pinned to the king, and from those alone can tell whether some
+ * piece has somewhere to go. usually the first king step or the first piece it looks at settles it
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class GameStatus {
+    public static final int PLAYING = 0;
+    public static final int CHECKMATE = 1;
+    public static final int STALEMATE = 2;
+
+    //what the last evaluate found, for the side that was to move
+    public int color;
+    public int king;
+    public long checkers;
+    public long pinned;
+    public int state;
+
+    /**
+     * work out the status of the side to move
+     * @param position the position
+     * @param moves scratch space, at least Position.MAX_MOVES long
+     * @return PLAYING, CHECKMATE or STALEMATE
+     */
+    public int evaluate(Position position, int[] moves) {
+        color = position.side;
+        king = position.kingSquare(color);
+        checkers = position.checkers(color);
+        pinned = position.pinned(color);
+        boolean canMove;
+        if(king < 0)
+            canMove = position.hasLegalMove(moves);
+        else
+            canMove = hasLegalMove(position);
+        if(canMove)
+            state = PLAYING;
+        else
+            state = (checkers != 0 ? CHECKMATE : STALEMATE);
+        return state;
+    }
+
+    public boolean inCheck() {
+        return checkers != 0;
+    }
+
+    boolean hasLegalMove(Position p) {
+        int us = color;
+        int them = us^1;
+        int base = us*6;
+        long own = p.colors[us];
+        long enemy = p.colors[them];
+
+        //the king can step anywhere not attacked once it's out of the way, so sliders see through where it was
+        long withoutKing = p.occupied&~Bitboards.bit(king);
+        long steps = Bitboards.KING[king]&~own;
+        while(steps != 0) {
+            int to = Long.numberOfTrailingZeros(steps);
+            steps &= steps-1;
+            if(!p.isAttacked(to, them, withoutKing))
+                return true;
+        }
+        //castling only matters if the king can also step to the square next to it, which was checked just now
+
+        //in double check only the king can move
+        if((checkers&(checkers-1)) != 0)
+            return false;
+        //out of check anything not ours will do, in check the move has to take the checker or get in its way
+        long targets = ~own;
+        if(checkers != 0)
+            targets = checkers|Bitboards.BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+
+        for(int type=Position.KNIGHT;type<=Position.QUEEN;type++) {
+            long movers = p.pieces[base+type];
+            while(movers != 0) {
+                int from = Long.numberOfTrailingZeros(movers);
+                movers &= movers-1;
+                long to = p.attacks(type, from)&targets;
+                if((pinned&Bitboards.bit(from)) != 0)
+                    to &= Bitboards.LINE[king][from];
+                if(to != 0)
+                    return true;
+            }
+        }
+
+        long empty = ~p.occupied;
+        int forward = (us == Position.WHITE ? -8 : 8);
+        int startRow = (us == Position.WHITE ? 6 : 1);
+        long pawns = p.pieces[base+Position.PAWN];
+        while(pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns-1;
+            long to = Bitboards.PAWN_ATTACKS[us][from]&enemy;
+            int one = from+forward;
+            //a pawn on the last row would already have been promoted, but grid can hold anything
+            if(one >= 0 && one < 64 && (empty&Bitboards.bit(one)) != 0) {
+                to |= Bitboards.bit(one);
+                int two = one+forward;
+                if(from/8 == startRow && (empty&Bitboards.bit(two)) != 0)
+                    to |= Bitboards.bit(two);
+            }
+            to &= targets;
+            if((pinned&Bitboards.bit(from)) != 0)
+                to &= Bitboards.LINE[king][from];
+            if(to != 0)
+                return true;
+        }
+
+        //en passant takes a pawn off a square the capture doesn't land on, which can uncover the king sideways,
+        //it's rare enough to just try it
+        if(p.epSquare >= 0) {
+            long takers = Bitboards.PAWN_ATTACKS[them][p.epSquare]&p.pieces[base+Position.PAWN];
+            while(takers != 0) {
+                int from = Long.numberOfTrailingZeros(takers);
+                takers &= takers-1;
+                int move = Move.make(from, p.epSquare, Move.EN_PASSANT);
+                p.makeMove(move);
+                boolean legal = p.lastMoveLegal();
+                p.unmakeMove(move);
+                if(legal)
+                    return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,74 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+/**
+ * Move packs a chess move into an int so move lists are plain int arrays: the from square in the low 6 bits, the to
+ * square in the next 6, and a flag above that for the moves that do more than pick a piece up and put it down
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Move {
+    //no move, never a real one since from and to would be the same square
+    public static final int NONE = 0;
+
+    public static final int NORMAL = 0;
+    public static final int DOUBLE_PUSH = 1;
+    public static final int CASTLE = 2;
+    public static final int EN_PASSANT = 3;
+    //promotions, flag-3 is the piece type the pawn becomes
+    public static final int PROMOTE_KNIGHT = 4;
+    public static final int PROMOTE_BISHOP = 5;
+    public static final int PROMOTE_ROOK = 6;
+    public static final int PROMOTE_QUEEN = 7;
+
+    public static int make(int from, int to, int flag) {
+        return from|(to<<6)|(flag<<12);
+    }
+
+    public static int from(int move) {
+        return move&63;
+    }
+
+    public static int to(int move) {
+        return (move>>>6)&63;
+    }
+
+    public static int flag(int move) {
+        return move>>>12;
+    }
+
+    public static boolean isPromotion(int move) {
+        return flag(move) >= PROMOTE_KNIGHT;
+    }
+
+    /**
+     * the piece type a promotion turns the pawn into
+     * @param move a promotion
+     * @return one of Position's piece types
+     */
+    public static int promotionType(int move) {
+        return flag(move)-3;
+    }
+
+    /**
+     * the move in coordinate notation like e2e4 or e7e8q, for logging
+     * @param move a move
+     * @return the move as text
+     */
+    public static String toString(int move) {
+        String text = square(from(move))+square(to(move));
+        if(isPromotion(move))
+            text += "nbrq".charAt(flag(move)-PROMOTE_KNIGHT);
+        return text;
+    }
+
+    /**
+     * a square's name, a8 is square 0 and h1 is square 63
+     * @param square a square
+     * @return its name
+     */
+    public static String square(int square) {
+        return ""+(char)('a'+square%8)+(char)('8'-square/8);
+    }
+}
@@ -0,0 +1,216 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import edu.ucsb.cs56.games.client_server.Log;
+
+/**
+ * OpeningBook knows good moves for positions that come up at the start of a game, so a bot can play them right away
+ * instead of searching the same few positions over and over. the book is a file of fixed size records sorted by
+ * Zobrist key, which gets memory mapped the first time anyone asks for a move, so the server starts just as fast with
+ * a book as without, and only the pages actually looked at ever get read. the file is
+ *
+ *   bytes 0-3    MAGIC
+ *   bytes 4-7    how many records there are
+ *   then RECORD bytes per record: the position's key (8 bytes), the move (2 bytes, as in Move) and how often the
+ *   move was played in the lines the book was made from (2 bytes), every number most significant byte first
+ *
+ * a position with several moves has a record for each, next to each other. ant book makes the file from a list of
+ * opening lines in coordinate notation, see main
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class OpeningBook {
+    static final int MAGIC = 0x43534231;
+    static final int HEADER = 8;
+    static final int RECORD = 12;
+
+    //where the shared book is, changed from the command line before anyone asks for a move
+    public static String path = "build/chess.book";
+    static OpeningBook shared;
+
+    final ByteBuffer records;
+    final int count;
+    final int[] moves = new int[Position.MAX_MOVES];
+
+    OpeningBook(ByteBuffer records, int count) {
+        this.records = records;
+        this.count = count;
+    }
+
+    /**
+     * the book at path, opened the first time it's needed. if there's no book there the server just goes without
+     * @return the book, empty if it couldn't be opened
+     */
+    public static synchronized OpeningBook shared() {
+        if(shared == null) {
+            try {
+                shared = open(new File(path));
+                Log.info("opening book "+path+" has "+shared.count+" moves");
+            } catch(IOException e) {
+                Log.info("no opening book at "+path+", bots will search from the first move");
+                shared = new OpeningBook(null, 0);
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * map a book file
+     * @param file the book
+     * @return the book
+     * @throws IOException if the file can't be read or isn't a book
+     */
+    public static OpeningBook open(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            //the mapping stays good after the file is closed
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(data.limit() < HEADER || data.getInt(0) != MAGIC)
+                throw new IOException(file+" isn't an opening book");
+            int count = data.getInt(4);
+            if(count < 0 || (long)count*RECORD+HEADER > data.limit())
+                throw new IOException(file+" is cut short");
+            return new OpeningBook(data, count);
+        } finally {
+            in.close();
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    long keyAt(int record) {
+        return records.getLong(HEADER+record*RECORD);
+    }
+
+    /**
+     * pick a book move for a position, the more often a move was played the likelier it gets picked
+     * @param position the position, it's left as it was
+     * @param random where to get the pick from
+     * @return a legal move, or Move.NONE if the book has nothing for the position
+     */
+    public int probe(Position position, Random random) {
+        if(count == 0)
+            return Move.NONE;
+        long key = position.key();
+        //first record with this key
+        int low = 0;
+        int high = count;
+        while(low < high) {
+            int middle = (low+high)>>>1;
+            if(keyAt(middle) < key)
+                low = middle+1;
+            else
+                high = middle;
+        }
+        int total = 0;
+        int end = low;
+        while(end < count && keyAt(end) == key) {
+            total += records.getShort(HEADER+end*RECORD+10)&0xffff;
+            end++;
+        }
+        if(total == 0)
+            return Move.NONE;
+        int pick = random.nextInt(total);
+        for(int i=low;i<end;i++) {
+            int offset = HEADER+i*RECORD;
+            pick -= records.getShort(offset+10)&0xffff;
+            if(pick >= 0)
+                continue;
+            int move = records.getShort(offset+8)&0xffff;
+            //a different position with the same key would have to be awfully unlucky, but don't trust it blindly
+            synchronized(moves) {
+                if(position.findLegal(Move.from(move), Move.to(move), moves) == move)
+                    return move;
+            }
+            return Move.NONE;
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * make a book from opening lines, one per line of text, written as moves in coordinate notation like
+     * e2e4 e7e5 g1f3. blank lines and anything after a # are skipped
+     * @param args the file of lines, then the book file to write
+     * @throws IOException if either file can't be used
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length != 2) {
+            System.out.println("usage: OpeningBook lines.txt chess.book");
+            System.exit(1);
+        }
+        ArrayList<long[]> played = new ArrayList<long[]>();
+        BufferedReader in = new BufferedReader(new FileReader(args[0]));
+        int lineNumber = 0;
+        int lines = 0;
+        String line;
+        int[] moves = new int[Position.MAX_MOVES];
+        Position position = new Position();
+        while((line = in.readLine()) != null) {
+            lineNumber++;
+            if(line.indexOf('#') >= 0)
+                line = line.substring(0, line.indexOf('#'));
+            line = line.trim();
+            if(line.length() == 0)
+                continue;
+            lines++;
+            Fen.read(Fen.START, position);
+            for(String text : line.split("\\s+")) {
+                if(text.length() != 4)
+                    throw new IllegalArgumentException("line "+lineNumber+": can't read "+text);
+                int move = position.findLegal(Fen.square(text.substring(0, 2)), Fen.square(text.substring(2)), moves);
+                if(move == Move.NONE)
+                    throw new IllegalArgumentException("line "+lineNumber+": "+text+" isn't legal there");
+                played.add(new long[]{position.key(), move});
+                position.play(move);
+            }
+        }
+        in.close();
+
+        long[][] sorted = played.toArray(new long[played.size()][]);
+        Arrays.sort(sorted, new Comparator<long[]>() {
+            public int compare(long[] a, long[] b) {
+                if(a[0] != b[0])
+                    return a[0] < b[0] ? -1 : 1;
+                return Long.compare(a[1], b[1]);
+            }
+        });
+        //the same move from the same position in several lines becomes one record that counts them all
+        ArrayList<long[]> records = new ArrayList<long[]>();
+        for(long[] record : sorted) {
+            long[] last = (records.isEmpty() ? null : records.get(records.size()-1));
+            if(last != null && last[0] == record[0] && last[1] == record[1])
+                last[2] = Math.min(last[2]+1, 0xffff);
+            else
+                records.add(new long[]{record[0], record[1], 1});
+        }
+
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(args[1]));
+        out.writeInt(MAGIC);
+        out.writeInt(records.size());
+        for(long[] record : records) {
+            out.writeLong(record[0]);
+            out.writeShort((int)record[1]);
+            out.writeShort((int)record[2]);
+        }
+        out.close();
+        System.out.println(lines+" lines, "+records.size()+" book moves, "+(HEADER+records.size()*RECORD)+" bytes");
+    }
+}
@@ -0,0 +1,107 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+/**
+ * Packed squeezes a whole game position into SIZE bytes, for sending to someone who needs the board all at once and
+ * for saving a game. unlike a STATE message it keeps castling rights, en passant, the move counters and how the game
+ * ended, so the position that comes out is exactly the one that went in. the layout is
+ *
+ *   bytes 0-7    which squares have a piece on them, square 0 in the lowest bit, most significant byte first
+ *   bytes 8-23   the piece on each of those squares in square order, 4 bits each, high half of a byte first
+ *   byte 24      side to move in bit 0, castling rights in bits 1-4, result in bits 5-6 (0 none, 1 or 2 the winning
+ *                team, 3 a draw)
+ *   byte 25      en passant square, or 255 for none
+ *   byte 26      halfmove clock, capped at 255
+ *   bytes 27-28  fullmove number
+ *
+ * there can't be more than 32 pieces on a board, so 16 bytes always holds them all
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Packed {
+    public static final int SIZE = 29;
+    static final int MAX_PIECES = 32;
+
+    /**
+     * pack a position
+     * @param position the position
+     * @param halfmoveClock moves since the last capture or pawn move
+     * @param fullmove the move number, starting at 1 and going up after black moves
+     * @param result 0 if the game isn't over, 1 or 2 for the team that won, -1 for a draw
+     * @return SIZE bytes
+     * @throws IllegalArgumentException if there are more than 32 pieces on the board
+     */
+    public static byte[] pack(Position position, int halfmoveClock, int fullmove, int result) {
+        long occupied = position.occupied;
+        if(Long.bitCount(occupied) > MAX_PIECES)
+            throw new IllegalArgumentException("too many pieces to pack");
+        byte[] data = new byte[SIZE];
+        for(int i=0;i<8;i++)
+            data[i] = (byte)(occupied>>>(56-8*i));
+        int nibble = 0;
+        long squares = occupied;
+        while(squares != 0) {
+            int square = Long.numberOfTrailingZeros(squares);
+            squares &= squares-1;
+            int piece = position.board[square];
+            data[8+nibble/2] |= (byte)(nibble%2 == 0 ? piece<<4 : piece);
+            nibble++;
+        }
+        int resultBits = (result < 0 ? 3 : result&3);
+        data[24] = (byte)(position.side|(position.castling<<1)|(resultBits<<5));
+        data[25] = (byte)(position.epSquare < 0 ? 255 : position.epSquare);
+        data[26] = (byte)Math.min(halfmoveClock, 255);
+        data[27] = (byte)(fullmove>>>8);
+        data[28] = (byte)fullmove;
+        return data;
+    }
+
+    /**
+     * unpack a position
+     * @param data SIZE bytes from pack
+     * @param position where to put it, whatever was there is cleared first
+     * @throws IllegalArgumentException if data isn't a packed position
+     */
+    public static void unpack(byte[] data, Position position) {
+        if(data.length != SIZE)
+            throw new IllegalArgumentException("packed position should be "+SIZE+" bytes, not "+data.length);
+        position.clear();
+        long occupied = 0;
+        for(int i=0;i<8;i++)
+            occupied = (occupied<<8)|(data[i]&0xff);
+        int nibble = 0;
+        while(occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied-1;
+            int b = data[8+nibble/2]&0xff;
+            int piece = (nibble%2 == 0 ? b>>>4 : b&15);
+            if(piece >= 12)
+                throw new IllegalArgumentException("bad piece in packed position");
+            position.setPiece(square, piece);
+            nibble++;
+        }
+        position.side = data[24]&1;
+        position.castling = (data[24]>>>1)&15;
+        int ep = data[25]&0xff;
+        position.epSquare = (ep < 64 ? ep : -1);
+    }
+
+    public static int halfmoveClock(byte[] data) {
+        return data[26]&0xff;
+    }
+
+    public static int fullmove(byte[] data) {
+        return ((data[27]&0xff)<<8)|(data[28]&0xff);
+    }
+
+    /**
+     * how the game ended
+     * @param data a packed position
+     * @return 0 if it hasn't, 1 or 2 for the team that won, -1 for a draw
+     */
+    public static int result(byte[] data) {
+        int bits = (data[24]>>>5)&3;
+        return bits == 3 ? -1 : bits;
+    }
+}
@@ -0,0 +1,141 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ParallelSearch spreads one move's search over several threads the lazy way: every thread runs its own Search on
+ * the same position, and all of them share one transposition table. nothing is divided up, the helpers just search
+ * alongside the main thread, half of them a ply deeper, and whatever they learn lands in the table where the main
+ * thread finds it and skips work. when the main thread runs out of time the helpers are stopped, and the move comes
+ * from whichever thread got the deepest. helpers are only as many as the executor they're handed will start, so
+ * whoever owns the threads decides how many one move gets
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class ParallelSearch {
+    static final int PENDING = 0;
+    static final int RUNNING = 1;
+    static final int CANCELLED = 2;
+
+    public final TranspositionTable table;
+    //the main search first, helpers are made the first time there's a thread for them
+    final Search[] searches;
+
+    //all the threads put together, from the last think
+    public long nodes;
+    public int bestMove;
+    public int score;
+    public int completedDepth;
+    public int threadsUsed;
+
+    /**
+     * @param table the table every thread shares
+     * @param threads most threads to search with, counting the one that calls think
+     */
+    public ParallelSearch(TranspositionTable table, int threads) {
+        this.table = table;
+        searches = new Search[Math.max(1, threads)];
+        searches[0] = new Search(table);
+    }
+
+    /**
+     * find a move
+     * @param root the position to move in, it isn't changed
+     * @param gameKeys keys of the game so far, see Search.think
+     * @param millis how long to search
+     * @param helpers starts the helper threads, it should refuse with a RejectedExecutionException when it has no
+     *                thread free right now rather than queue them, since a helper that starts late is no help
+     * @return the best move found, or Move.NONE if there are no legal moves
+     */
+    public int think(Position root, long[] gameKeys, long millis, Executor helpers) {
+        Helper[] started = new Helper[searches.length-1];
+        int count = 0;
+        searches[0].start(root, gameKeys, millis, false, 0);
+        for(int i=1;i<searches.length;i++) {
+            if(searches[i] == null)
+                searches[i] = new Search(table);
+            searches[i].start(root, gameKeys, millis, true, i%2);
+            Helper helper = new Helper(searches[i]);
+            try {
+                helpers.execute(helper);
+            } catch(RejectedExecutionException e) {
+                break;
+            }
+            started[count++] = helper;
+        }
+
+        searches[0].iterate();
+        for(int i=0;i<count;i++)
+            started[i].finish();
+
+        Search best = searches[0];
+        nodes = searches[0].nodes;
+        for(int i=0;i<count;i++) {
+            Search search = started[i].search;
+            nodes += search.nodes;
+            if(search.completedDepth > best.completedDepth && search.bestMove != Move.NONE)
+                best = search;
+        }
+        bestMove = best.bestMove;
+        score = best.score;
+        completedDepth = best.completedDepth;
+        threadsUsed = count+1;
+        return bestMove;
+    }
+
+    /**
+     * make a running think give up as soon as it can, from any thread
+     */
+    public void stop() {
+        for(int i=0;i<searches.length;i++) {
+            if(searches[i] != null)
+                searches[i].stop();
+        }
+    }
+
+    /**
+     * one helper thread's search for one move. a helper that still hasn't started when the move is over is
+     * cancelled instead of waited for, it might be stuck behind the very thread waiting on it
+     */
+    static class Helper implements Runnable {
+        final Search search;
+        final AtomicInteger state = new AtomicInteger(PENDING);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Helper(Search search) {
+            this.search = search;
+        }
+
+        public void run() {
+            if(!state.compareAndSet(PENDING, RUNNING))
+                return;
+            try {
+                search.iterate();
+            } finally {
+                done.countDown();
+            }
+        }
+
+        void finish() {
+            search.stop();
+            if(state.compareAndSet(PENDING, CANCELLED))
+                return;
+            boolean interrupted = false;
+            while(true) {
+                try {
+                    done.await();
+                    break;
+                } catch(InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if(interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+}
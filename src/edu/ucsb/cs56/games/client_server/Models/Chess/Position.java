@@ -0,0 +1,556 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+/**
+ * Position is a chess position kept as bitboards, one long per kind of piece, plus who is to move, who can still
+ * castle and where a pawn can be taken en passant. it generates moves a whole piece type at a time from the tables
+ * in Bitboards, and makes and unmakes them in place, so checking a move or looking for any legal move at all never
+ * copies the board or allocates anything. white is the uppercase side at the bottom of ChessModel's grid (team 1),
+ * black the lowercase side at the top (team 2)
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Position {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    //a piece is color*6+type, and a square with nothing on it holds EMPTY
+    public static final int EMPTY = -1;
+
+    //the letters ChessModel's grid uses, indexed by piece
+    static final String LETTERS = "PNBRQKpnbrqk";
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    //where the kings and rooks start, which is where castling needs them to be
+    static final int WHITE_KING_START = 60;
+    static final int BLACK_KING_START = 4;
+
+    //castling rights that survive a piece moving from or to a square, everything but the rights that need a king or
+    //rook that was standing there
+    static final int[] CASTLE_MASK = new int[64];
+
+    //deepest a search can make moves before unmaking them
+    public static final int MAX_PLY = 256;
+    //more than any legal position can have
+    public static final int MAX_MOVES = 256;
+
+    public final long[] pieces = new long[12];
+    public final long[] colors = new long[2];
+    public long occupied;
+    public final int[] board = new int[64];
+
+    public int side;
+    public int castling;
+    //square a pawn capturing en passant would land on, or -1
+    public int epSquare;
+
+    //the Zobrist keys of every piece on the board xored together, kept up to date as pieces are put down and picked up
+    public long pieceKey;
+
+    //what each made move changed that can't be worked out from the move itself
+    int ply;
+    final int[] undoCaptured = new int[MAX_PLY];
+    final int[] undoCastling = new int[MAX_PLY];
+    final int[] undoEpSquare = new int[MAX_PLY];
+
+    static {
+        for(int i=0;i<64;i++)
+            CASTLE_MASK[i] = 15;
+        CASTLE_MASK[WHITE_KING_START] &= ~(WHITE_KINGSIDE|WHITE_QUEENSIDE);
+        CASTLE_MASK[63] &= ~WHITE_KINGSIDE;
+        CASTLE_MASK[56] &= ~WHITE_QUEENSIDE;
+        CASTLE_MASK[BLACK_KING_START] &= ~(BLACK_KINGSIDE|BLACK_QUEENSIDE);
+        CASTLE_MASK[7] &= ~BLACK_KINGSIDE;
+        CASTLE_MASK[0] &= ~BLACK_QUEENSIDE;
+    }
+
+    public Position() {
+        clear();
+    }
+
+    /**
+     * take every piece off the board
+     */
+    public void clear() {
+        for(int i=0;i<12;i++)
+            pieces[i] = 0;
+        colors[WHITE] = colors[BLACK] = 0;
+        occupied = 0;
+        for(int i=0;i<64;i++)
+            board[i] = EMPTY;
+        side = WHITE;
+        castling = 0;
+        epSquare = -1;
+        pieceKey = 0;
+        ply = 0;
+    }
+
+    /**
+     * make this position the same as another one, so each thread can work on its own copy
+     * @param other the position to copy, moves made on it before the copy can't be unmade on this one
+     */
+    public void copy(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, 12);
+        colors[WHITE] = other.colors[WHITE];
+        colors[BLACK] = other.colors[BLACK];
+        occupied = other.occupied;
+        System.arraycopy(other.board, 0, board, 0, 64);
+        side = other.side;
+        castling = other.castling;
+        epSquare = other.epSquare;
+        pieceKey = other.pieceKey;
+        ply = 0;
+    }
+
+    /**
+     * the piece a grid letter stands for
+     * @param letter a letter from ChessModel's grid, '0' for an empty square
+     * @return the piece, or EMPTY
+     */
+    public static int pieceFor(char letter) {
+        return LETTERS.indexOf(letter);
+    }
+
+    /**
+     * the grid letter for a piece
+     * @param piece a piece or EMPTY
+     * @return its letter, '0' for EMPTY
+     */
+    public static char letterFor(int piece) {
+        return piece == EMPTY ? '0' : LETTERS.charAt(piece);
+    }
+
+    public static int colorOf(int piece) {
+        return piece/6;
+    }
+
+    public static int typeOf(int piece) {
+        return piece%6;
+    }
+
+    /**
+     * put a piece on a square, replacing whatever was there
+     * @param square the square
+     * @param piece the piece, or EMPTY to clear the square
+     */
+    public void setPiece(int square, int piece) {
+        if(board[square] != EMPTY)
+            remove(square);
+        if(piece != EMPTY)
+            put(square, piece);
+    }
+
+    void put(int square, int piece) {
+        long bit = 1L<<square;
+        pieces[piece] |= bit;
+        colors[piece/6] |= bit;
+        occupied |= bit;
+        board[square] = piece;
+        pieceKey ^= Zobrist.PIECES[piece][square];
+    }
+
+    void remove(int square) {
+        long bit = 1L<<square;
+        int piece = board[square];
+        pieces[piece] &= ~bit;
+        colors[piece/6] &= ~bit;
+        occupied &= ~bit;
+        board[square] = EMPTY;
+        pieceKey ^= Zobrist.PIECES[piece][square];
+    }
+
+    /**
+     * the position's Zobrist key, the same for two positions exactly when they have the same pieces on the same
+     * squares, the same side to move, the same castling rights, and the same en passant capture available. good for
+     * spotting repeated positions and as a key for anything cached per position
+     * @return the key
+     */
+    public long key() {
+        long key = pieceKey^Zobrist.CASTLING[castling];
+        if(side == BLACK)
+            key ^= Zobrist.BLACK_TO_MOVE;
+        //an en passant square only makes a difference when a pawn can actually take there
+        if(epSquare >= 0 && (Bitboards.PAWN_ATTACKS[side^1][epSquare]&pieces[side*6+PAWN]) != 0)
+            key ^= Zobrist.EP_FILE[epSquare&7];
+        return key;
+    }
+
+    /**
+     * where a side's king is
+     * @param color WHITE or BLACK
+     * @return the king's square, or -1 if that side has no king
+     */
+    public int kingSquare(int color) {
+        long king = pieces[color*6+KING];
+        return king == 0 ? -1 : Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * whether any piece of one side attacks a square
+     * @param square the square
+     * @param by WHITE or BLACK
+     * @return if the square is attacked
+     */
+    public boolean isAttacked(int square, int by) {
+        return isAttacked(square, by, occupied);
+    }
+
+    /**
+     * whether any piece of one side would attack a square if the board held only the given pieces, for seeing past
+     * a king that is about to step out of the way of a slider
+     * @param square the square
+     * @param by WHITE or BLACK
+     * @param occupied squares to treat as having something on them
+     * @return if the square is attacked
+     */
+    public boolean isAttacked(int square, int by, long occupied) {
+        int base = by*6;
+        //a pawn of the other color on this square would attack exactly the squares attacking pawns stand on
+        if((Bitboards.PAWN_ATTACKS[by^1][square]&pieces[base+PAWN]) != 0)
+            return true;
+        if((Bitboards.KNIGHT[square]&pieces[base+KNIGHT]) != 0)
+            return true;
+        if((Bitboards.KING[square]&pieces[base+KING]) != 0)
+            return true;
+        long queens = pieces[base+QUEEN];
+        if((Bitboards.bishopAttacks(square, occupied)&(pieces[base+BISHOP]|queens)) != 0)
+            return true;
+        return (Bitboards.rookAttacks(square, occupied)&(pieces[base+ROOK]|queens)) != 0;
+    }
+
+    /**
+     * every piece of one side attacking a square
+     * @param square the square
+     * @param by WHITE or BLACK
+     * @return the attackers
+     */
+    public long attackers(int square, int by) {
+        int base = by*6;
+        long queens = pieces[base+QUEEN];
+        return (Bitboards.PAWN_ATTACKS[by^1][square]&pieces[base+PAWN])
+                |(Bitboards.KNIGHT[square]&pieces[base+KNIGHT])
+                |(Bitboards.KING[square]&pieces[base+KING])
+                |(Bitboards.bishopAttacks(square, occupied)&(pieces[base+BISHOP]|queens))
+                |(Bitboards.rookAttacks(square, occupied)&(pieces[base+ROOK]|queens));
+    }
+
+    /**
+     * the enemy pieces giving check to a side's king
+     * @param color WHITE or BLACK
+     * @return the checking pieces, empty if there's no check or no king
+     */
+    public long checkers(int color) {
+        int king = kingSquare(color);
+        return king < 0 ? 0 : attackers(king, color^1);
+    }
+
+    /**
+     * a side's pieces that can't leave the line between their king and an enemy slider without exposing the king
+     * @param color WHITE or BLACK
+     * @return the pinned pieces
+     */
+    public long pinned(int color) {
+        int king = kingSquare(color);
+        if(king < 0)
+            return 0;
+        int base = (color^1)*6;
+        long queens = pieces[base+QUEEN];
+        //sliders that would see the king on an empty board, the ones with exactly one of our pieces in between pin it
+        long snipers = (Bitboards.rookAttacks(king, 0)&(pieces[base+ROOK]|queens))
+                |(Bitboards.bishopAttacks(king, 0)&(pieces[base+BISHOP]|queens));
+        long pinned = 0;
+        while(snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers-1;
+            long between = Bitboards.BETWEEN[king][sniper]&occupied;
+            if(between != 0 && (between&(between-1)) == 0 && (between&colors[color]) != 0)
+                pinned |= between;
+        }
+        return pinned;
+    }
+
+    /**
+     * whether a side's king is attacked
+     * @param color WHITE or BLACK
+     * @return if that side is in check, false if it has no king
+     */
+    public boolean inCheck(int color) {
+        int king = kingSquare(color);
+        return king >= 0 && isAttacked(king, color^1);
+    }
+
+    /**
+     * list the side to move's moves, without checking whether they leave its own king in check
+     * @param from only moves of pieces on these squares, -1L for all of them
+     * @param moves where to put the moves, at least MAX_MOVES long
+     * @return how many moves there are
+     */
+    public int generate(long from, int[] moves) {
+        int count = 0;
+        int us = side;
+        int base = us*6;
+        long own = colors[us];
+        long enemy = colors[us^1];
+        long empty = ~occupied;
+        int forward = (us == WHITE ? -8 : 8);
+        int lastRow = (us == WHITE ? 0 : 7);
+        int startRow = (us == WHITE ? 6 : 1);
+
+        long pawns = pieces[base+PAWN]&from;
+        while(pawns != 0) {
+            int sq = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns-1;
+            int to = sq+forward;
+            if(to >= 0 && to < 64 && board[to] == EMPTY) {
+                count = addPawnMove(moves, count, sq, to, lastRow);
+                int two = to+forward;
+                if(sq/8 == startRow && board[two] == EMPTY)
+                    moves[count++] = Move.make(sq, two, Move.DOUBLE_PUSH);
+            }
+            long attacks = Bitboards.PAWN_ATTACKS[us][sq];
+            long captures = attacks&enemy;
+            while(captures != 0) {
+                int target = Long.numberOfTrailingZeros(captures);
+                captures &= captures-1;
+                count = addPawnMove(moves, count, sq, target, lastRow);
+            }
+            if(epSquare >= 0 && (attacks&(1L<<epSquare)) != 0)
+                moves[count++] = Move.make(sq, epSquare, Move.EN_PASSANT);
+        }
+
+        count = addMoves(moves, count, pieces[base+KNIGHT]&from, KNIGHT, own);
+        count = addMoves(moves, count, pieces[base+BISHOP]&from, BISHOP, own);
+        count = addMoves(moves, count, pieces[base+ROOK]&from, ROOK, own);
+        count = addMoves(moves, count, pieces[base+QUEEN]&from, QUEEN, own);
+        count = addMoves(moves, count, pieces[base+KING]&from, KING, own);
+
+        int kingStart = (us == WHITE ? WHITE_KING_START : BLACK_KING_START);
+        if((from&(1L<<kingStart)) != 0 && board[kingStart] == base+KING) {
+            int them = us^1;
+            int kingside = (us == WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE);
+            int queenside = (us == WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE);
+            if((castling&kingside) != 0 && board[kingStart+3] == base+ROOK
+                    && board[kingStart+1] == EMPTY && board[kingStart+2] == EMPTY
+                    && !isAttacked(kingStart, them) && !isAttacked(kingStart+1, them) && !isAttacked(kingStart+2, them))
+                moves[count++] = Move.make(kingStart, kingStart+2, Move.CASTLE);
+            if((castling&queenside) != 0 && board[kingStart-4] == base+ROOK
+                    && board[kingStart-1] == EMPTY && board[kingStart-2] == EMPTY && board[kingStart-3] == EMPTY
+                    && !isAttacked(kingStart, them) && !isAttacked(kingStart-1, them) && !isAttacked(kingStart-2, them))
+                moves[count++] = Move.make(kingStart, kingStart-2, Move.CASTLE);
+        }
+        return count;
+    }
+
+    static int addPawnMove(int[] moves, int count, int from, int to, int lastRow) {
+        if(to/8 != lastRow) {
+            moves[count++] = Move.make(from, to, Move.NORMAL);
+            return count;
+        }
+        moves[count++] = Move.make(from, to, Move.PROMOTE_QUEEN);
+        moves[count++] = Move.make(from, to, Move.PROMOTE_ROOK);
+        moves[count++] = Move.make(from, to, Move.PROMOTE_BISHOP);
+        moves[count++] = Move.make(from, to, Move.PROMOTE_KNIGHT);
+        return count;
+    }
+
+    int addMoves(int[] moves, int count, long movers, int type, long own) {
+        while(movers != 0) {
+            int sq = Long.numberOfTrailingZeros(movers);
+            movers &= movers-1;
+            long targets = attacks(type, sq)&~own;
+            while(targets != 0) {
+                moves[count++] = Move.make(sq, Long.numberOfTrailingZeros(targets), Move.NORMAL);
+                targets &= targets-1;
+            }
+        }
+        return count;
+    }
+
+    long attacks(int type, int square) {
+        switch(type) {
+            case KNIGHT:
+                return Bitboards.KNIGHT[square];
+            case BISHOP:
+                return Bitboards.bishopAttacks(square, occupied);
+            case ROOK:
+                return Bitboards.rookAttacks(square, occupied);
+            case QUEEN:
+                return Bitboards.bishopAttacks(square, occupied)|Bitboards.rookAttacks(square, occupied);
+            default:
+                return Bitboards.KING[square];
+        }
+    }
+
+    /**
+     * make a move, remembering enough to unmake it. the move should have come from generate
+     * @param move the move
+     */
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+        int piece = board[from];
+        int us = side;
+
+        undoCastling[ply] = castling;
+        undoEpSquare[ply] = epSquare;
+
+        int captured;
+        if(flag == Move.EN_PASSANT) {
+            int victim = to+(us == WHITE ? 8 : -8);
+            captured = board[victim];
+            remove(victim);
+        } else {
+            captured = board[to];
+            if(captured != EMPTY)
+                remove(to);
+        }
+        undoCaptured[ply] = captured;
+        ply++;
+
+        remove(from);
+        if(flag >= Move.PROMOTE_KNIGHT)
+            put(to, us*6+Move.promotionType(move));
+        else
+            put(to, piece);
+
+        if(flag == Move.CASTLE) {
+            if(to > from) {
+                put(to-1, board[to+1]);
+                remove(to+1);
+            } else {
+                put(to+1, board[to-2]);
+                remove(to-2);
+            }
+        }
+
+        castling &= CASTLE_MASK[from]&CASTLE_MASK[to];
+        epSquare = (flag == Move.DOUBLE_PUSH ? (from+to)/2 : -1);
+        side = us^1;
+    }
+
+    /**
+     * take back the last move made with makeMove
+     * @param move the same move
+     */
+    public void unmakeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+        int us = side^1;
+        ply--;
+
+        int piece = (flag >= Move.PROMOTE_KNIGHT ? us*6+PAWN : board[to]);
+        remove(to);
+        put(from, piece);
+
+        int captured = undoCaptured[ply];
+        if(flag == Move.EN_PASSANT)
+            put(to+(us == WHITE ? 8 : -8), captured);
+        else if(captured != EMPTY)
+            put(to, captured);
+
+        if(flag == Move.CASTLE) {
+            if(to > from) {
+                put(to+1, board[to-1]);
+                remove(to-1);
+            } else {
+                put(to-2, board[to+1]);
+                remove(to+1);
+            }
+        }
+
+        castling = undoCastling[ply];
+        epSquare = undoEpSquare[ply];
+        side = us;
+    }
+
+    /**
+     * pass the turn without moving anything, which isn't legal chess but tells a search whether the side to move is
+     * so far ahead that even doing nothing holds. never make one while in check
+     */
+    public void makeNullMove() {
+        undoCastling[ply] = castling;
+        undoEpSquare[ply] = epSquare;
+        undoCaptured[ply] = EMPTY;
+        ply++;
+        epSquare = -1;
+        side ^= 1;
+    }
+
+    /**
+     * take back the last makeNullMove
+     */
+    public void unmakeNullMove() {
+        ply--;
+        epSquare = undoEpSquare[ply];
+        side ^= 1;
+    }
+
+    /**
+     * make a move for good, it can't be unmade afterwards
+     * @param move the move
+     */
+    public void play(int move) {
+        makeMove(move);
+        ply--;
+    }
+
+    /**
+     * whether the side that just moved left its own king in check
+     * @return if the last move made was legal
+     */
+    public boolean lastMoveLegal() {
+        return !inCheck(side^1);
+    }
+
+    /**
+     * find the legal move from one square to another
+     * @param from square the piece is on
+     * @param to square it's going to
+     * @param moves scratch space, at least MAX_MOVES long
+     * @return the move, or Move.NONE if there isn't a legal one. promotions come back as a queen
+     */
+    public int findLegal(int from, int to, int[] moves) {
+        int count = generate(1L<<from, moves);
+        for(int i=0;i<count;i++) {
+            int move = moves[i];
+            if(Move.to(move) != to)
+                continue;
+            makeMove(move);
+            boolean legal = lastMoveLegal();
+            unmakeMove(move);
+            if(legal)
+                return move;
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * whether the side to move has any legal move at all
+     * @param moves scratch space, at least MAX_MOVES long
+     * @return if there's a legal move
+     */
+    public boolean hasLegalMove(int[] moves) {
+        int count = generate(-1L, moves);
+        for(int i=0;i<count;i++) {
+            makeMove(moves[i]);
+            boolean legal = lastMoveLegal();
+            unmakeMove(moves[i]);
+            if(legal)
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,422 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+/**
+ * Search picks a move for the side to move. it searches one ply deep, then two, then three and so on (iterative
+ * deepening) until its time is up, and plays the best move from the deepest search it finished. each search is
+ * alpha-beta, which skips moves that can't change the answer, and it skips the most when the best moves come first,
+ * so moves are tried in order: the move the transposition table remembers from last time, captures of big pieces by
+ * small ones, promotions, quiet moves that caused a cutoff at the same ply before (killers), then quiet moves by how
+ * often they've caused cutoffs anywhere (history). at the end of the search only captures are followed
+ * (quiescence), so it never stops in the middle of a trade. a search belongs to one thread, its transposition table
+ * can be kept between moves of the same game and shared with searches on other threads, see ParallelSearch
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Search {
+    public static final int INFINITY = 32000;
+    //being mated right now, mate in n scores MATE-n so a quicker mate scores higher
+    public static final int MATE = 31000;
+    //any score past this is a forced mate
+    static final int MATE_BOUND = MATE-Position.MAX_PLY;
+    public static final int MAX_DEPTH = 64;
+
+    //how far ahead of a move's turn to decide it's not worth searching the rest, for null moves
+    static final int NULL_REDUCTION = 2;
+
+    //move ordering, bigger goes first
+    static final int TABLE_MOVE = 1<<30;
+    static final int CAPTURE = 1<<28;
+    static final int PROMOTION = 1<<27;
+    static final int KILLER = 1<<26;
+    //history scores get halved when one gets this big, so they stay below the killers
+    static final int HISTORY_LIMIT = 1<<20;
+
+    //how many nodes to search between looks at the clock
+    static final int CHECK_EVERY = 1024;
+
+    final TranspositionTable table;
+    final Position position = new Position();
+
+    //move lists and their ordering scores, one per ply so searching deeper doesn't overwrite them
+    final int[][] moves = new int[Position.MAX_PLY][Position.MAX_MOVES];
+    final int[][] order = new int[Position.MAX_PLY][Position.MAX_MOVES];
+    final int[][] killers = new int[Position.MAX_PLY][2];
+    //history[piece][square]
+    final int[][] history = new int[12][64];
+
+    //the keys of the positions on the way to the current one, and of the game before the search started
+    final long[] path = new long[Position.MAX_PLY];
+    long[] gameKeys = new long[0];
+
+    volatile boolean stopped;
+    long started;
+    long deadline;
+    boolean helper;
+    int skew;
+    int rootMove;
+
+    public long nodes;
+    public int bestMove;
+    public int score;
+    public int completedDepth;
+
+    /**
+     * @param table where to remember positions
+     */
+    public Search(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * find a move
+     * @param root the position to move in, it isn't changed
+     * @param gameKeys the keys of the game's positions since the last capture or pawn move, ending with root's, so
+     *                 repeating one of them counts as a draw
+     * @param millis how long to search, at least one ply is always searched however long that takes
+     * @return the best move found, or Move.NONE if there are no legal moves
+     */
+    public int think(Position root, long[] gameKeys, long millis) {
+        start(root, gameKeys, millis, false, 0);
+        return iterate();
+    }
+
+    /**
+     * get ready to search, without searching yet
+     * @param root the position to move in
+     * @param gameKeys keys of the game so far, like for think
+     * @param millis how long to search
+     * @param helper if this search only fills the table for another one, so it keeps going until it's stopped
+     * @param skew how many plies deeper than usual to start, so helpers don't all search the same depth at once
+     */
+    void start(Position root, long[] gameKeys, long millis, boolean helper, int skew) {
+        position.copy(root);
+        this.gameKeys = gameKeys;
+        this.helper = helper;
+        this.skew = skew;
+        stopped = false;
+        nodes = 0;
+        bestMove = Move.NONE;
+        score = 0;
+        completedDepth = 0;
+        for(int i=0;i<Position.MAX_PLY;i++)
+            killers[i][0] = killers[i][1] = Move.NONE;
+        ageHistory();
+        started = System.nanoTime();
+        deadline = started+millis*1000000L;
+    }
+
+    /**
+     * search deeper and deeper until time runs out or stop is called
+     * @return the best move found, or Move.NONE if there are no legal moves
+     */
+    int iterate() {
+        //with one legal move there's nothing to think about
+        int legal = 0;
+        int only = Move.NONE;
+        int count = position.generate(-1L, moves[0]);
+        for(int i=0;i<count && legal < 2;i++) {
+            position.makeMove(moves[0][i]);
+            if(position.lastMoveLegal()) {
+                legal++;
+                only = moves[0][i];
+            }
+            position.unmakeMove(moves[0][i]);
+        }
+        if(legal < 2) {
+            bestMove = only;
+            return bestMove;
+        }
+
+        for(int depth=1+skew;depth<=MAX_DEPTH;depth++) {
+            rootMove = Move.NONE;
+            int result = negamax(depth, 0, -INFINITY, INFINITY, false);
+            if(stopped) {
+                //the root moves are searched best first, so a move that beat it before time ran out is better
+                if(rootMove != Move.NONE)
+                    bestMove = rootMove;
+                break;
+            }
+            bestMove = rootMove;
+            score = result;
+            completedDepth = depth;
+            if(Math.abs(result) >= MATE_BOUND)
+                break;
+            //the next ply takes several times as long as this one did, don't start it if it won't finish
+            if(!helper && System.nanoTime()-started > (deadline-started)/2)
+                break;
+        }
+        return bestMove;
+    }
+
+    /**
+     * stop once time is up, or once whoever runs the thread interrupts it to get it back, but only after the first
+     * ply so there's always a move to play
+     */
+    void checkTime() {
+        if(completedDepth > 0 && (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()))
+            stopped = true;
+    }
+
+    /**
+     * make a running search give up as soon as it can, from any thread
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    int negamax(int depth, int ply, int alpha, int beta, boolean allowNull) {
+        if(++nodes%CHECK_EVERY == 0)
+            checkTime();
+        if(stopped)
+            return 0;
+
+        int us = position.side;
+        boolean inCheck = position.inCheck(us);
+        //look one ply further past checks, so a mate at the end isn't missed
+        if(inCheck)
+            depth++;
+
+        long key = position.key();
+        path[ply] = key;
+        if(ply > 0 && repeated(key, ply))
+            return 0;
+        if(depth <= 0)
+            return quiesce(ply, alpha, beta);
+        if(ply >= Position.MAX_PLY-1)
+            return Evaluation.evaluate(position);
+
+        int tableMove = Move.NONE;
+        long entry = table.probe(key);
+        if(entry != 0) {
+            tableMove = TranspositionTable.move(entry);
+            if(ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int stored = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if(bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && stored >= beta)
+                        || (bound == TranspositionTable.UPPER && stored <= alpha))
+                    return stored;
+            }
+        }
+
+        //if passing still beats beta, a real move surely would, but not when only pawns are left since that's where
+        //having to move really can hurt
+        if(allowNull && !inCheck && depth > NULL_REDUCTION && hasPieces(us) && Evaluation.evaluate(position) >= beta) {
+            position.makeNullMove();
+            int result = -negamax(depth-1-NULL_REDUCTION, ply+1, -beta, -beta+1, false);
+            position.unmakeNullMove();
+            if(stopped)
+                return 0;
+            if(result >= beta)
+                return result >= MATE_BOUND ? beta : result;
+        }
+
+        int[] list = moves[ply];
+        int[] scores = order[ply];
+        int count = position.generate(-1L, list);
+        for(int i=0;i<count;i++)
+            scores[i] = orderScore(list[i], tableMove, ply);
+
+        int startAlpha = alpha;
+        int best = -INFINITY;
+        int bestHere = Move.NONE;
+        int legal = 0;
+        for(int i=0;i<count;i++) {
+            int move = pick(list, scores, i, count);
+            int from = Move.from(move);
+            int to = Move.to(move);
+            int piece = position.board[from];
+            boolean quiet = position.board[to] == Position.EMPTY && Move.flag(move) != Move.EN_PASSANT
+                    && !Move.isPromotion(move);
+
+            position.makeMove(move);
+            if(!position.lastMoveLegal()) {
+                position.unmakeMove(move);
+                continue;
+            }
+            legal++;
+            int result;
+            if(legal == 1) {
+                result = -negamax(depth-1, ply+1, -beta, -alpha, true);
+            } else {
+                //after the first move, only check whether each one beats alpha, and search it properly if it does
+                result = -negamax(depth-1, ply+1, -alpha-1, -alpha, true);
+                if(result > alpha && result < beta && !stopped)
+                    result = -negamax(depth-1, ply+1, -beta, -alpha, true);
+            }
+            position.unmakeMove(move);
+            if(stopped)
+                return 0;
+
+            if(result > best) {
+                best = result;
+                bestHere = move;
+                if(result > alpha) {
+                    alpha = result;
+                    if(ply == 0)
+                        rootMove = move;
+                    if(result >= beta) {
+                        if(quiet)
+                            rememberCutoff(move, piece, to, depth, ply);
+                        break;
+                    }
+                }
+            }
+        }
+
+        if(legal == 0)
+            return inCheck ? -MATE+ply : 0;
+
+        int bound = (best >= beta ? TranspositionTable.LOWER
+                : best > startAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER);
+        table.store(key, bestHere, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * follow captures until the position is quiet, the side to move can always choose to stop taking (stand pat)
+     */
+    int quiesce(int ply, int alpha, int beta) {
+        if(++nodes%CHECK_EVERY == 0)
+            checkTime();
+        if(stopped)
+            return 0;
+
+        int best = Evaluation.evaluate(position);
+        if(best >= beta || ply >= Position.MAX_PLY-1)
+            return best;
+        if(best > alpha)
+            alpha = best;
+
+        int[] list = moves[ply];
+        int[] scores = order[ply];
+        int count = position.generate(-1L, list);
+        int captures = 0;
+        for(int i=0;i<count;i++) {
+            int move = list[i];
+            if(position.board[Move.to(move)] != Position.EMPTY || Move.flag(move) == Move.EN_PASSANT
+                    || Move.flag(move) == Move.PROMOTE_QUEEN) {
+                list[captures] = move;
+                scores[captures] = orderScore(move, Move.NONE, ply);
+                captures++;
+            }
+        }
+
+        for(int i=0;i<captures;i++) {
+            int move = pick(list, scores, i, captures);
+            position.makeMove(move);
+            if(!position.lastMoveLegal()) {
+                position.unmakeMove(move);
+                continue;
+            }
+            int result = -quiesce(ply+1, -beta, -alpha);
+            position.unmakeMove(move);
+            if(stopped)
+                return 0;
+            if(result > best) {
+                best = result;
+                if(result > alpha) {
+                    alpha = result;
+                    if(result >= beta)
+                        break;
+                }
+            }
+        }
+        return best;
+    }
+
+    int orderScore(int move, int tableMove, int ply) {
+        if(move == tableMove)
+            return TABLE_MOVE;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int attacker = Position.typeOf(position.board[from]);
+        if(Move.flag(move) == Move.EN_PASSANT)
+            return CAPTURE+(Position.PAWN+1)*8-attacker;
+        if(position.board[to] != Position.EMPTY)
+            return CAPTURE+(Position.typeOf(position.board[to])+1)*8-attacker;
+        if(Move.isPromotion(move))
+            return PROMOTION+Move.promotionType(move);
+        if(move == killers[ply][0])
+            return KILLER+1;
+        if(move == killers[ply][1])
+            return KILLER;
+        return history[position.board[from]][to];
+    }
+
+    /**
+     * swap the best scoring move left into place i, a full sort would waste time on moves after a cutoff
+     */
+    static int pick(int[] list, int[] scores, int i, int count) {
+        int best = i;
+        for(int j=i+1;j<count;j++) {
+            if(scores[j] > scores[best])
+                best = j;
+        }
+        int move = list[best];
+        list[best] = list[i];
+        list[i] = move;
+        int score = scores[best];
+        scores[best] = scores[i];
+        scores[i] = score;
+        return move;
+    }
+
+    void rememberCutoff(int move, int piece, int to, int depth, int ply) {
+        if(killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        history[piece][to] += depth*depth;
+        if(history[piece][to] >= HISTORY_LIMIT)
+            ageHistory();
+    }
+
+    void ageHistory() {
+        for(int piece=0;piece<12;piece++) {
+            for(int square=0;square<64;square++)
+                history[piece][square] /= 2;
+        }
+    }
+
+    /**
+     * whether the position at ply has been seen before, on the way here or earlier in the game. the side to move is
+     * part of the key, so only every other position could ever match
+     */
+    boolean repeated(long key, int ply) {
+        for(int i=ply-2;i>=0;i-=2) {
+            if(path[i] == key)
+                return true;
+        }
+        //the last game key is the root, which is path[0]
+        for(int i=gameKeys.length-2;i>=0;i--) {
+            if(gameKeys[i] == key)
+                return true;
+        }
+        return false;
+    }
+
+    boolean hasPieces(int color) {
+        int base = color*6;
+        return (position.colors[color]&~(position.pieces[base+Position.PAWN]|position.pieces[base+Position.KING])) != 0;
+    }
+
+    //mate scores count plies from the root, the table keeps them counted from the position they're stored for
+    static int toTable(int score, int ply) {
+        if(score >= MATE_BOUND)
+            return score+ply;
+        if(score <= -MATE_BOUND)
+            return score-ply;
+        return score;
+    }
+
+    static int fromTable(int score, int ply) {
+        if(score >= MATE_BOUND)
+            return score-ply;
+        if(score <= -MATE_BOUND)
+            return score+ply;
+        return score;
+    }
+}
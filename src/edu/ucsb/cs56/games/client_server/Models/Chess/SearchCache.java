@@ -0,0 +1,75 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SearchCache remembers the moves whole searches came up with, for the last few thousand positions anybody searched,
+ * so a position that comes up again, in another room or in the same endgame after a takeback, gets its answer back
+ * instead of another second of thinking. when it's full the position looked at longest ago is forgotten. entries are
+ * packed like TranspositionTable's, and keyed by the position's Zobrist key alone, so any game that reaches the
+ * position can use them however it got there. the one thing how it got there changes is which moves repeat, so a
+ * position that already came up in its game isn't looked up or saved, see seenBefore, and a move from here that
+ * would bring back an earlier position of this game gets searched again
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class SearchCache {
+    //the one every bot shares
+    public static final SearchCache shared = new SearchCache(4096);
+
+    final LinkedHashMap<Long, Long> entries;
+
+    /**
+     * @param capacity most positions to remember
+     */
+    public SearchCache(final int capacity) {
+        //access order, so the eldest entry is the one used longest ago
+        entries = new LinkedHashMap<Long, Long>(capacity*4/3+1, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * whether a position came up earlier in a game, so a search of it there can be scored as a draw by repetition
+     * somewhere another game's wouldn't
+     * @param key the position's key
+     * @param gameKeys the keys of the game since the last capture or pawn move, the position now last
+     * @return if key is one of them, not counting the last
+     */
+    public static boolean seenBefore(long key, long[] gameKeys) {
+        for(int i=0;i<gameKeys.length-1;i++) {
+            if(gameKeys[i] == key)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param key the position's key
+     * @return the entry, read it with TranspositionTable.move, score and depth, or 0 if there isn't one
+     */
+    public synchronized long get(long key) {
+        Long entry = entries.get(key);
+        return entry == null ? 0 : entry;
+    }
+
+    /**
+     * remember what a search found
+     * @param key the position's key
+     * @param move the move it picked
+     * @param score its score
+     * @param depth how deep it got
+     */
+    public synchronized void put(long key, int move, int score, int depth) {
+        entries.put(key, TranspositionTable.entry(move, score, depth, TranspositionTable.EXACT));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,105 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+/**
+ * TranspositionTable remembers what the search found out about positions it has already seen, keyed by Zobrist key,
+ * so a position reached again by a different order of moves doesn't get searched all over, and the best move from
+ * the last search of a position gets tried first next time. each slot is a key and a long holding the rest:
+ *
+ *   bits 0-15   best move
+ *   bits 16-31  score, signed
+ *   bits 32-39  depth searched
+ *   bits 40-41  whether the score is exact, a lower bound or an upper bound
+ *   bit 42      set in every entry, so an empty slot reads as 0
+ *
+ * a new entry replaces whatever was in its slot unless that slot holds the same position searched deeper. several
+ * threads can search with one table at once without any locking: the key is stored xored with the entry, so if two
+ * threads write a slot at the same time and one's key ends up next to the other's entry, the key doesn't check out
+ * and the slot just reads as empty. a bad move from a torn entry couldn't hurt anyway, a search only uses the move to
+ * pick which of its own moves to try first
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    //the real score is at least this, the search stopped early because it was already too good
+    public static final int LOWER = 1;
+    //the real score is at most this, nothing searched beat alpha
+    public static final int UPPER = 2;
+
+    static final long USED = 1L<<42;
+
+    final long[] keys;
+    final long[] entries;
+    final int mask;
+
+    /**
+     * @param bits the table holds 2^bits entries, 16 bytes each
+     */
+    public TranspositionTable(int bits) {
+        keys = new long[1<<bits];
+        entries = new long[1<<bits];
+        mask = (1<<bits)-1;
+    }
+
+    /**
+     * look a position up
+     * @param key the position's key
+     * @return the entry, or 0 if the position isn't in the table
+     */
+    public long probe(long key) {
+        int slot = (int)key&mask;
+        long entry = entries[slot];
+        return (keys[slot]^entry) == key ? entry : 0;
+    }
+
+    /**
+     * remember what a search of a position found
+     * @param key the position's key
+     * @param move the best move found, or Move.NONE
+     * @param score the score
+     * @param depth how deep it was searched
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int slot = (int)key&mask;
+        long old = entries[slot];
+        if((keys[slot]^old) == key && depth(old) > depth)
+            return;
+        long entry = entry(move, score, depth, bound);
+        entries[slot] = entry;
+        keys[slot] = key^entry;
+    }
+
+    public void clear() {
+        for(int i=0;i<keys.length;i++) {
+            keys[i] = 0;
+            entries[i] = 0;
+        }
+    }
+
+    /**
+     * pack what a search found into one long, the way the table stores it
+     * @return the entry, never 0
+     */
+    public static long entry(int move, int score, int depth, int bound) {
+        return (move&0xffff)|((long)(score&0xffff)<<16)|((long)(depth&0xff)<<32)|((long)bound<<40)|USED;
+    }
+
+    public static int move(long entry) {
+        return (int)(entry&0xffff);
+    }
+
+    public static int score(long entry) {
+        return (short)(entry>>>16);
+    }
+
+    public static int depth(long entry) {
+        return (int)((entry>>>32)&0xff);
+    }
+
+    public static int bound(long entry) {
+        return (int)((entry>>>40)&3);
+    }
+}
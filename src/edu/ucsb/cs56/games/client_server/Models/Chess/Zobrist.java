@@ -0,0 +1,54 @@
+package edu.ucsb.cs56.games.client_server.Models.Chess;
+
+/**
+ * Zobrist keys give every chess position a 64 bit number: each piece on each square, each set of castling rights,
+ * each en passant file and black to move has a random key, and a position's key is all of its keys xored together.
+ * moving a piece only xors two keys out and in, so Position keeps its key up to date as it goes, and two positions
+ * with the same key are the same position for all practical purposes. the keys come from a fixed seed so they are the
+ * same every run and can be saved to disk, like in an opening book
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Zobrist {
+    //PIECES[piece][square]
+    public static final long[][] PIECES = new long[12][64];
+    //indexed by Position's castling bits
+    public static final long[] CASTLING = new long[16];
+    public static final long[] EP_FILE = new long[8];
+    public static final long BLACK_TO_MOVE;
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for(int piece=0;piece<12;piece++) {
+            for(int square=0;square<64;square++) {
+                seed = next(seed);
+                PIECES[piece][square] = mix(seed);
+            }
+        }
+        for(int i=0;i<16;i++) {
+            seed = next(seed);
+            CASTLING[i] = mix(seed);
+        }
+        //no castling rights adds nothing, so a bare board's key is just its pieces
+        CASTLING[0] = 0;
+        for(int i=0;i<8;i++) {
+            seed = next(seed);
+            EP_FILE[i] = mix(seed);
+        }
+        seed = next(seed);
+        BLACK_TO_MOVE = mix(seed);
+    }
+
+    static long next(long seed) {
+        return seed+0x9E3779B97F4A7C15L;
+    }
+
+    //splitmix64, spreads the bits of a counter out into something random looking
+    static long mix(long z) {
+        z = (z^(z>>>30))*0xBF58476D1CE4E5B9L;
+        z = (z^(z>>>27))*0x94D049BB133111EBL;
+        return z^(z>>>31);
+    }
+}
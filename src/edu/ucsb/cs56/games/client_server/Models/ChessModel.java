@@ -3,11 +3,26 @@ package edu.ucsb.cs56.games.client_server.Models;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import edu.ucsb.cs56.games.client_server.Log;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Tokenizer;
+import edu.ucsb.cs56.games.client_server.Models.Chess.Fen;
+import edu.ucsb.cs56.games.client_server.Models.Chess.GameStatus;
+import edu.ucsb.cs56.games.client_server.Models.Chess.Move;
+import edu.ucsb.cs56.games.client_server.Models.Chess.Packed;
+import edu.ucsb.cs56.games.client_server.Models.Chess.Position;
+
 
 /**
- * Game object for chess game, provides ridiculously complex methods for determining if any move from X1,Y1 to X2,Y1 is
- * a legal, valid move that can be performed without leaving yourself in check
- * takes into account moves like en passant, castling a king, and pawn promotion
+ * Game object for chess game, determines if any move from X1,Y1 to X2,Y2 is a legal, valid move that can be performed
+ * without leaving yourself in check, taking into account moves like en passant, castling a king, and pawn promotion
+ * the board everyone sees is grid, but the rules are worked out on a bitboard Position that is brought up to date
+ * with grid square by square before every question, so code that writes grid directly still works. saving the game
+ * or asking for its key only reads grid, into a Position of its own, so it never changes the rules engine's copy
+ * out from under a move being worked out. whether the side to move is in check, mated or stalemated is worked out
+ * once per change to the board and kept until the next one.
+ * the whole game, castling and en passant included, can be saved and loaded as FEN or as a few packed bytes.
+ * every position reached is remembered by its Zobrist key back to the last capture or pawn move, which is as far back
+ * as a position can repeat, so the controller can call a draw on threefold repetition or the fifty move rule
  *
  * @author Joseph Colicchio
  * @version for CS56, Choice Points, Winter 2012
@@ -21,9 +36,7 @@ public class ChessModel{
     public int turn;
     public int winner;
 
-    //can player 1 or 2 en passant?
-    public boolean ep1, ep2;
-    //the x coordinate of the most recent en passant opportunity for player 1 or 2
+    //the x coordinate of the pawn player 1 or 2 can take en passant right now, or -1
     public int epX1, epX2;
     //
     public boolean castleL1;
@@ -31,6 +44,33 @@ public class ChessModel{
     public boolean castleL2;
     public boolean castleR2;
 
+    //moves since the last capture or pawn move, and the move number, which goes up after team 2 moves
+    public int halfmoveClock;
+    public int fullmove;
+
+    //why drawReason says the game is drawn
+    public static final int NO_DRAW = 0;
+    public static final int REPETITION = 1;
+    public static final int FIFTY_MOVES = 2;
+
+    //for reading STATE messages in setState
+    Tokenizer tokens = new Tokenizer();
+
+    //the rules engine's copy of the board, and the grid letters it was last brought up to date with
+    Position position = new Position();
+    char[] synced = new char[64];
+    //scratch space for move generation
+    int[] moves = new int[Position.MAX_MOVES];
+
+    //goes up whenever position changes, status is good as long as statusVersion matches it
+    long version;
+    long statusVersion = -1;
+    GameStatus status = new GameStatus();
+
+    //keys of the positions since the last capture or pawn move, the current one last
+    long[] history = new long[128];
+    int historyLength;
+
     public ChessModel() {
         init();
     }
@@ -68,62 +108,80 @@ public class ChessModel{
 
         turn = 1;
         winner = 0;
-        ep1 = ep2 = true;
         epX1 = epX2 = -1;
         castleL1 = castleL2 = castleR1 = castleR2 = true;
+        halfmoveClock = 0;
+        fullmove = 1;
         captured = new ArrayList<Character>();
+        position.clear();
+        Arrays.fill(synced, '0');
+        version++;
+        historyLength = 0;
+        sync(turn);
+        record();
     }
 
     /**
      * checks for a winner, and sets winner to the team number if so
      * sets winner to -1 in case of stalemate
+     * only the team whose turn it is can be out of moves, so only that team is looked at
      * @return if there is a winner
      */
     public boolean checkWinner() {
-        //scan through all possible moves of player, if one results in the king NOT being in check, the game isn't over yet
-        //stalemate detection?
-        if(isCheckmated(1)) {
-            winner = 2;
-            return true;
-        } else if(isCheckmated(2)) {
-            winner = 1;
+        int state = status(turn).state;
+        if(state == GameStatus.CHECKMATE) {
+            winner = 3-turn;
             return true;
-        } else if(isStalemate(turn)) {
+        } else if(state == GameStatus.STALEMATE) {
             winner = -1;
             return true;
         }
-        System.out.println("no winner found");
+        Log.debug("no winner found");
         return false;
     }
 
+    /**
+     * work out which pieces have been taken from what's missing from the board
+     */
+    void countCaptured() {
+        captured = new ArrayList(Arrays.asList(
+                'R', 'N', 'B', 'Q', 'K', 'B', 'N', 'R',
+                'P', 'P', 'P', 'P', 'P', 'P', 'P', 'P',
+                'r', 'n', 'b', 'q', 'k', 'b', 'n', 'r',
+                'p', 'p', 'p', 'p', 'p', 'p', 'p', 'p'));
+        for(int i=0;i<8;i++)
+            for(int j=0;j<8;j++)
+                //valueOf hands back a cached Character for every piece letter
+                captured.remove(Character.valueOf(grid[i][j]));
+    }
+
     /**
      * sets the state of the game
-     * does NOT yet send data concerning en passant or castling
+     * does NOT carry en passant or castling, unpack does
      * @param data a string of data representing the state of the game
      */
     public void setState(String data) {
-        String[] info = data.substring(6).split("]");
-        int turnInfo = Integer.parseInt(info[0]);
-        if(turnInfo == 0)
-            checkWinner();
-        else {
+        Tokenizer info = tokens.reset(data, 6);
+        int turnInfo = info.nextInt();
+        if(turnInfo != 0) {
             turn = turnInfo;
             winner = 0;
         }
-        captured = new ArrayList(Arrays.asList(
-                'R', 'N', 'B', 'Q', 'K', 'B', 'N', 'R',
-                'P', 'P', 'P', 'P', 'P', 'P', 'P', 'P',
-                'r', 'n', 'b', 'q', 'k', 'b', 'n', 'r',
-                'p', 'p', 'p', 'p', 'p', 'p', 'p', 'p'));
-        String[] rows = info[1].split(";");
         for(int i=0;i<8;i++) {
-            for(int j=0;j<8;j++) {
-                grid[i][j] = rows[i].charAt(j);
-                Character piece = new Character(grid[i][j]);
-                captured.remove(piece);
-            }
+            for(int j=0;j<8;j++)
+                grid[i][j] = info.nextChar();
+            info.skipSeparator();
+        }
+        countCaptured();
+        historyLength = 0;
+        sync(turn);
+        record();
+        //a finished game doesn't say whose turn it was, so if the team we thought was to move isn't the one that
+        //lost, it must be the other one
+        if(!checkWinner() && turnInfo == 0) {
+            turn = 3-turn;
+            checkWinner();
         }
-        checkWinner();
     }
 
     /**
@@ -131,23 +189,165 @@ public class ChessModel{
      * @return the state of the game
      */
     public String getState() {
-        String state = "STATE[";
-        if(winner == 0)
-            state += turn+"]";
-        else
-            state += "0]";
+        StringBuilder state = new StringBuilder(80);
+        state.append("STATE[").append(winner == 0 ? turn : 0).append(']');
         for(int i=0;i<8;i++) {
-            for(int j=0;j<8;j++) {
-                state += grid[i][j];
-            }
+            state.append(grid[i]);
             if(i < 7)
-                state += ";";
+                state.append(';');
         }
-        return state;
+        return state.toString();
+    }
+
+    /**
+     * the game as FEN
+     * @return the FEN string
+     */
+    public String getFen() {
+        return Fen.write(copyOf(turn), halfmoveClock, fullmove);
+    }
+
+    /**
+     * set the game up from FEN
+     * @param fen the position
+     * @throws IllegalArgumentException if fen isn't a position
+     */
+    public void setFen(String fen) {
+        Position loaded = new Position();
+        Fen.read(fen, loaded);
+        int[] counters = Fen.counters(fen);
+        load(loaded, counters[0], counters[1], 0);
+    }
+
+    /**
+     * the game packed into Packed.SIZE bytes, castling, en passant, move counters and result included
+     * @return the packed game
+     */
+    public byte[] pack() {
+        return Packed.pack(copyOf(turn), halfmoveClock, fullmove, winner);
+    }
+
+    /**
+     * set the game up from bytes made by pack
+     * @param data the packed game
+     * @throws IllegalArgumentException if data isn't a packed game
+     */
+    public void unpack(byte[] data) {
+        Position loaded = new Position();
+        Packed.unpack(data, loaded);
+        load(loaded, Packed.halfmoveClock(data), Packed.fullmove(data), Packed.result(data));
+    }
+
+    /**
+     * replace the whole game with a position
+     * @param loaded the position
+     * @param halfmoves the halfmove clock
+     * @param moveNumber the fullmove number
+     * @param result how the game ended, 0 to work it out from the position
+     */
+    void load(Position loaded, int halfmoves, int moveNumber, int result) {
+        position.copy(loaded);
+        copyBack();
+        castleR1 = (loaded.castling&Position.WHITE_KINGSIDE) != 0;
+        castleL1 = (loaded.castling&Position.WHITE_QUEENSIDE) != 0;
+        castleR2 = (loaded.castling&Position.BLACK_KINGSIDE) != 0;
+        castleL2 = (loaded.castling&Position.BLACK_QUEENSIDE) != 0;
+        turn = loaded.side+1;
+        int epX = (loaded.epSquare >= 0 ? loaded.epSquare%8 : -1);
+        epX1 = (turn == 1 ? epX : -1);
+        epX2 = (turn == 2 ? epX : -1);
+        halfmoveClock = halfmoves;
+        fullmove = moveNumber;
+        countCaptured();
+        version++;
+        historyLength = 0;
+        record();
+        winner = result;
+        if(result == 0)
+            checkWinner();
+    }
+
+    /**
+     * copy the rules engine's board into grid
+     */
+    void copyBack() {
+        for(int y=0;y<8;y++) {
+            for(int x=0;x<8;x++) {
+                char letter = Position.letterFor(position.board[y*8+x]);
+                grid[y][x] = letter;
+                synced[y*8+x] = letter;
+            }
+        }
+    }
+
+    /**
+     * bring the rules engine up to date with grid and the castling and en passant flags, set up for team to move
+     * @param team the team whose moves are being asked about
+     * @return the position
+     */
+    Position sync(int team) {
+        boolean changed = false;
+        for(int y=0;y<8;y++) {
+            for(int x=0;x<8;x++) {
+                char letter = grid[y][x];
+                int square = y*8+x;
+                if(letter != synced[square]) {
+                    position.setPiece(square, Position.pieceFor(letter));
+                    synced[square] = letter;
+                    changed = true;
+                }
+            }
+        }
+        if(setTurn(position, team) || changed)
+            version++;
+        return position;
+    }
+
+    /**
+     * the game as it is now with team to move, set up on a new Position from grid and the flags, leaving the rules
+     * engine's copy alone
+     * @param team the team to move
+     * @return the position
+     */
+    Position copyOf(int team) {
+        Position p = new Position();
+        for(int square=0;square<64;square++)
+            p.setPiece(square, Position.pieceFor(grid[square/8][square%8]));
+        setTurn(p, team);
+        return p;
+    }
+
+    /**
+     * set up whose turn it is in a position whose pieces already match grid, along with the castling and en passant
+     * flags
+     * @param p the position
+     * @param team the team to move
+     * @return if anything was different
+     */
+    boolean setTurn(Position p, int team) {
+        int color = team-1;
+        int castling = (castleR1?Position.WHITE_KINGSIDE:0)|(castleL1?Position.WHITE_QUEENSIDE:0)
+                |(castleR2?Position.BLACK_KINGSIDE:0)|(castleL2?Position.BLACK_QUEENSIDE:0);
+        int epX = (team==1?epX1:epX2);
+        int epSquare = -1;
+        if(epX >= 0 && epX < 8) {
+            //only if there really is a pawn that just went past the square, grid might have been changed under us
+            int landing = (team==1?2:5)*8+epX;
+            int victim = landing+(team==1?8:-8);
+            if(p.board[landing] == Position.EMPTY && p.board[victim] == (1-color)*6+Position.PAWN)
+                epSquare = landing;
+        }
+        if(p.side == color && p.castling == castling && p.epSquare == epSquare)
+            return false;
+        p.side = color;
+        p.castling = castling;
+        p.epSquare = epSquare;
+        return true;
     }
 
     /**
      * tries a move and, if legal, performs it
+     * a pawn reaching the last row stays a pawn until whoever moved it picks what it becomes
      * @param X1 the x coord of the piece to move
      * @param Y1 the y coord of the piece to move
      * @param X2 the new x coord to move to
@@ -156,95 +356,149 @@ public class ChessModel{
      */
     public boolean tryMove(int X1, int Y1, int X2, int Y2) {
         //try the move specified
-        //if the turn doesn't match the team 
+        //if the turn doesn't match the team
+        if(X1 < 0 || X1 > 7 || Y1 < 0 || Y1 > 7 || X2 < 0 || X2 > 7 || Y2 < 0 || Y2 > 7)
+            return false;
         char piece = grid[Y1][X1];
         if(!Character.isLetter(piece))
             return false;
-        int team = (Character.isUpperCase(piece)?1:2);
         //if upper case, team = 1, lower case team = 2
-        int dir = (team==1?-1:1);
-        //if team = 1, up, -1, team = 2, down, 1
+        int team = (Character.isUpperCase(piece)?1:2);
         if(team != turn)
             return false;
-        
-        System.out.println("correct team!");
 
-        if(!validMove(X1, Y1, X2, Y2))
-            return false;
-        System.out.println("valid move!");
-        if(Character.toLowerCase(grid[Y1][X1]) == 'k' && Math.abs(X2-X1) > 1) {
-            //castling
-            grid[Y2][X2] = grid[Y1][X1];
-            grid[Y1][X1] = '0';
-            if(X2 > X1) {
-                grid[Y2][X2-1] = grid[Y2][7];
-                grid[Y2][7] = '0';
-            } else {
-                grid[Y2][X2+1] = grid[Y2][0];
-                grid[Y2][0] = '0';
-            }
-            if(team == 1)
-                castleL1 = castleR1 = false;
-            else
-                castleL2 = castleR2 = false;
-        } else if(Character.toLowerCase(grid[Y1][X1]) == 'p' && grid[Y2][X2] == '0' && X2 != X1) {
-            //en passant
-            grid[Y2][X2] = grid[Y1][X1];
-            captured.add(grid[Y1][X2]);
-            grid[Y1][X2] = '0';
-            grid[Y1][X1] = '0';
-            if(team == 1)
-                ep1 = false;
-            else
-                ep2 = false;
-        } else {
-            //default
-            if(Character.isLetter(grid[Y2][X2]))
-                captured.add(grid[Y2][X2]);
-            grid[Y2][X2] = grid[Y1][X1];
-            grid[Y1][X1] = '0';
-        }
+        Log.debug("correct team!");
 
-        //if player moves a rook, invalidate that castle move
-        //if player moves a king, invalidate both
+        Position p = sync(team);
+        int from = Y1*8+X1;
+        int to = Y2*8+X2;
+        int move = p.findLegal(from, to, moves);
+        if(move == Move.NONE)
+            return false;
+        Log.debug("valid move!");
+        if(Move.isPromotion(move))
+            move = Move.make(from, to, Move.NORMAL);
+
+        int victim = p.board[Move.flag(move) == Move.EN_PASSANT ? to+(team==1?8:-8) : to];
+        if(victim != Position.EMPTY)
+            captured.add(Position.letterFor(victim));
+        if(victim != Position.EMPTY || Position.typeOf(p.board[from]) == Position.PAWN)
+            halfmoveClock = 0;
+        else
+            halfmoveClock++;
+        if(team == 2)
+            fullmove++;
+        p.play(move);
+
+        //copy back whatever the move changed, castling moves the rook and en passant takes a pawn off another square
+        copyBack();
+        //a pawn on the last row isn't done moving until promote
+        if(!(Position.typeOf(p.board[to]) == Position.PAWN && (to < 8 || to >= 56)))
+            record();
+
+        castleR1 = (p.castling&Position.WHITE_KINGSIDE) != 0;
+        castleL1 = (p.castling&Position.WHITE_QUEENSIDE) != 0;
+        castleR2 = (p.castling&Position.BLACK_KINGSIDE) != 0;
+        castleL2 = (p.castling&Position.BLACK_QUEENSIDE) != 0;
+        version++;
+
+        //if player moved pawn forward two, the opponent can take it en passant on their next move
+        int epX = (p.epSquare >= 0 ? p.epSquare%8 : -1);
         if(team == 1) {
-            if(X1 == 0 && Y1 == 7)
-                castleL1 = false;
-            else if(X1 == 7 && Y1 == 7)
-                castleR1 = false;
-            else if(Character.toLowerCase(piece)== 'k')
-                castleL1 = castleR1 = false;
+            epX2 = epX;
+            epX1 = -1;
         } else {
-            if(X1 == 0 && Y1 == 0)
-                castleL2 = false;
-            else if(X1 == 7 && Y1 == 0)
-                castleR2 = false;
-            else if(Character.toLowerCase(piece) == 'k')
-                castleL2 = castleR2 = false;
+            epX1 = epX;
+            epX2 = -1;
         }
 
-        //if player moved pawn forward two and opponent can still en passant, allow this
-        //otherwise, disallow it
-        if(Character.toLowerCase(piece) == 'p' && (team==1?ep2:ep1) && Math.abs(Y2-Y1) > 1) {
-            if(team == 1)
-                epX2 = X1;
-            else
-                epX1 = X1;
-        } else {
-            if(team == 1)
-                epX2 = -1;
-            else
-                epX1 = -1;
-        }
+        return true;
+    }
 
+    /**
+     * turn a pawn that reached the last row into the piece its owner picked. like tryMove, it doesn't change whose
+     * turn it is
+     * @param X the x coord of the pawn
+     * @param Y the y coord of the pawn
+     * @param piece the letter of the piece it becomes, upper case for team 1
+     * @return if it was a pawn of the team whose turn it is waiting to promote, and a piece it can become
+     */
+    public boolean promote(int X, int Y, char piece) {
+        if(X < 0 || X > 7 || Y < 0 || Y > 7)
+            return false;
+        char pawn = grid[Y][X];
+        int team = (pawn == 'P' ? 1 : pawn == 'p' ? 2 : 0);
+        if(team == 0 || team != turn || Y != (team == 1 ? 0 : 7))
+            return false;
+        if("QRBN".indexOf(Character.toUpperCase(piece)) < 0 || Character.isUpperCase(piece) != (team == 1))
+            return false;
+        grid[Y][X] = piece;
+        //the move is finished now, so it's the other team to move in the position that gets remembered
+        sync(3-team);
+        record();
         return true;
     }
 
+    /**
+     * remember the position as it is now, it's the other team's turn in it
+     */
+    void record() {
+        //nothing from before a capture or pawn move can come back, so there's no need to keep it
+        if(halfmoveClock == 0)
+            historyLength = 0;
+        if(historyLength == history.length)
+            history = Arrays.copyOf(history, history.length*2);
+        history[historyLength++] = position.key();
+    }
+
+    /**
+     * the Zobrist key of the position right now, with whoever's turn it is to move
+     * @return the key
+     */
+    public long getKey() {
+        return copyOf(turn).key();
+    }
+
+    /**
+     * the keys of the positions since the last capture or pawn move, for a search that has to know which positions
+     * would repeat
+     * @return a copy of the keys, oldest first and ending with the position now
+     */
+    public long[] historyKeys() {
+        return Arrays.copyOf(history, historyLength);
+    }
+
+    /**
+     * how many times the latest position has come up, counting this time
+     * @return the count, at least 1
+     */
+    public int repetitions() {
+        if(historyLength == 0)
+            return 1;
+        long key = history[historyLength-1];
+        int count = 1;
+        //the same side has to be moving, so only every other position can match
+        for(int i=historyLength-3;i>=0;i-=2)
+            if(history[i] == key)
+                count++;
+        return count;
+    }
+
+    /**
+     * whether the game should be called a draw without a stalemate
+     * @return REPETITION if the position has come up three times, FIFTY_MOVES if neither team has captured or moved
+     * a pawn in fifty moves, otherwise NO_DRAW
+     */
+    public int drawReason() {
+        if(repetitions() >= 3)
+            return REPETITION;
+        if(halfmoveClock >= 100)
+            return FIFTY_MOVES;
+        return NO_DRAW;
+    }
+
     //TODO: stalemate resulting from lack of pieces, e.g. two kings
-    //checks if the piece at X1Y1 can move to X2Y2 legally
-    //accounts for check now by moving the piece and running isInCheck(team)
     //dont forget, en passant, castling, pawn promotion are also considered valid moves (sometimes)
-        //check for them here, everything uses validMove
 
     /**
      * if the move is a valid one, checks to see if its legal and doesn't leave the player in check
@@ -257,248 +511,39 @@ public class ChessModel{
     public boolean validMove(int X1, int Y1, int X2, int Y2) {
         if(X1 < 0 || X1 > 7 || X2 < 0 || X2 > 7 || Y1 < 0 || Y1 > 7 || Y2 < 0 || Y2 > 7)
             return false;
-        if(X1 == X2 && Y1 == Y2)
-            return false;
         char piece = grid[Y1][X1];
-        char victim = grid[Y2][X2];
-        //are the piece to move and the victim on the same team?
-        if(Character.isLetter(victim) && Character.isUpperCase(piece) == Character.isUpperCase(victim))
-            return false;
         if(!Character.isLetter(piece))
             return false;
-
         //if upper case, team = 1, lower case team = 2
         int team = (Character.isUpperCase(piece)?1:2);
-        //if team = 1, up, -1, team = 2, down, 1
-        int dir = (team==1?-1:1);
-
-        if(Character.isLetter(victim) && Character.isUpperCase(victim) == Character.isUpperCase(piece))
-            return false;
+        return sync(team).findLegal(Y1*8+X1, Y2*8+X2, moves) != Move.NONE;
+    }
 
-        piece = Character.toLowerCase(piece);
-
-        int dX, dY;
-        int dist;
-        switch(piece) {
-            case('p'):
-                if((Y2-Y1)*dir < 1)
-                    return false;
-                else if((Y2-Y1)*dir > 1) {
-                    if(Y1 != 6-(5*(team-1)) || (Y2-Y1)*dir > 2)
-                        return false;
-                    if(Character.isLetter(victim) || Character.isLetter(grid[Y1+dir][X2]))
-                        return false;
-                } else
-                    if(X2-X1 == 0 && Character.isLetter(victim))
-                        return false;
-                //some of this might be repetitive, we have NO need to check if the victim and piece are on the same team
-                int epX = (team==1?epX1:epX2);
-                boolean canEP = (team == 1?ep1:ep2);
-                if(X2-X1 != 0) {
-                    if(!Character.isLetter(victim) && canEP && epX > -1) {
-                        if(X2 != epX || Y2 != (team==1?2:5))
-                            return false;
-                    } else if(Math.abs(X2-X1) > 1 || !Character.isLetter(victim) || (Character.isUpperCase(victim) == (team == 1)))
-                        return false;
-                }
-                break;
-            case('r'):
-                dX = X2-X1;
-                dY = Y2-Y1;
-                if(dX != 0 && dY != 0)
-                    return false;
-                dist = Math.abs(dX)+Math.abs(dY);
-                dX = (dX==0?0:dX/Math.abs(dX));
-                dY = (dY==0?0:dY/Math.abs(dY));
-                for(int i=1;i<dist;i++)
-                    if(Character.isLetter(grid[Y1+dY*i][X1+dX*i]))
-                        return false;
-                break;
-            case('n'):
-                dX = Math.abs(X2-X1);
-                dY = Math.abs(Y2-Y1);
-                if(dX == 0 || dY == 0)
-                    return false;
-                if(dX+dY != 3)
-                    return false;
-                if(Character.isLetter(victim) && Character.isUpperCase(victim) == (team == 1))
-                    return false;
-                break;
-            case('b'):
-                dX = X2-X1;
-                dY = Y2-Y1;
-                if(Math.abs(dX) != Math.abs(dY))
-                    return false;
-
-                dist = Math.abs(dX);
-                dX = (dX==0?0:dX/Math.abs(dX));
-                dY = (dY==0?0:dY/Math.abs(dY));
-                for(int i=1;i<dist;i++)
-                    if(Character.isLetter(grid[Y1+dY*i][X1+dX*i]))
-                        return false;
-                break;
-            case('q'):
-                dX = X2-X1;
-                dY = Y2-Y1;
-                //dX or dY must be 0 or abs dX must equal abs dY
-                if(Math.abs(dX) != Math.abs(dY) && dX != 0 && dY != 0)
-                    return false;
-
-                dist = (dX==0?Math.abs(dY):Math.abs(dX));
-                dX = (dX==0?0:dX/Math.abs(dX));
-                dY = (dY==0?0:dY/Math.abs(dY));
-                for(int i=1;i<dist;i++)
-                    if(Character.isLetter(grid[Y1+dY*i][X1+dX*i]))
-                        return false;
-                break;
-            case('k'):
-                dX = X2-X1;
-                dY = Y2-Y1;
-                if(Math.abs(dY) > 1)
-                    return false;
-                if(Math.abs(dX) > 1) {
-                    if(Math.abs(dX) > 2 || Y1 != Y2)
-                        return false;
-                    boolean left = (team==1?castleL1:castleL2);
-                    boolean right = (team==1?castleR1:castleR2);
-                    if(dX > 0) {
-                        if(!right)
-                            return false;
-                        if(Character.isLetter(grid[Y1][X1+1]) || Character.isLetter(grid[Y2][X2]))
-                            return false;
-                        if(isInCheck(team))
-                            return false;
-                        grid[Y1][X1+1] = grid[Y1][X1];
-                        grid[Y1][X1] = '0';
-                        if(isInCheck(team)) {
-                            grid[Y1][X1] = grid[Y1][X1+1];
-                            grid[Y1][X1+1] = '0';
-                            return false;
-                        }
-                        grid[Y1][X2] = grid[Y1][X1+1];
-                        grid[Y1][X1+1] = '0';
-                        if(isInCheck(team)) {
-                            grid[Y1][X1] = grid[Y1][X2];
-                            grid[Y1][X2] = '0';
-                            return false;
-                        }
-                        grid[Y1][X1] = grid[Y1][X2];
-                        grid[Y1][X2] = '0';
-                    } else {
-                        if(!left)
-                            return false;
-                        if(Character.isLetter(grid[Y1][X1-1]) || Character.isLetter(grid[Y2][X2]) || Character.isLetter(grid[Y2][X1-3]))
-                            return false;
-                        if(isInCheck(team))
-                            return false;
-                        grid[Y1][X1-1] = grid[Y1][X1];
-                        grid[Y1][X1] = '0';
-                        if(isInCheck(team)) {
-                            grid[Y1][X1] = grid[Y1][X1-1];
-                            grid[Y1][X1-1] = '0';
-                            return false;
-                        }
-                        grid[Y1][X2] = grid[Y1][X1-1];
-                        grid[Y1][X1-1] = '0';
-                        if(isInCheck(team)) {
-                            grid[Y1][X1] = grid[Y1][X2];
-                            grid[Y1][X2] = '0';
-                            return false;
-                        }
-                        grid[Y1][X1-3] = grid[Y1][X2];
-                        grid[Y1][X2] = '0';
-                        if(isInCheck(team)) {
-                            grid[Y1][X1] = grid[Y1][X1-3];
-                            grid[Y1][X1-3] = '0';
-                            return false;
-                        }
-                        grid[Y1][X1] = grid[Y1][X1-3];
-                        grid[Y1][X1-3] = '0';
-                    }
-                }
-                break;
+    /**
+     * the check, mate and stalemate status of a team as if it were their turn, worked out again only if the board
+     * changed since the last time anyone asked
+     * @param team the team to look at
+     * @return the status
+     */
+    GameStatus status(int team) {
+        Position p = sync(team);
+        if(statusVersion != version) {
+            status.evaluate(p, moves);
+            statusVersion = version;
         }
-
-        //if the piece is a king, don't worry about being in check, you've already won!
-        if(Character.toLowerCase(victim) == 'k')
-            return true;
-        boolean check = false;
-        grid[Y2][X2] = grid[Y1][X1];
-        grid[Y1][X1] = '0';
-        System.out.println("is this a valid move for team "+team);
-        check = isInCheck(team);
-        grid[Y1][X1] = grid[Y2][X2];
-        grid[Y2][X2] = victim;
-
-        return !check;
+        return status;
     }
 
-    //consider castling and en passant to be legal moves
-
     /**
      * whether the player on team team has any legal moves to make
      * @param team the team to check
      * @return if team has legal moves
      */
     public boolean hasLegalMoves(int team) {
-        //go through each piece,
-        for(int i=0;i<8;i++) {
-            for(int j=0;j<8;j++) {
-                char piece = grid[i][j];
-                //if piece is not a piece or is on opposite team
-                if(!Character.isLetter(piece) || Character.isUpperCase(piece) != (team == 1))
-                    continue;
-                piece = Character.toLowerCase(piece);
-                int dir = (team==1?-1:1);
-                switch(piece) {
-                    //check for en passant here. actually since en passant happens through the normal pawn move, it'll get checked
-                    case('p'):
-                        if(validMove(j,i,j,i+dir) || validMove(j,i,j-1,i+dir) || validMove(j,i,j+1,i+dir) || validMove(j,i,j,i+2*dir))
-                            return true;
-                    case('r'):
-                        for(int k=0;k<8;k++)
-                            if(validMove(j,i,j,k) || validMove(j,i,k,i))
-                                return true;
-                        break;
-                    case('n'):
-                        for(int k=-2;k<=2;k+=4)
-                            for(int l=-1;l<=1;l+=2)
-                                if(validMove(j,i,j+l,i+k) || validMove(j,i,j+k,i+l))
-                                    return true;
-                        break;
-                    case('b'):
-                        for(int k=0;k<8;k++) {
-                            if(i+(j-k) < 8 && i+(j-k) >= 0 && validMove(j,i,k,i+(j-k)))
-                                return true;
-                            if(i-(j-k) < 8 && i-(j-k) >= 0 && validMove(j,i,k,i-(j-k)))
-                                return true;
-                        }
-                        break;
-                    case('q'):
-                        for(int k=0;k<8;k++)
-                            if(validMove(j,i,j,k) || validMove(j,i,k,i))
-                                return true;
-                        for(int k=0;k<8;k++) {
-                            if(i+(j-k) < 8 && i+(j-k) >= 0 && validMove(j,i,k,i+(j-k)))
-                                return true;
-                            if(i-(j-k) < 8 && i-(j-k) >= 0 && validMove(j,i,k,i-(j-k)))
-                                return true;
-                        }
-                        break;
-                    case('k'):
-                        for(int k=-1;k<=1;k++)
-                            for(int l=-1;l<=1;l++)
-                                if(validMove(j,i,j+k,i+l))
-                                    return true;
-                        //try to castle here
-                        if(validMove(j,i,j+2,i) || validMove(j,i,j-2,i))
-                            return true;
-                        break;
-                }
-            }
-        }
-
-        System.out.println("player "+team+" has no legal moves!");
+        if(status(team).state == GameStatus.PLAYING)
+            return true;
+        if(Log.enabled(Log.DEBUG))
+            Log.debug("player "+team+" has no legal moves!");
         return false;
     }
 
@@ -508,11 +553,8 @@ public class ChessModel{
      * @return if player is checkmated
      */
     public boolean isCheckmated(int team) {
-        System.out.println("checking for checkmate..");
-        if(isInCheck(team) && !hasLegalMoves(team))
-            return true;
-
-        return false;
+        Log.debug("checking for checkmate..");
+        return status(team).state == GameStatus.CHECKMATE;
     }
 
     /**
@@ -521,11 +563,8 @@ public class ChessModel{
      * @return if the game ends in stalemate
      */
     public boolean isStalemate(int team) {
-        System.out.println("checking for stalemate..");
-        if(!hasLegalMoves(team) && !isInCheck(team))
-            return true;
-
-        return false;
+        Log.debug("checking for stalemate..");
+        return status(team).state == GameStatus.STALEMATE;
     }
 
     /**
@@ -534,35 +573,9 @@ public class ChessModel{
      * @return if the player is in check
      */
     public boolean isInCheck(int team) {
-        System.out.println("is "+team+" in check?");
-        int kX = -1;
-        int kY = -1;
-        char kingChar = (team==1?'K':'k');
-        for(int i=0;i<8;i++) {
-            for(int j=0;j<8;j++) {
-                if(grid[i][j] == kingChar) {
-                    kX = j;
-                    kY = i;
-                    break;
-                }
-            }
-        }
-        //cycle through opponent of team's pieces
-        //try to move that piece to team's king
-        //if it's a valid move, return true for isInCheck
-        //else return false
-
-        for(int i=0;i<8;i++) {
-            for(int j=0;j<8;j++) {
-                if(Character.isUpperCase(grid[i][j]) != (team==1)) {
-                    if(validMove(j,i,kX,kY)) {
-                        System.out.println("player "+team+" is in check... the "+grid[i][j]+" at "+j+","+i+" can legally move to your king at "+kX+","+kY);
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
+        boolean check = status(team).inCheck();
+        if(check && Log.enabled(Log.DEBUG))
+            Log.debug("player "+team+" is in check");
+        return check;
     }
 }
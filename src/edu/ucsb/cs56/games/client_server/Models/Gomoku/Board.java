@@ -0,0 +1,177 @@
+package edu.ucsb.cs56.games.client_server.Models.Gomoku;
+
+/**
+ * Board is a gomoku board for bots to think on. besides the stones, it keeps, for every cell and direction and for
+ * both players, the number Patterns looks the line up by, and for every empty cell how much each player would like
+ * to put a stone there. a stone going down or coming back up only changes the lines of the 40 cells within 5 of it
+ * in the four directions, so only those get touched, and the totals the search scores positions by come along for
+ * free. cells are numbered y*size+x
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Board {
+    //across, down, down-right, down-left
+    static final int[] DX = {1, 0, 1, -1};
+    static final int[] DY = {0, 1, 1, 1};
+
+    public final int size;
+    public final int cells;
+    final int[] stones;
+    //lines[player-1][dir*cells+cell], as Patterns numbers them
+    final int[][] lines;
+    //worth[player-1][cell], what Patterns.worth says a stone there would be worth to the player, 0 where there's a stone
+    final int[][] worth;
+    //worth of all the empty cells together, for each player
+    final int[] total = new int[2];
+    //whose turn it is, 1 or 2
+    public int turn = 1;
+    //how many stones there are
+    public int count;
+
+    /**
+     * an empty board
+     * @param size cells across
+     */
+    public Board(int size) {
+        this.size = size;
+        cells = size*size;
+        stones = new int[cells];
+        lines = new int[2][4*cells];
+        worth = new int[2][cells];
+        //past the edge looks the same as the other player's stone, for both players
+        for(int cell=0;cell<cells;cell++) {
+            for(int dir=0;dir<4;dir++) {
+                for(int i=0;i<Patterns.WIDTH;i++) {
+                    int x = cell%size+(i-Patterns.CENTER)*DX[dir];
+                    int y = cell/size+(i-Patterns.CENTER)*DY[dir];
+                    if(x < 0 || y < 0 || x >= size || y >= size) {
+                        lines[0][dir*cells+cell] += 2*Patterns.POWER[i];
+                        lines[1][dir*cells+cell] += 2*Patterns.POWER[i];
+                    }
+                }
+            }
+        }
+        for(int cell=0;cell<cells;cell++)
+            rescore(cell);
+    }
+
+    /**
+     * @return 0 for none, otherwise the player whose stone is at cell
+     */
+    public int stone(int cell) {
+        return stones[cell];
+    }
+
+    /**
+     * @return how much player would like a stone at cell, 0 if there already is one
+     */
+    public int worth(int player, int cell) {
+        return worth[player-1][cell];
+    }
+
+    /**
+     * @return the kind of line a stone of player's at cell would make in direction dir
+     */
+    public int kind(int player, int cell, int dir) {
+        return Patterns.kind(lines[player-1][dir*cells+cell]);
+    }
+
+    /**
+     * @return the best kind of line a stone of player's at cell would make in any direction
+     */
+    public int best(int player, int cell) {
+        int best = Patterns.NONE;
+        for(int dir=0;dir<4;dir++)
+            best = Math.max(best, kind(player, cell, dir));
+        return best;
+    }
+
+    /**
+     * @return what all the empty cells are worth to player together
+     */
+    public int total(int player) {
+        return total[player-1];
+    }
+
+    /**
+     * put down a stone for whoever's turn it is, and pass the turn
+     * @param cell an empty cell
+     */
+    public void play(int cell) {
+        put(cell, turn);
+        turn = 3-turn;
+    }
+
+    /**
+     * take back the stone play put down, and the turn with it
+     * @param cell the cell it was put on
+     */
+    public void undo(int cell) {
+        take(cell);
+        turn = 3-turn;
+    }
+
+    /**
+     * put down a stone without touching the turn, for setting up a position
+     * @param cell an empty cell
+     * @param player whose stone it is
+     */
+    public void put(int cell, int player) {
+        stones[cell] = player;
+        count++;
+        for(int p=0;p<2;p++) {
+            total[p] -= worth[p][cell];
+            worth[p][cell] = 0;
+        }
+        update(cell, player, 1);
+    }
+
+    /**
+     * take a stone back up without touching the turn
+     * @param cell a cell with a stone
+     */
+    public void take(int cell) {
+        int player = stones[cell];
+        stones[cell] = 0;
+        count--;
+        update(cell, player, -1);
+        rescore(cell);
+    }
+
+    /**
+     * change the digit for cell in the lines of every cell within reach of it, and rescore the empty ones
+     */
+    void update(int cell, int player, int sign) {
+        int x = cell%size;
+        int y = cell/size;
+        int[] own = lines[player-1];
+        int[] other = lines[2-player];
+        for(int dir=0;dir<4;dir++) {
+            for(int k=-Patterns.CENTER;k<=Patterns.CENTER;k++) {
+                int x2 = x-k*DX[dir];
+                int y2 = y-k*DY[dir];
+                if(k == 0 || x2 < 0 || y2 < 0 || x2 >= size || y2 >= size)
+                    continue;
+                int cell2 = y2*size+x2;
+                //cell is k along from cell2, which is digit CENTER+k of cell2's line
+                own[dir*cells+cell2] += sign*Patterns.POWER[Patterns.CENTER+k];
+                other[dir*cells+cell2] += sign*2*Patterns.POWER[Patterns.CENTER+k];
+                if(stones[cell2] == 0)
+                    rescore(cell2);
+            }
+        }
+    }
+
+    void rescore(int cell) {
+        for(int p=0;p<2;p++) {
+            int kinds = 0;
+            for(int dir=0;dir<4;dir++)
+                kinds |= Patterns.kind(lines[p][dir*cells+cell])<<(3*dir);
+            total[p] -= worth[p][cell];
+            worth[p][cell] = Patterns.worth(kinds);
+            total[p] += worth[p][cell];
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package edu.ucsb.cs56.games.client_server.Models.Gomoku;
+
+import java.util.Arrays;
+
+/**
+ * Patterns says what putting a stone down would make along one line, worked out ahead of time for every way the
+ * line around the spot can look. a line is the 11 cells centered on the spot, 5 each way, which is as far as a five
+ * through the spot and the cells just past its ends can reach. each cell is a digit of a base 3 number, cell i worth
+ * 3^i: 0 for empty, 1 for the player's own stone, 2 for the other player's stone or the edge of the board. the
+ * number is the index into the table, so looking a line up costs one array read, and Board keeps the numbers up to
+ * date one digit at a time as stones go down.
+ *
+ * the kinds of line, from best to worst:
+ *   FIVE        exactly five in a row, six or more doesn't count
+ *   OPEN_FOUR   two different places to make five next move, which can't both be blocked
+ *   FOUR        one place to make five
+ *   OPEN_THREE  a place to make an open four
+ *   THREE       a place to make a four
+ *   OPEN_TWO    a place to make an open three
+ *   TWO         a place to make a three
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Patterns {
+    public static final int NONE = 0;
+    public static final int TWO = 1;
+    public static final int OPEN_TWO = 2;
+    public static final int THREE = 3;
+    public static final int OPEN_THREE = 4;
+    public static final int FOUR = 5;
+    public static final int OPEN_FOUR = 6;
+    public static final int FIVE = 7;
+
+    public static final int WIDTH = 11;
+    public static final int CENTER = 5;
+    //3^i for each cell of the line
+    public static final int[] POWER = new int[WIDTH+1];
+
+    //what a stone at the center makes, for each line
+    static final byte[] KIND;
+    //what a stone is worth from the kinds of line it makes in all four directions, indexed by kind<<9|kind<<6|kind<<3|kind
+    static final int[] WORTH = new int[8*8*8*8];
+
+    //worth of each kind of line on its own
+    public static final int FOUR_WORTH = 80;
+    public static final int FIVE_WORTH = 100000;
+    static final int[] KIND_WORTH = {0, 2, 10, 12, 60, FOUR_WORTH, 1000, FIVE_WORTH};
+    //making two threats at once, the other player can only stop one
+    public static final int DOUBLE_FOUR = 10000;
+    public static final int FOUR_THREE = 9000;
+    public static final int DOUBLE_THREE = 3000;
+
+    static {
+        POWER[0] = 1;
+        for(int i=1;i<=WIDTH;i++)
+            POWER[i] = POWER[i-1]*3;
+        KIND = new byte[POWER[WIDTH]];
+        Arrays.fill(KIND, (byte)-1);
+        for(int line=0;line<KIND.length;line++)
+            compute(line);
+
+        for(int i=0;i<WORTH.length;i++) {
+            int[] count = new int[8];
+            int worth = 0;
+            for(int dir=0;dir<4;dir++) {
+                int kind = i>>(3*dir) & 7;
+                count[kind]++;
+                worth += KIND_WORTH[kind];
+            }
+            int fours = count[FOUR]+count[OPEN_FOUR];
+            if(count[FIVE] == 0) {
+                if(fours >= 2)
+                    worth += DOUBLE_FOUR;
+                else if(fours == 1 && count[OPEN_THREE] > 0)
+                    worth += FOUR_THREE;
+                else if(count[OPEN_THREE] >= 2)
+                    worth += DOUBLE_THREE;
+            }
+            WORTH[i] = worth;
+        }
+    }
+
+    /**
+     * @param line the line's number, as described above
+     * @return the kind of line a stone at the center makes
+     */
+    public static int kind(int line) {
+        return KIND[line];
+    }
+
+    /**
+     * @param kinds the kinds of line a stone makes in each of the four directions, as kind<<9|kind<<6|kind<<3|kind
+     * @return how good a spot it is for the player
+     */
+    public static int worth(int kinds) {
+        return WORTH[kinds];
+    }
+
+    /**
+     * work out a line's kind, and the kinds of every line it could become with more stones, and remember them
+     */
+    static int compute(int line) {
+        if(KIND[line] >= 0)
+            return KIND[line];
+        //the center counts as the player's stone whatever it says
+        int center = line/POWER[CENTER]%3;
+        if(center != 1) {
+            KIND[line] = (byte)compute(line+(1-center)*POWER[CENTER]);
+            return KIND[line];
+        }
+
+        int kind;
+        if(five(line))
+            kind = FIVE;
+        else {
+            //what each more stone would make it into
+            int fives = 0;
+            int best = NONE;
+            for(int i=CENTER-4;i<=CENTER+4;i++) {
+                if(line/POWER[i]%3 != 0)
+                    continue;
+                int next = line+POWER[i];
+                if(five(next))
+                    fives++;
+                else
+                    best = Math.max(best, compute(next));
+            }
+            if(fives >= 2)
+                kind = OPEN_FOUR;
+            else if(fives == 1)
+                kind = FOUR;
+            else if(best == OPEN_FOUR)
+                kind = OPEN_THREE;
+            else if(best == FOUR)
+                kind = THREE;
+            else if(best == OPEN_THREE)
+                kind = OPEN_TWO;
+            else if(best == THREE)
+                kind = TWO;
+            else
+                kind = NONE;
+        }
+        KIND[line] = (byte)kind;
+        return kind;
+    }
+
+    /**
+     * @return if the run of the player's stones through the center is exactly five long
+     */
+    static boolean five(int line) {
+        int length = 1;
+        for(int i=CENTER-1;i>=0 && line/POWER[i]%3 == 1;i--)
+            length++;
+        for(int i=CENTER+1;i<WIDTH && line/POWER[i]%3 == 1;i++)
+            length++;
+        return length == 5;
+    }
+}
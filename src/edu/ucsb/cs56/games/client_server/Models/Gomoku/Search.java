@@ -0,0 +1,331 @@
+package edu.ucsb.cs56.games.client_server.Models.Gomoku;
+
+/**
+ * Search picks a gomoku move in a set amount of time. first it looks for a win by fours alone: keep making fours,
+ * each of which the other player has exactly one way to block, until one can't be blocked. that only ever looks at
+ * the few moves that make fours, so it can see a long way ahead. if there isn't one it falls back on iterative
+ * deepening alpha-beta, which only looks at the WIDTH cells Board says matter most to either player, and never
+ * counts a forced block as a move, so fours and answers to them are always followed to the end. a player who can
+ * make five always does, and a player facing two fives has lost
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class Search {
+    public static final int WIN = 1000000;
+    static final int MAX_DEPTH = 20;
+    static final int MAX_PLY = 64;
+    //most moves looked at from each position
+    static final int WIDTH = 12;
+    //most fours in a row the win by fours looks for
+    static final int VCF_DEPTH = 16;
+
+    //what generate found, besides moves to try
+    static final int WINS = -1;
+    static final int LOSES = -2;
+
+    public long nodes;
+    public int bestMove;
+    public int score;
+    public int completedDepth;
+
+    volatile boolean stopped;
+    long deadline;
+    Board board;
+    int[][] moves;
+    int[][] keys;
+    //if the last generate found a five to block, which is all there was to do
+    boolean forced;
+
+    /**
+     * search a position
+     * @param board the position, it's left as it was
+     * @param millis how long to take
+     * @return a cell to play on, or -1 if the board is full
+     */
+    public int think(Board board, long millis) {
+        this.board = board;
+        if(moves == null || moves[0].length != board.cells) {
+            moves = new int[MAX_PLY][board.cells];
+            keys = new int[MAX_PLY][board.cells];
+        }
+        long start = System.currentTimeMillis();
+        stopped = false;
+        nodes = 0;
+        completedDepth = 0;
+        score = 0;
+        bestMove = -1;
+
+        int count = generate(0);
+        if(count == WINS || forced) {
+            bestMove = moves[0][0];
+            if(count == WINS)
+                score = WIN;
+            return bestMove;
+        }
+        if(count == 0) {
+            for(int cell=0;cell<board.cells;cell++) {
+                if(board.stone(cell) == 0) {
+                    //the first stone goes in the middle
+                    bestMove = (board.count == 0 ? board.size/2*board.size+board.size/2 : cell);
+                    return bestMove;
+                }
+            }
+            return -1;
+        }
+        if(count == LOSES) {
+            bestMove = moves[0][0];
+            score = -WIN;
+            return bestMove;
+        }
+
+        //give a win by fours a quarter of the time
+        int first = moves[0][0];
+        deadline = start+millis/4;
+        if(vcf(VCF_DEPTH, 0)) {
+            score = WIN;
+            return bestMove;
+        }
+        stopped = false;
+        deadline = start+millis;
+        bestMove = first;
+
+        for(int depth=1;depth<=MAX_DEPTH;depth++) {
+            int best = root(depth);
+            if(stopped)
+                break;
+            score = best;
+            completedDepth = depth;
+            if(Math.abs(score) >= WIN-MAX_PLY)
+                break;
+        }
+        return bestMove;
+    }
+
+    /**
+     * stop searching, think returns as soon as it notices
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    void checkTime() {
+        if(System.currentTimeMillis() >= deadline)
+            stopped = true;
+    }
+
+    int root(int depth) {
+        int count = generate(0);
+        int[] list = moves[0];
+        //the best move from last time goes first
+        for(int i=1;i<count;i++) {
+            if(list[i] == bestMove) {
+                list[i] = list[0];
+                list[0] = bestMove;
+                break;
+            }
+        }
+        int alpha = -WIN-1;
+        int best = list[0];
+        for(int i=0;i<Math.min(count, WIDTH);i++) {
+            board.play(list[i]);
+            int value = -negamax(depth-1, -WIN-1, -alpha, 1);
+            board.undo(list[i]);
+            if(stopped)
+                return alpha;
+            if(value > alpha) {
+                alpha = value;
+                best = list[i];
+            }
+        }
+        bestMove = best;
+        return alpha;
+    }
+
+    int negamax(int depth, int alpha, int beta, int ply) {
+        nodes++;
+        if((nodes&1023) == 0 && completedDepth > 0)
+            checkTime();
+        if(stopped)
+            return 0;
+
+        int count = generate(ply);
+        if(count == WINS)
+            return WIN-ply;
+        if(count == LOSES)
+            return -(WIN-ply-1);
+        if(count == 0)
+            return 0;
+        //blocking a five isn't a choice, so it doesn't use up depth
+        if(!forced && depth <= 0 || ply >= MAX_PLY-1)
+            return evaluate();
+        if(forced)
+            depth++;
+
+        int[] list = moves[ply];
+        int best = -WIN-1;
+        for(int i=0;i<Math.min(count, WIDTH);i++) {
+            board.play(list[i]);
+            int value = -negamax(depth-1, -beta, -alpha, ply+1);
+            board.undo(list[i]);
+            if(stopped)
+                return 0;
+            if(value > best)
+                best = value;
+            if(value > alpha)
+                alpha = value;
+            if(alpha >= beta)
+                break;
+        }
+        return best;
+    }
+
+    /**
+     * how good the position is for whoever's turn it is, from what every empty cell is worth to each player. the
+     * player to move gets to use their threats first, so theirs count for more
+     */
+    int evaluate() {
+        int me = board.turn;
+        return board.total(me)*4/3-board.total(3-me);
+    }
+
+    /**
+     * the cells worth trying for whoever's turn it is, best first, in moves[ply]
+     * @return how many there are, WINS if the player can make five, which is then the first move, or LOSES if the
+     * other player has two fives to make and only one can be blocked. if they have just one, that's the only move
+     * and forced is set
+     */
+    int generate(int ply) {
+        int me = board.turn;
+        int other = 3-me;
+        int[] list = moves[ply];
+        int[] key = keys[ply];
+        forced = false;
+        int count = 0;
+        int blocks = 0;
+        int block = -1;
+        for(int cell=0;cell<board.cells;cell++) {
+            if(board.stone(cell) != 0)
+                continue;
+            int mine = board.worth(me, cell);
+            int theirs = board.worth(other, cell);
+            if(mine+theirs == 0)
+                continue;
+            if(mine >= Patterns.FIVE_WORTH && board.best(me, cell) == Patterns.FIVE) {
+                list[0] = cell;
+                return WINS;
+            }
+            if(theirs >= Patterns.FIVE_WORTH && board.best(other, cell) == Patterns.FIVE) {
+                blocks++;
+                block = cell;
+            }
+            list[count] = cell;
+            key[count] = mine+theirs;
+            count++;
+        }
+        if(blocks > 0) {
+            list[0] = block;
+            if(blocks > 1)
+                return LOSES;
+            forced = true;
+            return 1;
+        }
+        //only the best WIDTH get searched, so only they need sorting
+        for(int i=0;i<Math.min(count, WIDTH);i++) {
+            int top = i;
+            for(int j=i+1;j<count;j++) {
+                if(key[j] > key[top])
+                    top = j;
+            }
+            int cell = list[top];
+            int value = key[top];
+            list[top] = list[i];
+            key[top] = key[i];
+            list[i] = cell;
+            key[i] = value;
+        }
+        return count;
+    }
+
+    /**
+     * look for a win by nothing but fours, for whoever's turn it is
+     * @param depth most fours to make
+     * @param ply how far from the root, the first four found at the root is kept in bestMove
+     * @return if there is one
+     */
+    boolean vcf(int depth, int ply) {
+        nodes++;
+        if((nodes&1023) == 0)
+            checkTime();
+        if(stopped || depth == 0 || ply >= MAX_PLY-2)
+            return false;
+        int me = board.turn;
+        int other = 3-me;
+        int[] list = moves[ply];
+        int count = 0;
+        for(int cell=0;cell<board.cells;cell++) {
+            if(board.stone(cell) != 0)
+                continue;
+            //if they can make five first, fours don't matter
+            if(board.worth(other, cell) >= Patterns.FIVE_WORTH && board.best(other, cell) == Patterns.FIVE)
+                return false;
+            if(board.worth(me, cell) >= Patterns.FOUR_WORTH && board.best(me, cell) >= Patterns.FOUR)
+                list[count++] = cell;
+        }
+        for(int i=0;i<count;i++) {
+            int cell = list[i];
+            if(board.best(me, cell) == Patterns.FIVE) {
+                if(ply == 0)
+                    bestMove = cell;
+                return true;
+            }
+            board.play(cell);
+            int fives = fivesNear(cell, me);
+            boolean won = (fives >= 2);
+            if(fives == 1) {
+                int block = lastFive;
+                board.play(block);
+                won = vcf(depth-1, ply+2);
+                board.undo(block);
+            }
+            board.undo(cell);
+            if(won) {
+                if(ply == 0)
+                    bestMove = cell;
+                return true;
+            }
+            if(stopped)
+                return false;
+        }
+        return false;
+    }
+
+    //the last cell fivesNear found
+    int lastFive;
+
+    /**
+     * count the cells where player can make five along the lines through cell, which is where any new five has to
+     * be right after a stone goes down there
+     */
+    int fivesNear(int cell, int player) {
+        int x = cell%board.size;
+        int y = cell/board.size;
+        int fives = 0;
+        for(int dir=0;dir<4;dir++) {
+            for(int k=-4;k<=4;k++) {
+                int x2 = x+k*Board.DX[dir];
+                int y2 = y+k*Board.DY[dir];
+                if(k == 0 || x2 < 0 || y2 < 0 || x2 >= board.size || y2 >= board.size)
+                    continue;
+                int cell2 = y2*board.size+x2;
+                if(board.stone(cell2) == 0 && board.worth(player, cell2) >= Patterns.FIVE_WORTH
+                        && board.best(player, cell2) == Patterns.FIVE) {
+                    fives++;
+                    lastFive = cell2;
+                }
+            }
+        }
+        return fives;
+    }
+}
@@ -1,10 +1,16 @@
 package edu.ucsb.cs56.games.client_server.Models;
 
+import java.util.Arrays;
+
+import edu.ucsb.cs56.games.client_server.Log;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Tokenizer;
 
 
 /**
  * gomoku game is a game object that stores data about a game of gomoku, or 5-in-a-row
  * like other game objects, it provides functionality for sending and receiving game states, as well as win detection
+ * the board is kept as a long per row for each player, bit x set where they have a stone, so a 19x19 board takes a
+ * few hundred bytes and whole rows get checked for fives at once
  *
  * @author Joseph Colicchio
  * @version for CS56, Choice Points, Winter 2012
@@ -13,11 +19,26 @@ package edu.ucsb.cs56.games.client_server.Models;
 public class GomokuModel{
     public ClientModel player1, player2;
 
-    public int[][] grid;
+    //rows[type-1][y] has bit x set for each of that player's stones
+    long[][] rows;
     public int turn;
     public int winner;
     
     public int cells;
+    //one long per row
+    public static final int MAX_CELLS = 64;
+
+    //exactly this many in a row wins, six or more doesn't
+    public static final int WIN_LENGTH = 5;
+    //down, down-right, right, down-left
+    static final int[] DX = {0, 1, 1, -1};
+    static final int[] DY = {1, 1, 0, 1};
+
+    //every move since the board was cleared, for sending clients just what they're missing
+    public final MoveLog log = new MoveLog();
+
+    //for reading STATE messages in setState
+    Tokenizer tokens = new Tokenizer();
 
     public GomokuModel() {
         init(9);
@@ -25,123 +46,225 @@ public class GomokuModel{
 
     /**
      * initialize as size
-     * @param CELLS width and height of game board
+     * @param CELLS width and height of game board, kept between 1 and MAX_CELLS
      */
     public void init(int CELLS) {
-        cells = CELLS;
-        grid = new int[cells][cells];
-        for(int i=0;i<cells;i++)
-            for(int j=0;j<cells;j++)
-                grid[i][j] = 0;
+        cells = Math.max(1, Math.min(CELLS, MAX_CELLS));
+        if(rows == null || rows[0].length != cells)
+            rows = new long[2][cells];
+        else {
+            Arrays.fill(rows[0], 0);
+            Arrays.fill(rows[1], 0);
+        }
 
         turn = 1;
         winner = 0;
+        log.clear();
     }
 
     /**
-     * check winner of game
+     * check the whole board for a winner, for when the board came from somewhere else all at once. for each row and
+     * each direction, the bits where exactly five in a row start are worked out for the whole row with a few shifts
+     * and ands
      * @return if the game has a winner
      */
     public boolean checkWinner() {
-        for(int i=0;i<cells;i++) {
-            for(int j=0;j<cells;j++) {
-                int type = grid[i][j];
-                if(type == 0)
+        for(int type=1;type<=2;type++) {
+            for(int y=0;y<cells;y++) {
+                long row = row(type, y);
+                if(row == 0)
                     continue;
-
-                //vertical
-                if(i < cells-4 && recursiveCheckWin(type, j, i, 0, 4)) {
-                    winner = type;
-                    return true;
-                }
-                //horizontal
-                if(j < cells-4 && recursiveCheckWin(type, j, i, 2, 4)) {
-                    winner = type;
-                    return true;
-                }
-                //down-right
-                if(i < cells-4 && j < cells-4 && recursiveCheckWin(type, j, i, 1, 4)) {
-                    winner = type;
-                    return true;
-                }
-                //down-left
-                if(i < cells-4 && j > 3 && recursiveCheckWin(type, j, i, 3, 4)) {
+                //across, bit x is the stone at x+k
+                long across = fives(row<<1, row, row>>>1, row>>>2, row>>>3, row>>>4, row>>>5);
+                //down, the stone at x in row y+k
+                long down = fives(row(type, y-1), row, row(type, y+1), row(type, y+2), row(type, y+3),
+                        row(type, y+4), row(type, y+5));
+                //down-right, the stone at x+k in row y+k
+                long downRight = fives(row(type, y-1)<<1, row, row(type, y+1)>>>1, row(type, y+2)>>>2,
+                        row(type, y+3)>>>3, row(type, y+4)>>>4, row(type, y+5)>>>5);
+                //down-left, the stone at x-k in row y+k
+                long downLeft = fives(row(type, y-1)>>>1, row, row(type, y+1)<<1, row(type, y+2)<<2,
+                        row(type, y+3)<<3, row(type, y+4)<<4, row(type, y+5)<<5);
+                if((across|down|downRight|downLeft) != 0) {
                     winner = type;
                     return true;
                 }
             }
         }
-        System.out.println("no winner found");
+        Log.debug("no winner found");
         return false;
     }
 
-    private boolean recursiveCheckWin(int type, int X, int Y, int dir, int count) {
-        if(count < 0) {
-            if(X < cells && X >= 0 && Y < cells && Y >= 0 && grid[Y][X] == type) {
-                System.out.println("too long");
-                return false;
-            }
+    /**
+     * where exactly five in a row start, given the same row lined up for each stone of the run and the ones just
+     * before and after it
+     */
+    static long fives(long before, long first, long second, long third, long fourth, long fifth, long after) {
+        return first & second & third & fourth & fifth & ~before & ~after;
+    }
 
-            return true;
-        }
-        int dx = 1;
-        int dy = 1;
-        if(dir == 0)
-            dx = 0;
-        if(dir == 2)
-            dy = 0;
-        if(dir == 3)
-            dx = -1;
-        //if the tile before the first tile is of the same type, don't bother
-        if(count == 4 && X-dx >=0 && X-dx < cells && Y-dy >=0 && grid[Y-dy][X-dx] == type)
+    /**
+     * @return the bits of a player's stones in row y, none if y is off the board
+     */
+    long row(int type, int y) {
+        if(y < 0 || y >= cells)
+            return 0;
+        return rows[type-1][y];
+    }
+
+    /**
+     * check whether the stone just placed at X,Y won the game. any new five has to run through the new stone, so only
+     * the four lines through it need looking at, and at most a few stones along each
+     * @param X x coord of the new stone
+     * @param Y y coord of the new stone
+     * @return if the game has a winner
+     */
+    public boolean checkWinner(int X, int Y) {
+        int type = get(X, Y);
+        if(type == 0)
             return false;
-        if(grid[Y][X] == type)
-            return recursiveCheckWin(type,X+dx,Y+dy,dir,count-1);
+        for(int dir=0;dir<4;dir++) {
+            int length = 1+count(type, X, Y, DX[dir], DY[dir])+count(type, X, Y, -DX[dir], -DY[dir]);
+            if(length == WIN_LENGTH) {
+                winner = type;
+                return true;
+            }
+        }
         return false;
     }
 
+    /**
+     * how many stones of a type come one after another from next to X,Y in one direction. stops counting past
+     * WIN_LENGTH, anything that long is too long to win anyway
+     */
+    int count(int type, int X, int Y, int dx, int dy) {
+        int count = 0;
+        X += dx;
+        Y += dy;
+        while(count <= WIN_LENGTH && X >= 0 && X < cells && (row(type, Y)>>>X & 1) != 0) {
+            count++;
+            X += dx;
+            Y += dy;
+        }
+        return count;
+    }
+
+    /**
+     * the stone at X,Y, which has to be on the board
+     * @return 0 for none, otherwise the player whose stone it is
+     */
+    public int get(int X, int Y) {
+        if((rows[0][Y]>>>X & 1) != 0)
+            return 1;
+        if((rows[1][Y]>>>X & 1) != 0)
+            return 2;
+        return 0;
+    }
+
+    /**
+     * put a stone down, or take one away
+     * @param X x coord, on the board
+     * @param Y y coord, on the board
+     * @param type the player whose stone it is, or 0 for none
+     */
+    public void set(int X, int Y, int type) {
+        long bit = 1L<<X;
+        rows[0][Y] &= ~bit;
+        rows[1][Y] &= ~bit;
+        if(type == 1 || type == 2)
+            rows[type-1][Y] |= bit;
+    }
+
+    /**
+     * make a move, remembering it in the log
+     * @param X x coord, on the board
+     * @param Y y coord, on the board
+     * @param type the player making it
+     */
+    public void play(int X, int Y, int type) {
+        set(X, Y, type);
+        log.add(X, Y, type);
+    }
+
     /** set state from given string
      *
      * @param data state of the game
      */
     public void setState(String data) {
-        String[] info = data.substring(6).split("]");
-        int turnInfo = Integer.parseInt(info[0]);
+        Tokenizer info = tokens.reset(data, 6);
+        int turnInfo = info.nextInt();
         if(turnInfo == 0)
             checkWinner();
         else {
             turn = turnInfo;
             winner = 0;
         }
-        String[] rows = info[1].split(";");
+        log.clear();
         for(int i=0;i<cells;i++) {
-            String[] cols = rows[i].split(",");
             for(int j=0;j<cells;j++) {
-                grid[i][j] = Integer.parseInt(cols[j]);
+                int type = info.nextInt();
+                set(j, i, type);
+                if(type != 0)
+                    log.add(j, i, type);
             }
         }
         checkWinner();
     }
 
+    /**
+     * catch up from a DELTA message, made by getDelta. the moves it has are only good on top of the board they were
+     * worked out from, so if its from isn't 0 and doesn't match how many moves this board has, nothing is changed
+     * and the whole game has to be asked for again
+     * @param data the message
+     * @return false if the board didn't match and the message was ignored
+     */
+    public boolean setDelta(String data) {
+        Tokenizer info = tokens.reset(data, 6);
+        int turnInfo = info.nextInt();
+        int from = info.nextInt();
+        if(from == 0)
+            init(cells);
+        else if(from != log.length())
+            return false;
+        while(info.hasMore()) {
+            int X = info.nextInt();
+            int Y = info.nextInt();
+            play(X, Y, info.nextInt());
+        }
+        if(turnInfo == 0)
+            checkWinner();
+        else {
+            turn = turnInfo;
+            winner = 0;
+        }
+        return true;
+    }
+
+    /**
+     * the moves made since a client was last caught up, as a DELTA message
+     * @param stamp log.stamp() from when the client was last caught up, or -1 if it never has been
+     * @return the message, or null if getState would be shorter
+     */
+    public String getDelta(long stamp) {
+        return log.delta(stamp, winner == 0 ? turn : 0, cells*cells/4);
+    }
+
     /**
      * generate string representing state of the game
      * @return state of the game
      */
     public String getState() {
-        String state = "STATE[";
-        if(winner == 0)
-            state += turn+"]";
-        else
-            state += "0]";
+        StringBuilder state = new StringBuilder(8+2*cells*cells);
+        state.append("STATE[").append(winner == 0 ? turn : 0).append(']');
         for(int i=0;i<cells;i++) {
             for(int j=0;j<cells;j++) {
-                state += grid[i][j];
+                state.append(get(j, i));
                 if(j < cells-1)
-                    state +=",";
+                    state.append(',');
             }
             if(i<cells-1)
-                state += ";";
+                state.append(';');
         }
-        return state;
+        return state.toString();
     }
 }
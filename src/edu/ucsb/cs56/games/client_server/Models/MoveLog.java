@@ -0,0 +1,81 @@
+package edu.ucsb.cs56.games.client_server.Models;
+
+import java.util.Arrays;
+
+/**
+ * MoveLog is the history of a game where pieces only ever get put down, never moved or taken, like gomoku and tic tac
+ * toe: every move since the board was last cleared, and how many times it's been cleared. a stamp names a point in
+ * that history, so a room can remember how far it has brought each client and, when it needs to catch one up, send a
+ * DELTA with just the moves after that instead of a STATE with every cell on the board.
+ *
+ * a DELTA looks like DELTA[turn]from;x,y,player;x,y,player... where turn is as in STATE, 0 if the game's been won,
+ * and from is how many of the client's moves to keep, 0 meaning start from an empty board. a client whose board
+ * doesn't have exactly from moves on it ignores the DELTA and asks for a STATE instead
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class MoveLog {
+    //how many times the board's been cleared
+    int game;
+    //x | y<<8 | player<<16 for every move since
+    int[] moves = new int[16];
+    int length;
+
+    /**
+     * the board was cleared, everything sent before this is out of date
+     */
+    public void clear() {
+        game++;
+        length = 0;
+    }
+
+    /**
+     * remember a move
+     * @param X x coord
+     * @param Y y coord
+     * @param player who made it
+     */
+    public void add(int X, int Y, int player) {
+        if(length == moves.length)
+            moves = Arrays.copyOf(moves, length*2);
+        moves[length++] = X | Y<<8 | player<<16;
+    }
+
+    /**
+     * @return how many moves since the board was cleared
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return where the history is up to now, to hand back to delta later
+     */
+    public long stamp() {
+        return (long)game<<32 | length;
+    }
+
+    /**
+     * the DELTA that brings a client from an earlier stamp up to now
+     * @param stamp what the client had been brought up to, or -1 if it hasn't been sent anything
+     * @param turnInfo whose turn it is, or 0 if the game's been won
+     * @param maxMoves most moves worth sending, past that the whole board is shorter
+     * @return the message, or null if the client should get the whole board instead
+     */
+    public String delta(long stamp, int turnInfo, int maxMoves) {
+        int from = 0;
+        if(stamp >= 0 && (int)(stamp>>>32) == game && (int)stamp <= length)
+            from = (int)stamp;
+        if(length-from > maxMoves)
+            return null;
+        StringBuilder delta = new StringBuilder(12+8*(length-from));
+        delta.append("DELTA[").append(turnInfo).append(']').append(from);
+        for(int i=from;i<length;i++) {
+            int move = moves[i];
+            delta.append(';').append(move&0xff).append(',').append(move>>8&0xff).append(',').append(move>>16);
+        }
+        return delta.toString();
+    }
+}
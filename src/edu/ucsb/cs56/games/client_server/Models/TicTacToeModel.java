@@ -1,9 +1,11 @@
 package edu.ucsb.cs56.games.client_server.Models;
 
+import edu.ucsb.cs56.games.client_server.Log;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Tokenizer;
 
 /**
  * tictactoegame is a tic tac toe game object that stores data about a tic tac toe game, such as placement of Xs and Os,
- * and possibly the winner
+ * and possibly the winner. the whole board fits in one int, nine bits for each player's marks
  *
  * @author Joseph Colicchio
  * @version for CS56, Choice Points, Winter 2012
@@ -12,83 +14,165 @@ package edu.ucsb.cs56.games.client_server.Models;
 public class TicTacToeModel{
     public ClientModel player1, player2;
     
-    public int[][] grid;
+    //bit y*3+x is set where player 1 has a mark, the same bit 9 higher where player 2 has one
+    int board;
     public int turn;
     public int winner;
 
+    //the eight ways to get three in a row, as bits of one player's marks
+    static final int[] LINES = {
+        0007, 0070, 0700, //rows
+        0111, 0222, 0444, //columns
+        0421, 0124        //diagonals
+    };
+
+    //every move since the board was cleared, for sending clients just what they're missing
+    public final MoveLog log = new MoveLog();
+
+    //for reading STATE messages in setState
+    Tokenizer tokens = new Tokenizer();
+
     public TicTacToeModel() {
         init();
     }
 
     public void init() {
-        grid = new int[3][3];
-        for(int i=0;i<3;i++)
-            for(int j=0;j<3;j++)
-                grid[i][j] = 0;
-
+        board = 0;
         turn = 1;
         winner = 0;
+        log.clear();
     }
 
     public boolean checkWinner() {
         for(int j=1;j<3;j++) {
-            for(int i=0;i<3;i++) {
-                if(grid[0][i] == j && grid[1][i] == j && grid[2][i] == j) {
-                    winner = j;
-                    return true;
-                }
-                if(grid[i][0] == j && grid[i][1] == j && grid[i][2] == j) {
+            int marks = marks(j);
+            for(int i=0;i<LINES.length;i++) {
+                if((marks & LINES[i]) == LINES[i]) {
                     winner = j;
                     return true;
                 }
             }
-            if(grid[0][0] == j && grid[1][1] == j && grid[2][2] == j) {
-                winner = j;
-                return true;
-            }
-            if(grid[0][2] == j && grid[1][1] == j && grid[2][0] == j) {
-                winner = j;
-                return true;
-            }
         }
-        System.out.println("no winner found");
+        Log.debug("no winner found");
         return false;
     }
+
+    /**
+     * @param type player 1 or 2
+     * @return where the player has marks, bit y*3+x
+     */
+    public int marks(int type) {
+        return board>>>(9*(type-1)) & 0777;
+    }
+
+    /**
+     * the mark at X,Y, which has to be on the board
+     * @return 0 for none, otherwise the player whose mark it is
+     */
+    public int get(int X, int Y) {
+        int bit = Y*3+X;
+        if((board>>>bit & 1) != 0)
+            return 1;
+        if((board>>>(bit+9) & 1) != 0)
+            return 2;
+        return 0;
+    }
+
+    /**
+     * make a mark, or rub one out
+     * @param X x coord, on the board
+     * @param Y y coord, on the board
+     * @param type the player whose mark it is, or 0 for none
+     */
+    public void set(int X, int Y, int type) {
+        int bit = Y*3+X;
+        board &= ~(1<<bit | 1<<(bit+9));
+        if(type == 1 || type == 2)
+            board |= 1<<(bit+9*(type-1));
+    }
+
+    /**
+     * make a move, remembering it in the log
+     * @param X x coord, on the board
+     * @param Y y coord, on the board
+     * @param type the player making it
+     */
+    public void play(int X, int Y, int type) {
+        set(X, Y, type);
+        log.add(X, Y, type);
+    }
     
     public void setState(String data) {
-        String[] info = data.substring(6).split("]");
-        int turnInfo = Integer.parseInt(info[0]);
+        Tokenizer info = tokens.reset(data, 6);
+        int turnInfo = info.nextInt();
         if(turnInfo == 0)
             checkWinner();
         else {
             turn = turnInfo;
             winner = 0;
         }
-        String[] rows = info[1].split(";");
+        log.clear();
         for(int i=0;i<3;i++) {
-            String[] cols = rows[i].split(",");
             for(int j=0;j<3;j++) {
-                grid[i][j] = Integer.parseInt(cols[j]);
+                int type = info.nextInt();
+                set(j, i, type);
+                if(type != 0)
+                    log.add(j, i, type);
             }
         }
         checkWinner();
     }
+
+    /**
+     * catch up from a DELTA message, made by getDelta. the moves it has are only good on top of the board they were
+     * worked out from, so if its from isn't 0 and doesn't match how many moves this board has, nothing is changed
+     * and the whole game has to be asked for again
+     * @param data the message
+     * @return false if the board didn't match and the message was ignored
+     */
+    public boolean setDelta(String data) {
+        Tokenizer info = tokens.reset(data, 6);
+        int turnInfo = info.nextInt();
+        int from = info.nextInt();
+        if(from == 0)
+            init();
+        else if(from != log.length())
+            return false;
+        while(info.hasMore()) {
+            int X = info.nextInt();
+            int Y = info.nextInt();
+            play(X, Y, info.nextInt());
+        }
+        if(turnInfo == 0)
+            checkWinner();
+        else {
+            turn = turnInfo;
+            winner = 0;
+        }
+        return true;
+    }
+
+    /**
+     * the moves made since a client was last caught up, as a DELTA message
+     * @param stamp log.stamp() from when the client was last caught up, or -1 if it never has been
+     * @return the message, or null if getState would be shorter
+     */
+    public String getDelta(long stamp) {
+        return log.delta(stamp, winner == 0 ? turn : 0, 3);
+    }
     
     public String getState() {
-        String state = "STATE[";
-        if(winner == 0)
-            state += turn+"]";
-        else
-            state += "0]";
+        StringBuilder state = new StringBuilder(8+2*9);
+        state.append("STATE[").append(winner == 0 ? turn : 0).append(']');
         for(int i=0;i<3;i++) {
             for(int j=0;j<3;j++) {
-                state += grid[i][j];
+                state.append(get(j, i));
                 if(j < 2)
-                    state +=",";
+                    state.append(',');
             }
             if(i<2)
-                state += ";";
+                state.append(';');
         }
-        return state;
+        return state.toString();
     }
 }
@@ -0,0 +1,126 @@
+package edu.ucsb.cs56.games.client_server.Models;
+
+import java.util.Arrays;
+
+/**
+ * TicTacToeSolver knows the best move in every tic tac toe position a game can get to, worked out once when the class
+ * is loaded by playing every game there is. a board is numbered by reading its cells as a base 3 number, cell y*3+x
+ * worth 3^(y*3+x), 0 for empty, 1 for an X (player 1) and 2 for an O, and the table has a byte for every number:
+ * the best move, y*3+x, in the low 4 bits, and whether it wins, draws or loses for the player to move above them.
+ * that's 19683 bytes, and looking a board up is a couple of array reads. the best move wins as soon as it can, and
+ * when it can't help losing, loses as late as it can
+ *
+ * @author Joseph Colicchio
+ * @version for CS56, Choice Points, Winter 2012
+ */
+
+public class TicTacToeSolver {
+    //what the player to move gets with best play on both sides
+    public static final int LOSS = 0;
+    public static final int DRAW = 1;
+    public static final int WIN = 2;
+    //the move for a game that's over
+    public static final int NONE = 15;
+
+    public static final int POSITIONS = 19683;
+    //no game gets to this board
+    static final byte UNREACHABLE = (byte)0xff;
+
+    static final byte[] TABLE = new byte[POSITIONS];
+    //the base 3 number of a set of marks, bit i worth 3^i
+    static final int[] BASE3 = new int[512];
+
+    static {
+        for(int marks=0;marks<512;marks++) {
+            for(int i=0, power=1;i<9;i++, power*=3) {
+                if((marks>>i & 1) != 0)
+                    BASE3[marks] += power;
+            }
+        }
+        Arrays.fill(TABLE, UNREACHABLE);
+        solve(0, 0, new int[POSITIONS]);
+    }
+
+    /**
+     * @param marks1 where player 1 has marks, bit y*3+x, as TicTacToeModel.marks gives them
+     * @param marks2 where player 2 has marks
+     * @return the board's number
+     */
+    public static int index(int marks1, int marks2) {
+        return BASE3[marks1]+2*BASE3[marks2];
+    }
+
+    /**
+     * @param game a game in progress
+     * @return the best move for whoever's turn it is, y*3+x, or NONE if the game is over or couldn't have been played
+     */
+    public static int bestMove(TicTacToeModel game) {
+        return bestMove(index(game.marks(1), game.marks(2)));
+    }
+
+    /**
+     * @param index a board's number
+     * @return the best move for whoever's turn it is, y*3+x, or NONE if the game is over or couldn't have been played
+     */
+    public static int bestMove(int index) {
+        return TABLE[index] & 15;
+    }
+
+    /**
+     * @param index a board's number
+     * @return WIN, DRAW or LOSS for the player to move, or -1 if no game gets to the board
+     */
+    public static int outcome(int index) {
+        if(TABLE[index] == UNREACHABLE)
+            return -1;
+        return TABLE[index]>>4;
+    }
+
+    /**
+     * fill in the table for a board and everything after it
+     * @param scores working space for how good each board is for the player to move, sooner wins and later losses
+     * being worth more, kept while the table is made and thrown away after
+     * @return the board's score
+     */
+    static int solve(int marks1, int marks2, int[] scores) {
+        int index = index(marks1, marks2);
+        if(TABLE[index] != UNREACHABLE)
+            return scores[index];
+        int plies = Integer.bitCount(marks1|marks2);
+        //player 1 always starts
+        int mine = (plies%2 == 0 ? marks1 : marks2);
+        int theirs = (plies%2 == 0 ? marks2 : marks1);
+
+        int score;
+        int move = NONE;
+        if(won(theirs))
+            score = -(10-plies);
+        else if(plies == 9)
+            score = 0;
+        else {
+            score = Integer.MIN_VALUE;
+            for(int cell=0;cell<9;cell++) {
+                if(((marks1|marks2)>>cell & 1) != 0)
+                    continue;
+                int value = (plies%2 == 0 ? -solve(marks1|1<<cell, marks2, scores)
+                        : -solve(marks1, marks2|1<<cell, scores));
+                if(value > score) {
+                    score = value;
+                    move = cell;
+                }
+            }
+        }
+        int outcome = (score > 0 ? WIN : score < 0 ? LOSS : DRAW);
+        scores[index] = score;
+        TABLE[index] = (byte)(outcome<<4 | move);
+        return score;
+    }
+
+    static boolean won(int marks) {
+        for(int i=0;i<TicTacToeModel.LINES.length;i++) {
+            if((marks & TicTacToeModel.LINES[i]) == TicTacToeModel.LINES[i])
+                return true;
+        }
+        return false;
+    }
+}
@@ -3,6 +3,8 @@ package edu.ucsb.cs56.games.client_server.Views;
 import javax.swing.*;
 
 import edu.ucsb.cs56.games.client_server.JavaClient;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Protocol;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Tokenizer;
 import edu.ucsb.cs56.games.client_server.Models.ChessModel;
 import edu.ucsb.cs56.games.client_server.Models.ResModel;
 
@@ -12,6 +14,7 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.util.ArrayList;
+import java.util.Base64;
 
 /**
  * Chess panel to be displayed in client, gets data from server and renders it, also provides interactivity between player and server
@@ -24,6 +27,8 @@ import java.util.ArrayList;
 
 public class ChessViewPanel extends GameViewPanel {
     ChessModel game;
+    //for reading moves out of messages from the server
+    Tokenizer tokens = new Tokenizer();
     int player1, player2;
 //    ArrayList<Character> capt1, capt2;
     JPanel menuButtons;
@@ -110,121 +115,172 @@ public class ChessViewPanel extends GameViewPanel {
 
     /**
      * handles data from the server
+     * @param opcode the data's opcode, from Protocol.opcode
      * @param string data to process
      */
     @Override
-    public void handleMessage(String string) {
+    public void handleMessage(int opcode, String string) {
         System.out.println("handling as Chess: "+string);
-        if(string.indexOf("INIT;") == 0) {
-            game.init();
-//            capt1 = new ArrayList<Character>();
-//            capt2 = new ArrayList<Character>();
-        } else if(string.indexOf("STATE[") == 0) {
-            game.setState(string);
-            check = (game.isInCheck(game.turn)?game.turn:0);
-            selectX = selectY = -1;
-        } else if(string.indexOf("MOVE[") == 0) {
-            String[] data = string.substring(5).split("]");
-            int pid = Integer.parseInt(data[0]);
-            String[] coords = data[1].split(",");
-            int X1 = Integer.parseInt(coords[0]);
-            int Y1 = Integer.parseInt(coords[1]);
-            int X2 = Integer.parseInt(coords[2]);
-            int Y2 = Integer.parseInt(coords[3]);
-
-//            if(Character.isLetter(game.grid[Y2][X2]))
-//                if(game.turn == 1)
-//                    capt1.add(game.grid[Y2][X2]);
-//                else
-//                    capt2.add(game.grid[Y2][X2]);
-
-//            game.grid[Y2][X2] = game.grid[Y1][X1];
-//            game.grid[Y1][X1] = '0';
-            game.tryMove(X1,Y1,X2,Y2);
-            game.turn = pid;
-            check = (game.isInCheck(game.turn)?game.turn:0);
-            selectX = selectY = -1;
-            lastMoveX = X2;
-            lastMoveY = Y2;
-        } else if(string.indexOf("PLAYERS;") == 0) {
-            String[] data = string.substring(8).split(",");
-            player1 = Integer.parseInt(data[0]);
-            player2 = Integer.parseInt(data[1]);
-            System.out.println(player1+", "+JavaClient.javaClient.getClients().size());
-            if(player1 >= 0 && player1 < JavaClient.javaClient.getClients().size()) {
-                game.player1 = JavaClient.javaClient.getClients().get(player1);
-            } else
-                game.player1 = null;
-            if(player2 >= 0 && player2 < JavaClient.javaClient.getClients().size())
-                game.player2 = JavaClient.javaClient.getClients().get(player2);
-            else
-                game.player2 = null;
-
-            //if the user is currently playing
-            if(player1 == JavaClient.javaClient.getId() || player2 == JavaClient.javaClient.getId()) {
-                isPlaying = true;
-                if(player1 == JavaClient.javaClient.getId())
-                    playerID = 1;
-                else {
-                    flippedBox.setSelected(true);
-                    flipped = true;
-                    playerID = 2;
+        switch(opcode) {
+            case Protocol.INIT: {
+                game.init();
+//                capt1 = new ArrayList<Character>();
+//                capt2 = new ArrayList<Character>();
+                break;
+            }
+            case Protocol.STATE: {
+                game.setState(string);
+                check = (game.isInCheck(game.turn)?game.turn:0);
+                selectX = selectY = -1;
+                break;
+            }
+            case Protocol.MOVE: {
+                Tokenizer data = tokens.reset(string, 5);
+                int pid = data.nextInt();
+                int X1 = data.nextInt();
+                int Y1 = data.nextInt();
+                int X2 = data.nextInt();
+                int Y2 = data.nextInt();
+
+//                if(Character.isLetter(game.grid[Y2][X2]))
+//                    if(game.turn == 1)
+//                        capt1.add(game.grid[Y2][X2]);
+//                    else
+//                        capt2.add(game.grid[Y2][X2]);
+
+//                game.grid[Y2][X2] = game.grid[Y1][X1];
+//                game.grid[Y1][X1] = '0';
+                game.tryMove(X1,Y1,X2,Y2);
+                game.turn = pid;
+                check = (game.isInCheck(game.turn)?game.turn:0);
+                selectX = selectY = -1;
+                lastMoveX = X2;
+                lastMoveY = Y2;
+                break;
+            }
+            case Protocol.PLAYERS: {
+                Tokenizer data = tokens.reset(string, 8);
+                setPlayers(data.nextInt(), data.nextInt());
+                break;
+            }
+            case Protocol.POS: {
+                //POS[player1,player2]packed, the whole game at once
+                Tokenizer data = tokens.reset(string, 4);
+                int id1 = data.nextInt();
+                int id2 = data.nextInt();
+                game.unpack(Base64.getDecoder().decode(string.substring(string.indexOf(']')+1)));
+                setPlayers(id1, id2);
+                check = (game.isInCheck(game.turn)?game.turn:0);
+                selectX = selectY = -1;
+                //a pawn of ours on the last row is still waiting for us to pick what it becomes
+                char pawn = (playerID == 1 ? 'P' : 'p');
+                int lastRow = (playerID == 1 ? 0 : 7);
+                promoting = false;
+                if(isPlaying && game.turn == playerID && game.winner == 0) {
+                    for(int x=0;x<8;x++) {
+                        if(game.grid[lastRow][x] == pawn) {
+                            promoting = true;
+                            lastMoveX = x;
+                            lastMoveY = lastRow;
+                        }
+                    }
                 }
-                //if the game has two players, and is ready to go
-                if(game.player1 != null && game.player2 != null) {
-                    newGameButton.setEnabled(true);
-//                    sizesBox.setEnabled(false);
+                break;
+            }
+            case Protocol.WINNER: {
+                game.winner = Integer.parseInt(string.substring(7));
+                System.out.println("winner: "+game.winner);
+                break;
+            }
+            case Protocol.SIZE: {
+                int size = Integer.parseInt(string.substring(5));
+                game.init();
+//                sizesBox.setSize(size);
+                break;
+            }
+            case Protocol.PROMOTE: {
+                if(Protocol.bracketed(string)) {
+                    //PROMOTE[turn]x1,y1,x2,y2, a pawn reached the last row and its owner has to pick a piece
+                    Tokenizer data = tokens.reset(string, 8);
+                    int pid = data.nextInt();
+                    int X1 = data.nextInt();
+                    int Y1 = data.nextInt();
+                    int X2 = data.nextInt();
+                    int Y2 = data.nextInt();
+                
+                    game.grid[Y2][X2] = game.grid[Y1][X1];
+                    game.grid[Y1][X1] = '0';
+
+                    lastMoveX = X2;
+                    lastMoveY = Y2;
+                
+                    if(playerID == pid)
+                        promoting = true;
                 } else {
-                    newGameButton.setEnabled(false);
-//                    sizesBox.setEnabled(true);
+                    //PROMOTE;x,y,piece, the piece was picked
+                    Tokenizer data = tokens.reset(string, 8);
+                    int X = data.nextInt();
+                    int Y = data.nextInt();
+                    char piece = data.nextChar();
+                    game.promote(X, Y, piece);
+                    check = (game.isInCheck(game.turn)?game.turn:0);
+                    game.turn = 3-game.turn;
                 }
+                break;
+            }
+        }
+    }
+
+    /**
+     * set who is playing, and whether that's us
+     * @param id1 client id of player 1, or -1
+     * @param id2 client id of player 2, or -1
+     */
+    void setPlayers(int id1, int id2) {
+        player1 = id1;
+        player2 = id2;
+        System.out.println(player1+", "+JavaClient.javaClient.getClients().size());
+        if(player1 >= 0 && player1 < JavaClient.javaClient.getClients().size()) {
+            game.player1 = JavaClient.javaClient.getClients().get(player1);
+        } else
+            game.player1 = null;
+        if(player2 >= 0 && player2 < JavaClient.javaClient.getClients().size())
+            game.player2 = JavaClient.javaClient.getClients().get(player2);
+        else
+            game.player2 = null;
+
+        //if the user is currently playing
+        if(player1 == JavaClient.javaClient.getId() || player2 == JavaClient.javaClient.getId()) {
+            isPlaying = true;
+            if(player1 == JavaClient.javaClient.getId())
+                playerID = 1;
+            else {
+                flippedBox.setSelected(true);
+                flipped = true;
+                playerID = 2;
+            }
+            //if the game has two players, and is ready to go
+            if(game.player1 != null && game.player2 != null) {
+                newGameButton.setEnabled(true);
+//                sizesBox.setEnabled(false);
             } else {
-                isPlaying = false;
-                playerID = 0;
                 newGameButton.setEnabled(false);
-//                if(game.player1 != null && game.player2 != null)
-//                    sizesBox.setEnabled(false);
-//                else
-//                    sizesBox.setEnabled(true);
+//                sizesBox.setEnabled(true);
             }
-
-            if(isPlaying || game.player1 == null || game.player2 == null)
-                playSpecButton.setEnabled(true);
-            else
-                playSpecButton.setEnabled(false);
-        } else if(string.indexOf("WINNER;")==0) {
-            game.winner = Integer.parseInt(string.substring(7));
-            System.out.println("winner: "+game.winner);
-        } else if(string.indexOf("SIZE;") == 0) {
-            int size = Integer.parseInt(string.substring(5));
-            game.init();
-//            sizesBox.setSize(size);
-        } else if(string.indexOf("PROMOTE[") == 0) {
-            String[] data = string.substring(8).split("]");
-            int pid = Integer.parseInt(data[0]);
-            String[] coords = data[1].split(",");
-            int X1 = Integer.parseInt(coords[0]);
-            int Y1 = Integer.parseInt(coords[1]);
-            int X2 = Integer.parseInt(coords[2]);
-            int Y2 = Integer.parseInt(coords[3]);
-            
-            game.grid[Y2][X2] = game.grid[Y1][X1];
-            game.grid[Y1][X1] = '0';
-
-            lastMoveX = X2;
-            lastMoveY = Y2;
-            
-            if(playerID == pid)
-                promoting = true;
-        } else if(string.indexOf("PROMOTE;") == 0) {
-            String[] data = string.substring(8).split(",");
-            int X = Integer.parseInt(data[0]);
-            int Y = Integer.parseInt(data[1]);
-            char piece = data[2].charAt(0);
-            game.grid[Y][X] = piece;
-            check = (game.isInCheck(game.turn)?game.turn:0);
-            game.turn = 3-game.turn;
+        } else {
+            isPlaying = false;
+            playerID = 0;
+            newGameButton.setEnabled(false);
+//            if(game.player1 != null && game.player2 != null)
+//                sizesBox.setEnabled(false);
+//            else
+//                sizesBox.setEnabled(true);
         }
+
+        if(isPlaying || game.player1 == null || game.player2 == null)
+            playSpecButton.setEnabled(true);
+        else
+            playSpecButton.setEnabled(false);
     }
 
     /**
@@ -345,7 +401,7 @@ public class ChessViewPanel extends GameViewPanel {
 
             if(readyState.equals("")) {
                 if(game.winner == -1)
-                        readyState = "Stalemate!";
+                        readyState = (game.isStalemate(game.turn) ? "Stalemate!" : "Draw!");
                     else if(game.winner == 1)
                         readyState = "Checkmate! "+game.player1.getName()+" wins!";
                     else if(game.winner == 2)
@@ -28,9 +28,10 @@ public class GameViewPanel extends JPanel implements MouseListener{
 
     /**
      * handle incoming data from server
+     * @param opcode the data's opcode, from Protocol.opcode
      * @param string data
      */
-    public void handleMessage(String string) {
+    public void handleMessage(int opcode, String string) {
 
     }
 
@@ -3,6 +3,8 @@ package edu.ucsb.cs56.games.client_server.Views;
 import javax.swing.*;
 
 import edu.ucsb.cs56.games.client_server.JavaClient;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Protocol;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Tokenizer;
 import edu.ucsb.cs56.games.client_server.Models.GomokuModel;
 
 import java.awt.*;
@@ -20,6 +22,8 @@ import java.awt.event.MouseListener;
  */
 public class GomokuViewPanel extends GameViewPanel {
     GomokuModel game;
+    //for reading moves out of messages from the server
+    Tokenizer tokens = new Tokenizer();
     JPanel menuButtons;
 
     JButton playSpecButton;
@@ -73,69 +77,88 @@ public class GomokuViewPanel extends GameViewPanel {
 
     /**
      * handle data from server
+     * @param opcode the data's opcode, from Protocol.opcode
      * @param string data
      */
     @Override
-    public void handleMessage(String string) {
+    public void handleMessage(int opcode, String string) {
         System.out.println("handling as Gomoku: "+string);
-        if(string.indexOf("INIT;") == 0) {
-            game.init(9);
-        } else if(string.indexOf("STATE[") == 0) {
-            game.setState(string);
-        } else if(string.indexOf("MOVE[") == 0) {
-            String[] data = string.substring(5).split("]");
-            int pid = Integer.parseInt(data[0]);
-            String[] coords = data[1].split(",");
-            int X = Integer.parseInt(coords[0]);
-            int Y = Integer.parseInt(coords[1]);
-
-            game.grid[Y][X] = pid;
-            game.turn = 3-pid;
-        } else if(string.indexOf("PLAYERS;") == 0) {
-            String[] data = string.substring(8).split(",");
-            int pid1 = Integer.parseInt(data[0]);
-            int pid2 = Integer.parseInt(data[1]);
-            System.out.println(pid1+", "+JavaClient.javaClient.getClients().size());
-            if(pid1 >= 0 && pid1 < JavaClient.javaClient.getClients().size()) {
-                game.player1 = JavaClient.javaClient.getClients().get(Integer.parseInt(data[0]));
-            } else
-                game.player1 = null;
-            if(pid2 >= 0 && pid2 < JavaClient.javaClient.getClients().size())
-                game.player2 = JavaClient.javaClient.getClients().get(Integer.parseInt(data[1]));
-            else
-                game.player2 = null;
-
-            //if the user is currently playing
-            if(pid1 == JavaClient.javaClient.getId() || pid2 == JavaClient.javaClient.getId()) {
-                isPlaying = true;
-                //if the game has two players, and is ready to go
-                if(game.player1 != null && game.player2 != null) {
-                    newGameButton.setEnabled(true);
-                    sizesBox.setEnabled(false);
+        switch(opcode) {
+            case Protocol.INIT: {
+                game.init(9);
+                break;
+            }
+            case Protocol.STATE: {
+                game.setState(string);
+                break;
+            }
+            case Protocol.DELTA: {
+                //missed or mixed up a message on the way, ask for the whole game
+                if(!game.setDelta(string))
+                    JavaClient.javaClient.sendMessage("STATE;");
+                break;
+            }
+            case Protocol.MOVE: {
+                Tokenizer data = tokens.reset(string, 5);
+                int pid = data.nextInt();
+                int X = data.nextInt();
+                int Y = data.nextInt();
+
+                game.play(X, Y, pid);
+                game.turn = 3-pid;
+                break;
+            }
+            case Protocol.PLAYERS: {
+                String[] data = string.substring(8).split(",");
+                int pid1 = Integer.parseInt(data[0]);
+                int pid2 = Integer.parseInt(data[1]);
+                System.out.println(pid1+", "+JavaClient.javaClient.getClients().size());
+                if(pid1 >= 0 && pid1 < JavaClient.javaClient.getClients().size()) {
+                    game.player1 = JavaClient.javaClient.getClients().get(Integer.parseInt(data[0]));
+                } else
+                    game.player1 = null;
+                if(pid2 >= 0 && pid2 < JavaClient.javaClient.getClients().size())
+                    game.player2 = JavaClient.javaClient.getClients().get(Integer.parseInt(data[1]));
+                else
+                    game.player2 = null;
+
+                //if the user is currently playing
+                if(pid1 == JavaClient.javaClient.getId() || pid2 == JavaClient.javaClient.getId()) {
+                    isPlaying = true;
+                    //if the game has two players, and is ready to go
+                    if(game.player1 != null && game.player2 != null) {
+                        newGameButton.setEnabled(true);
+                        sizesBox.setEnabled(false);
+                    } else {
+                        newGameButton.setEnabled(false);
+                        sizesBox.setEnabled(true);
+                    }
                 } else {
+                    isPlaying = false;
                     newGameButton.setEnabled(false);
-                    sizesBox.setEnabled(true);
+                    if(game.player1 != null && game.player2 != null)
+                        sizesBox.setEnabled(false);
+                    else
+                        sizesBox.setEnabled(true);
                 }
-            } else {
-                isPlaying = false;
-                newGameButton.setEnabled(false);
-                if(game.player1 != null && game.player2 != null)
-                    sizesBox.setEnabled(false);
+
+                if(isPlaying || game.player1 == null || game.player2 == null)
+                    playSpecButton.setEnabled(true);
                 else
-                    sizesBox.setEnabled(true);
+                    playSpecButton.setEnabled(false);
+                break;
+            }
+            case Protocol.WINNER: {
+                game.winner = Integer.parseInt(string.substring(7));
+                break;
+            }
+            case Protocol.SIZE: {
+                int size = Integer.parseInt(string.substring(5));
+                game.init(size);
+                cells = game.cells;
+                sizesBox.setSize(size);
+                break;
             }
-
-            if(isPlaying || game.player1 == null || game.player2 == null)
-                playSpecButton.setEnabled(true);
-            else
-                playSpecButton.setEnabled(false);
-        } else if(string.indexOf("WINNER;")==0) {
-            game.winner = Integer.parseInt(string.substring(7));
-        } else if(string.indexOf("SIZE;") == 0) {
-            int size = Integer.parseInt(string.substring(5));
-            game.init(size);
-            cells = size;
-            sizesBox.setSize(size);
         }
     }
 
@@ -183,7 +206,7 @@ public class GomokuViewPanel extends GameViewPanel {
             synchronized (game) {
                 for(int i=0;i<cells;i++) {
                     for(int j=0;j<cells;j++) {
-                        int pid = game.grid[i][j];
+                        int pid = game.get(j, i);
                         if(pid == 0)
                             continue;
 
@@ -3,6 +3,8 @@ package edu.ucsb.cs56.games.client_server.Views;
 import javax.swing.*;
 
 import edu.ucsb.cs56.games.client_server.JavaClient;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Protocol;
+import edu.ucsb.cs56.games.client_server.Controllers.Network.Tokenizer;
 import edu.ucsb.cs56.games.client_server.Models.TicTacToeModel;
 
 import java.awt.*;
@@ -23,6 +25,8 @@ import java.awt.geom.GeneralPath;
 
 public class TicTacToeViewPanel extends GameViewPanel {
     TicTacToeModel game;
+    //for reading moves out of messages from the server
+    Tokenizer tokens = new Tokenizer();
     JPanel menuButtons;
 
     JButton playSpecButton;
@@ -64,52 +68,68 @@ public class TicTacToeViewPanel extends GameViewPanel {
     }
 
     @Override
-    public void handleMessage(String string) {
+    public void handleMessage(int opcode, String string) {
         System.out.println("handling as tictactoe: "+string);
-        if(string.indexOf("INIT;") == 0) {
-            game.init();
-        } else if(string.indexOf("STATE[") == 0) {
-            game.setState(string);
-        } else if(string.indexOf("MOVE[") == 0) {
-            String[] data = string.substring(5).split("]");
-            int pid = Integer.parseInt(data[0]);
-            String[] coords = data[1].split(",");
-            int X = Integer.parseInt(coords[0]);
-            int Y = Integer.parseInt(coords[1]);
+        switch(opcode) {
+            case Protocol.INIT: {
+                game.init();
+                break;
+            }
+            case Protocol.STATE: {
+                game.setState(string);
+                break;
+            }
+            case Protocol.DELTA: {
+                //missed or mixed up a message on the way, ask for the whole game
+                if(!game.setDelta(string))
+                    JavaClient.javaClient.sendMessage("STATE;");
+                break;
+            }
+            case Protocol.MOVE: {
+                Tokenizer data = tokens.reset(string, 5);
+                int pid = data.nextInt();
+                int X = data.nextInt();
+                int Y = data.nextInt();
 
-            game.grid[Y][X] = pid;
-            game.turn = 3-pid;
-        } else if(string.indexOf("PLAYERS;") == 0) {
-            String[] data = string.substring(8).split(",");
-            int pid1 = Integer.parseInt(data[0]);
-            int pid2 = Integer.parseInt(data[1]);
-            System.out.println(pid1+", "+JavaClient.javaClient.getClients().size());
-            if(pid1 >= 0 && pid1 < JavaClient.javaClient.getClients().size()) {
-                game.player1 = JavaClient.javaClient.getClients().get(Integer.parseInt(data[0]));
-            } else
-                game.player1 = null;
-            if(pid2 >= 0 && pid2 < JavaClient.javaClient.getClients().size())
-                game.player2 = JavaClient.javaClient.getClients().get(Integer.parseInt(data[1]));
-            else
-                game.player2 = null;
-            
-            if(pid1 == JavaClient.javaClient.getId() || pid2 == JavaClient.javaClient.getId()) {
-                isPlaying = true;
-                if(game.player1 != null && game.player2 != null)
-                    newGameButton.setEnabled(true);
+                game.play(X, Y, pid);
+                game.turn = 3-pid;
+                break;
+            }
+            case Protocol.PLAYERS: {
+                String[] data = string.substring(8).split(",");
+                int pid1 = Integer.parseInt(data[0]);
+                int pid2 = Integer.parseInt(data[1]);
+                System.out.println(pid1+", "+JavaClient.javaClient.getClients().size());
+                if(pid1 >= 0 && pid1 < JavaClient.javaClient.getClients().size()) {
+                    game.player1 = JavaClient.javaClient.getClients().get(Integer.parseInt(data[0]));
+                } else
+                    game.player1 = null;
+                if(pid2 >= 0 && pid2 < JavaClient.javaClient.getClients().size())
+                    game.player2 = JavaClient.javaClient.getClients().get(Integer.parseInt(data[1]));
                 else
+                    game.player2 = null;
+                
+                if(pid1 == JavaClient.javaClient.getId() || pid2 == JavaClient.javaClient.getId()) {
+                    isPlaying = true;
+                    if(game.player1 != null && game.player2 != null)
+                        newGameButton.setEnabled(true);
+                    else
+                        newGameButton.setEnabled(false);
+                } else {
+                    isPlaying = false;
                     newGameButton.setEnabled(false);
-            } else {
-                isPlaying = false;
-                newGameButton.setEnabled(false);
+                }
+                
+                if(isPlaying || game.player1 == null || game.player2 == null)
+                    playSpecButton.setEnabled(true);
+                else
+                    playSpecButton.setEnabled(false);
+                break;
+            }
+            case Protocol.WINNER: {
+                game.winner = Integer.parseInt(string.substring(7));
+                break;
             }
-            
-            if(isPlaying || game.player1 == null || game.player2 == null)
-                playSpecButton.setEnabled(true);
-            else
-                playSpecButton.setEnabled(false);
-        } else if(string.indexOf("WINNER;")==0) {
-            game.winner = Integer.parseInt(string.substring(7));
         }
     }
     
@@ -153,7 +173,7 @@ public class TicTacToeViewPanel extends GameViewPanel {
             
             for(int i=0;i<3;i++) {
                 for(int j=0;j<3;j++) {
-                    int pid = game.grid[i][j];
+                    int pid = game.get(j, i);
                     if(pid == 0)
                         continue;
 